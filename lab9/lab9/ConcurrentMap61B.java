@@ -0,0 +1,260 @@
+package lab9;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ *  A hash table-backed Map implementation that many threads may use at once.
+ *
+ *  The table is split into stripes, each a small chained hash table with its
+ *  own lock, and the high bits of a key's hash pick its stripe. Writers only
+ *  lock the stripe of their key, so writes to different stripes go on in
+ *  parallel, and each stripe resizes itself under its own lock while the rest
+ *  of the map stays open for reads and writes.
+ *
+ *  Reads take no lock at all. The links between nodes never change once a node
+ *  is in a table: a resize copies the nodes into a new table, and a removal
+ *  copies the nodes ahead of the removed one, and either publishes the result
+ *  with a single volatile write. So a reader always walks a whole chain, old
+ *  or new, and sees every put that finished before its get started.
+ *
+ *  size(), keySet() and iteration are not atomic: they see each stripe as it
+ *  is when they reach it. Null keys and values are not allowed, since get()
+ *  returns null for a missing key.
+ */
+public class ConcurrentMap61B<K, V> implements Map61B<K, V> {
+
+    private static final int DEFAULT_STRIPES = 16;
+    private static final int STRIPE_CAPACITY = 4;
+    private static final double MAX_LF = 0.75;
+
+    private final Stripe<K, V>[] stripes;
+    private final int stripeShift;
+
+    /** A mapping in a chain. Only the value changes once the node is built. */
+    private static class Node<K, V> {
+        private final int hash;
+        private final K key;
+        private volatile V value;
+        private final Node<K, V> next;
+
+        private Node(int hash, K key, V value, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    /** A chained hash table, written only under its lock. */
+    private static class Stripe<K, V> {
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile AtomicReferenceArray<Node<K, V>> table =
+            new AtomicReferenceArray<>(STRIPE_CAPACITY);
+        private volatile int count;
+    }
+
+    public ConcurrentMap61B() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /** Creates a map with at least CONCURRENCY stripes, which is how many
+     *  threads can write to it at once without waiting for each other.
+     */
+    public ConcurrentMap61B(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Need at least one stripe.");
+        }
+        int bits = 32 - Integer.numberOfLeadingZeros(concurrency - 1);
+        stripes = (Stripe<K, V>[]) new Stripe<?, ?>[1 << bits];
+        stripeShift = 32 - bits;
+        for (int i = 0; i < stripes.length; i += 1) {
+            stripes[i] = new Stripe<>();
+        }
+    }
+
+    /** Spreads the hash code of KEY over all 32 bits, as in OpenHashMap. */
+    private static int hash(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private Stripe<K, V> stripe(int h) {
+        return stripes.length == 1 ? stripes[0] : stripes[h >>> stripeShift];
+    }
+
+    /** Returns the node of KEY, whose hash is H, in TABLE, or null. */
+    private static <K, V> Node<K, V> find(AtomicReferenceArray<Node<K, V>> table,
+                                          Object key, int h) {
+        Node<K, V> p = table.get(h & (table.length() - 1));
+        while (p != null && (p.hash != h || !key.equals(p.key))) {
+            p = p.next;
+        }
+        return p;
+    }
+
+    /* Removes all of the mappings from this map. */
+    @Override
+    public void clear() {
+        for (Stripe<K, V> stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                stripe.table = new AtomicReferenceArray<>(STRIPE_CAPACITY);
+                stripe.count = 0;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    /* Returns the value to which the specified key is mapped, or null if this
+     * map contains no mapping for the key.
+     */
+    @Override
+    public V get(K key) {
+        if (key == null) {
+            return null;
+        }
+        int h = hash(key);
+        Node<K, V> p = find(stripe(h).table, key, h);
+        return p == null ? null : p.value;
+    }
+
+    /* Associates the specified value with the specified key in this map. */
+    @Override
+    public void put(K key, V value) {
+        put(key, value, false);
+    }
+
+    /** Associates VALUE with KEY unless KEY already has a value, as one atomic
+     *  step. Returns the value KEY already had, or null if it had none.
+     */
+    public V putIfAbsent(K key, V value) {
+        return put(key, value, true);
+    }
+
+    private V put(K key, V value, boolean onlyIfAbsent) {
+        if (key == null) {
+            throw new IllegalArgumentException("Null key not allowed.");
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("Null values not allowed.");
+        }
+        int h = hash(key);
+        Stripe<K, V> stripe = stripe(h);
+        stripe.lock.lock();
+        try {
+            AtomicReferenceArray<Node<K, V>> table = stripe.table;
+            Node<K, V> p = find(table, key, h);
+            if (p != null) {
+                V old = p.value;
+                if (!onlyIfAbsent) {
+                    p.value = value;
+                }
+                return old;
+            }
+            int i = h & (table.length() - 1);
+            table.set(i, new Node<>(h, key, value, table.get(i)));
+            stripe.count += 1;
+            if (stripe.count > table.length() * MAX_LF) {
+                resize(stripe);
+            }
+            return null;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /** Doubles the table of STRIPE, whose lock the caller holds. Readers go on
+     *  using the old table until the new one is published, whole.
+     */
+    private static <K, V> void resize(Stripe<K, V> stripe) {
+        AtomicReferenceArray<Node<K, V>> old = stripe.table;
+        AtomicReferenceArray<Node<K, V>> table = new AtomicReferenceArray<>(old.length() * 2);
+        int mask = table.length() - 1;
+        for (int j = 0; j < old.length(); j += 1) {
+            for (Node<K, V> p = old.get(j); p != null; p = p.next) {
+                int i = p.hash & mask;
+                table.set(i, new Node<>(p.hash, p.key, p.value, table.get(i)));
+            }
+        }
+        stripe.table = table;
+    }
+
+    /* Returns the number of key-value mappings in this map. */
+    @Override
+    public int size() {
+        int size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            size += stripe.count;
+        }
+        return size;
+    }
+
+    /* Returns a Set view of the keys contained in this map. */
+    @Override
+    public Set<K> keySet() {
+        Set<K> keyset = new HashSet<>();
+        for (Stripe<K, V> stripe : stripes) {
+            AtomicReferenceArray<Node<K, V>> table = stripe.table;
+            for (int i = 0; i < table.length(); i += 1) {
+                for (Node<K, V> p = table.get(i); p != null; p = p.next) {
+                    keyset.add(p.key);
+                }
+            }
+        }
+        return keyset;
+    }
+
+    /* Removes the mapping for the specified key from this map if exists. */
+    @Override
+    public V remove(K key) {
+        return remove(key, null, false);
+    }
+
+    /* Removes the entry for the specified key only if it is currently mapped to
+     * the specified value. */
+    @Override
+    public V remove(K key, V value) {
+        return remove(key, value, true);
+    }
+
+    private V remove(K key, V value, boolean matchValue) {
+        if (key == null) {
+            return null;
+        }
+        int h = hash(key);
+        Stripe<K, V> stripe = stripe(h);
+        stripe.lock.lock();
+        try {
+            AtomicReferenceArray<Node<K, V>> table = stripe.table;
+            int i = h & (table.length() - 1);
+            Node<K, V> first = table.get(i);
+            Node<K, V> target = first;
+            while (target != null && (target.hash != h || !key.equals(target.key))) {
+                target = target.next;
+            }
+            if (target == null || (matchValue && !target.value.equals(value))) {
+                return null;
+            }
+            /* Copy the nodes ahead of the target, so readers never see a half-built chain. */
+            Node<K, V> chain = target.next;
+            for (Node<K, V> p = first; p != target; p = p.next) {
+                chain = new Node<>(p.hash, p.key, p.value, chain);
+            }
+            table.set(i, chain);
+            stripe.count -= 1;
+            return target.value;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public Iterator<K> iterator() {
+        return keySet().iterator();
+    }
+}
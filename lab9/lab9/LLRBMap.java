@@ -0,0 +1,403 @@
+package lab9;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Implementation of interface Map61B with a left-leaning red-black tree as
+ * core data structure. It has the same API as BSTMap, but the tree stays
+ * balanced whatever order the keys come in, so get(), put() and remove() take
+ * O(log N) time even when the keys are inserted in sorted order.
+ *
+ * Every node also counts the nodes below it, which gives the ordered
+ * operations: floorKey(), ceilingKey(), rank(), select() and keys(lo, hi), each
+ * in O(log N) time, plus the number of keys returned for keys(lo, hi).
+ */
+public class LLRBMap<K extends Comparable<K>, V> implements Map61B<K, V> {
+
+    private static final boolean RED = true;
+    private static final boolean BLACK = false;
+
+    private class Node {
+        /* (K, V) pair stored in this Node. */
+        private K key;
+        private V value;
+
+        /* Children of this Node. */
+        private Node left;
+        private Node right;
+
+        /* Color of the link from the parent, and the size of the subtree. */
+        private boolean color;
+        private int size;
+
+        private Node(K k, V v) {
+            key = k;
+            value = v;
+            color = RED;
+            size = 1;
+        }
+    }
+
+    private Node root;  /* Root node of the tree. */
+
+    /* Creates an empty LLRBMap. */
+    public LLRBMap() {
+        this.clear();
+    }
+
+    /* Removes all of the mappings from this map. */
+    @Override
+    public void clear() {
+        root = null;
+    }
+
+    private boolean isRed(Node p) {
+        return p != null && p.color == RED;
+    }
+
+    private int size(Node p) {
+        return p == null ? 0 : p.size;
+    }
+
+    /** Returns the node of KEY, or null if it is not in the tree. */
+    private Node find(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Null key not allowed.");
+        }
+        Node p = root;
+        while (p != null) {
+            int cmp = key.compareTo(p.key);
+            if (cmp == 0) {
+                return p;
+            }
+            p = cmp < 0 ? p.left : p.right;
+        }
+        return null;
+    }
+
+    /** Returns the value to which the specified key is mapped, or null if this
+     *  map contains no mapping for the key.
+     */
+    @Override
+    public V get(K key) {
+        Node p = find(key);
+        return p == null ? null : p.value;
+    }
+
+    /** Inserts the key KEY
+     *  If it is already present, updates value to be VALUE.
+     */
+    @Override
+    public void put(K key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Null key not allowed.");
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("Null values not allowed.");
+        }
+        root = putHelper(key, value, root);
+        root.color = BLACK;
+    }
+
+    /** Returns the subtree rooted in p with (KEY, VALUE) added, rebalanced. */
+    private Node putHelper(K key, V value, Node p) {
+        if (p == null) {
+            return new Node(key, value);
+        }
+        int cmp = key.compareTo(p.key);
+        if (cmp < 0) {
+            p.left = putHelper(key, value, p.left);
+        } else if (cmp > 0) {
+            p.right = putHelper(key, value, p.right);
+        } else {
+            p.value = value;
+        }
+        return balance(p);
+    }
+
+    /* Returns the number of key-value mappings in this map. */
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    /* Returns a Set view of the keys contained in this map, in order. */
+    @Override
+    public Set<K> keySet() {
+        Set<K> keyset = new LinkedHashSet<>();
+        for (K key : this) {
+            keyset.add(key);
+        }
+        return keyset;
+    }
+
+    /** Removes KEY from the tree if present
+     *  returns VALUE removed,
+     *  null on failed removal.
+     */
+    @Override
+    public V remove(K key) {
+        Node p = find(key);
+        if (p == null) {
+            return null;
+        }
+        V value = p.value;
+        if (!isRed(root.left) && !isRed(root.right)) {
+            root.color = RED;
+        }
+        root = removeHelper(key, root);
+        if (root != null) {
+            root.color = BLACK;
+        }
+        return value;
+    }
+
+    /** Removes the key-value entry for the specified key only if it is
+     *  currently mapped to the specified value.  Returns the VALUE removed,
+     *  null on failed removal.
+     **/
+    @Override
+    public V remove(K key, V value) {
+        Node p = find(key);
+        if (p == null || !p.value.equals(value)) {
+            return null;
+        }
+        return remove(key);
+    }
+
+    /** Returns the subtree rooted in p, which holds KEY, without KEY. */
+    private Node removeHelper(K key, Node p) {
+        if (key.compareTo(p.key) < 0) {
+            if (!isRed(p.left) && !isRed(p.left.left)) {
+                p = moveRedLeft(p);
+            }
+            p.left = removeHelper(key, p.left);
+        } else {
+            if (isRed(p.left)) {
+                p = rotateRight(p);
+            }
+            if (key.compareTo(p.key) == 0 && p.right == null) {
+                return null;
+            }
+            if (!isRed(p.right) && !isRed(p.right.left)) {
+                p = moveRedRight(p);
+            }
+            if (key.compareTo(p.key) == 0) {
+                Node min = p.right;
+                while (min.left != null) {
+                    min = min.left;
+                }
+                p.key = min.key;
+                p.value = min.value;
+                p.right = removeMin(p.right);
+            } else {
+                p.right = removeHelper(key, p.right);
+            }
+        }
+        return balance(p);
+    }
+
+    /** Returns the subtree rooted in p without its smallest key. */
+    private Node removeMin(Node p) {
+        if (p.left == null) {
+            return null;
+        }
+        if (!isRed(p.left) && !isRed(p.left.left)) {
+            p = moveRedLeft(p);
+        }
+        p.left = removeMin(p.left);
+        return balance(p);
+    }
+
+    /* The rotations and color flips that keep the tree a left-leaning 2-3 tree. */
+
+    private Node rotateLeft(Node p) {
+        Node x = p.right;
+        p.right = x.left;
+        x.left = p;
+        x.color = p.color;
+        p.color = RED;
+        x.size = p.size;
+        p.size = 1 + size(p.left) + size(p.right);
+        return x;
+    }
+
+    private Node rotateRight(Node p) {
+        Node x = p.left;
+        p.left = x.right;
+        x.right = p;
+        x.color = p.color;
+        p.color = RED;
+        x.size = p.size;
+        p.size = 1 + size(p.left) + size(p.right);
+        return x;
+    }
+
+    private void flipColors(Node p) {
+        p.color = !p.color;
+        p.left.color = !p.left.color;
+        p.right.color = !p.right.color;
+    }
+
+    private Node moveRedLeft(Node p) {
+        flipColors(p);
+        if (isRed(p.right.left)) {
+            p.right = rotateRight(p.right);
+            p = rotateLeft(p);
+            flipColors(p);
+        }
+        return p;
+    }
+
+    private Node moveRedRight(Node p) {
+        flipColors(p);
+        if (isRed(p.left.left)) {
+            p = rotateRight(p);
+            flipColors(p);
+        }
+        return p;
+    }
+
+    private Node balance(Node p) {
+        if (isRed(p.right) && !isRed(p.left)) {
+            p = rotateLeft(p);
+        }
+        if (isRed(p.left) && isRed(p.left.left)) {
+            p = rotateRight(p);
+        }
+        if (isRed(p.left) && isRed(p.right)) {
+            flipColors(p);
+        }
+        p.size = 1 + size(p.left) + size(p.right);
+        return p;
+    }
+
+    //////////////// ORDERED OPERATIONS ////////////////
+
+    /** Returns the largest key less than or equal to KEY, or null if there is none. */
+    public K floorKey(K key) {
+        K floor = null;
+        Node p = root;
+        while (p != null) {
+            int cmp = key.compareTo(p.key);
+            if (cmp == 0) {
+                return p.key;
+            } else if (cmp < 0) {
+                p = p.left;
+            } else {
+                floor = p.key;
+                p = p.right;
+            }
+        }
+        return floor;
+    }
+
+    /** Returns the smallest key greater than or equal to KEY, or null if there is none. */
+    public K ceilingKey(K key) {
+        K ceiling = null;
+        Node p = root;
+        while (p != null) {
+            int cmp = key.compareTo(p.key);
+            if (cmp == 0) {
+                return p.key;
+            } else if (cmp > 0) {
+                p = p.right;
+            } else {
+                ceiling = p.key;
+                p = p.left;
+            }
+        }
+        return ceiling;
+    }
+
+    /** Returns the number of keys less than KEY. */
+    public int rank(K key) {
+        int rank = 0;
+        Node p = root;
+        while (p != null) {
+            int cmp = key.compareTo(p.key);
+            if (cmp == 0) {
+                return rank + size(p.left);
+            } else if (cmp < 0) {
+                p = p.left;
+            } else {
+                rank += size(p.left) + 1;
+                p = p.right;
+            }
+        }
+        return rank;
+    }
+
+    /** Returns the key of rank I, that is the (I + 1)th smallest key. */
+    public K select(int i) {
+        if (i < 0 || i >= size()) {
+            throw new IllegalArgumentException("No key of rank " + i + ".");
+        }
+        Node p = root;
+        while (true) {
+            int left = size(p.left);
+            if (i < left) {
+                p = p.left;
+            } else if (i > left) {
+                i -= left + 1;
+                p = p.right;
+            } else {
+                return p.key;
+            }
+        }
+    }
+
+    /** Returns the keys from LO to HI, both included, in order. */
+    public Iterable<K> keys(K lo, K hi) {
+        return () -> new KeyIterator(lo, hi);
+    }
+
+    @Override
+    public Iterator<K> iterator() {
+        return new KeyIterator(null, null);
+    }
+
+    /** Iterates in order over the keys between two bounds, either of which may
+     *  be null for no bound. Holds the path to the next key, so each step takes
+     *  amortized constant time.
+     */
+    private class KeyIterator implements Iterator<K> {
+        private final K hi;
+        private final Deque<Node> path = new ArrayDeque<>();
+
+        KeyIterator(K lo, K hi) {
+            this.hi = hi;
+            Node p = root;
+            while (p != null) {
+                if (lo != null && lo.compareTo(p.key) > 0) {
+                    p = p.right;
+                } else {
+                    path.push(p);
+                    p = p.left;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !path.isEmpty() && (hi == null || hi.compareTo(path.peek().key) >= 0);
+        }
+
+        @Override
+        public K next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Node p = path.pop();
+            for (Node q = p.right; q != null; q = q.left) {
+                path.push(q);
+            }
+            return p.key;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package lab9;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ *  A hash table-backed Map implementation using open addressing. Keys, values
+ *  and the hashes of the keys live in three parallel arrays, and a key that
+ *  collides goes in the next free slot (linear probing). Provides amortized
+ *  constant time get(), put() and remove() like MyHashMap, but without a bucket
+ *  object per slot, and a lookup only calls equals() on keys whose cached hash
+ *  matches.
+ *
+ *  The table is at most half full, and its capacity is a power of two, so the
+ *  hash codes are spread with a multiplicative hash first: otherwise keys whose
+ *  hash codes differ only in their high bits would all probe from one slot.
+ *  Removal shifts the rest of the run back rather than leaving tombstones, so a
+ *  map that sees many removals does not slow down.
+ *
+ *  Null keys and values are not allowed, as in ArrayMap.
+ */
+public class OpenHashMap<K, V> implements Map61B<K, V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final double MAX_LF = 0.5;
+
+    private K[] keys;
+    private V[] values;
+    private int[] hashes;
+    private int size;
+
+    public OpenHashMap() {
+        this.clear();
+    }
+
+    /* Removes all of the mappings from this map. */
+    @Override
+    public void clear() {
+        allocate(DEFAULT_CAPACITY);
+        size = 0;
+    }
+
+    private void allocate(int capacity) {
+        keys = (K[]) new Object[capacity];
+        values = (V[]) new Object[capacity];
+        hashes = new int[capacity];
+    }
+
+    /** Spreads the hash code of KEY over all 32 bits, so that its low bits
+     *  depend on all of the hash code.
+     */
+    private static int hash(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /** Returns the slot of KEY, whose hash is H, or the empty slot that ends
+     *  its run if KEY is not in the map.
+     */
+    private int slot(Object key, int h) {
+        int mask = keys.length - 1;
+        int i = h & mask;
+        while (keys[i] != null && (hashes[i] != h || !key.equals(keys[i]))) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /* Returns the value to which the specified key is mapped, or null if this
+     * map contains no mapping for the key.
+     */
+    @Override
+    public V get(K key) {
+        if (key == null) {
+            return null;
+        }
+        return values[slot(key, hash(key))];
+    }
+
+    /* Associates the specified value with the specified key in this map. */
+    @Override
+    public void put(K key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Null key not allowed.");
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("Null values not allowed.");
+        }
+        int h = hash(key);
+        int i = slot(key, h);
+        if (keys[i] == null) {
+            keys[i] = key;
+            hashes[i] = h;
+            size += 1;
+        }
+        values[i] = value;
+        if (size > keys.length * MAX_LF) {
+            resize(keys.length * 2);
+        }
+    }
+
+    /** Moves every mapping into a table of CAPACITY slots. The cached hashes
+     *  mean no key's hashCode() is called again.
+     */
+    private void resize(int capacity) {
+        K[] oldKeys = keys;
+        V[] oldValues = values;
+        int[] oldHashes = hashes;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j += 1) {
+            if (oldKeys[j] != null) {
+                int i = oldHashes[j] & mask;
+                while (keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+                hashes[i] = oldHashes[j];
+            }
+        }
+    }
+
+    /* Returns the number of key-value mappings in this map. */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /* Returns a Set view of the keys contained in this map. */
+    @Override
+    public Set<K> keySet() {
+        Set<K> keyset = new HashSet<>();
+        for (K key : this) {
+            keyset.add(key);
+        }
+        return keyset;
+    }
+
+    /* Removes the mapping for the specified key from this map if exists. */
+    @Override
+    public V remove(K key) {
+        if (key == null) {
+            return null;
+        }
+        int i = slot(key, hash(key));
+        V value = values[i];
+        if (value != null) {
+            delete(i);
+        }
+        return value;
+    }
+
+    /* Removes the entry for the specified key only if it is currently mapped to
+     * the specified value. */
+    @Override
+    public V remove(K key, V value) {
+        if (key == null) {
+            return null;
+        }
+        int i = slot(key, hash(key));
+        if (values[i] == null || !values[i].equals(value)) {
+            return null;
+        }
+        V removed = values[i];
+        delete(i);
+        return removed;
+    }
+
+    /** Empties slot HOLE, then moves back every later key of its run that can
+     *  no longer be reached from its home slot.
+     */
+    private void delete(int hole) {
+        int mask = keys.length - 1;
+        for (int j = (hole + 1) & mask; keys[j] != null; j = (j + 1) & mask) {
+            int home = hashes[j] & mask;
+            /* The key at j stays put if its home is cyclically in (hole, j]. */
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hashes[hole] = hashes[j];
+                hole = j;
+            }
+        }
+        keys[hole] = null;
+        values[hole] = null;
+        size -= 1;
+    }
+
+    @Override
+    public Iterator<K> iterator() {
+        return new KeyIterator();
+    }
+
+    /** Iterates over the keys in slot order. */
+    private class KeyIterator implements Iterator<K> {
+        private int next = advance(0);
+
+        private int advance(int i) {
+            while (i < keys.length && keys[i] == null) {
+                i += 1;
+            }
+            return i;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < keys.length;
+        }
+
+        @Override
+        public K next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            K key = keys[next];
+            next = advance(next + 1);
+            return key;
+        }
+    }
+}
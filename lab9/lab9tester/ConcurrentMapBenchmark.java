@@ -0,0 +1,141 @@
+package lab9tester;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+import lab9.ConcurrentMap61B;
+import lab9.MyHashMap;
+
+/**
+ * Compares the throughput of maps shared by several threads: a MyHashMap
+ * behind one lock, ConcurrentMap61B and java.util.concurrent.ConcurrentHashMap.
+ * Every thread does a mix of gets and puts on random keys, e.g.
+ *     java lab9tester.ConcurrentMapBenchmark [percent of puts, default 10]
+ * Times are the best of a few rounds, after a warm-up. On a machine with fewer
+ * cores than threads, this measures the cost of contention rather than any
+ * speed-up.
+ */
+public class ConcurrentMapBenchmark {
+    private static final int KEYS = 10000;
+    private static final int OPS_PER_THREAD = 1000000;
+    private static final int[] THREADS = {1, 2, 4, 8};
+    private static final int ROUNDS = 3;
+
+    /** The two operations measured, whatever the map. */
+    private interface Ops {
+        Integer get(Integer key);
+
+        void put(Integer key, Integer value);
+    }
+
+    /** A MyHashMap with every operation under one lock. */
+    private static class SynchronizedOps implements Ops {
+        private final MyHashMap<Integer, Integer> map = new MyHashMap<>();
+
+        @Override
+        public synchronized Integer get(Integer key) {
+            return map.get(key);
+        }
+
+        @Override
+        public synchronized void put(Integer key, Integer value) {
+            map.put(key, value);
+        }
+    }
+
+    private static Ops make(String name) {
+        switch (name) {
+            case "synchronized MyHashMap":
+                return new SynchronizedOps();
+            case "ConcurrentMap61B": {
+                ConcurrentMap61B<Integer, Integer> map = new ConcurrentMap61B<>();
+                return new Ops() {
+                    public Integer get(Integer key) {
+                        return map.get(key);
+                    }
+
+                    public void put(Integer key, Integer value) {
+                        map.put(key, value);
+                    }
+                };
+            }
+            default: {
+                ConcurrentHashMap<Integer, Integer> map = new ConcurrentHashMap<>();
+                return new Ops() {
+                    public Integer get(Integer key) {
+                        return map.get(key);
+                    }
+
+                    public void put(Integer key, Integer value) {
+                        map.put(key, value);
+                    }
+                };
+            }
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int putPercent = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        System.out.println(putPercent + "% puts, " + KEYS + " keys, "
+            + Runtime.getRuntime().availableProcessors() + " cores. Million ops per second:");
+        String[] names = {"synchronized MyHashMap", "ConcurrentMap61B", "ConcurrentHashMap"};
+        System.out.printf("%-24s", "threads");
+        for (int threads : THREADS) {
+            System.out.printf("%8d", threads);
+        }
+        System.out.println();
+        for (String name : names) {
+            System.out.printf("%-24s", name);
+            for (int threads : THREADS) {
+                double best = 0;
+                for (int round = 0; round <= ROUNDS; round += 1) {
+                    double rate = run(make(name), threads, putPercent);
+                    if (round > 0) {
+                        best = Math.max(best, rate);
+                    }
+                }
+                System.out.printf("%8.1f", best);
+            }
+            System.out.println();
+        }
+    }
+
+    /** Returns the operations per second of THREADS threads sharing MAP. */
+    private static double run(Ops map, int threads, int putPercent)
+        throws InterruptedException {
+        for (int key = 0; key < KEYS; key += 2) {
+            map.put(key, key);
+        }
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t += 1) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int op = 0; op < OPS_PER_THREAD; op += 1) {
+                    Integer key = random.nextInt(KEYS);
+                    if (random.nextInt(100) < putPercent) {
+                        map.put(key, op);
+                    } else {
+                        map.get(key);
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return (double) threads * OPS_PER_THREAD / (System.nanoTime() - begin) * 1e3;
+    }
+}
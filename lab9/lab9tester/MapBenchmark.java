@@ -0,0 +1,100 @@
+package lab9tester;
+
+import java.util.function.Supplier;
+
+import lab9.Map61B;
+import lab9.MyHashMap;
+import lab9.OpenHashMap;
+
+/**
+ * Compares the memory use and the speed of the Map61B hash maps. Run with a
+ * heap big enough for the chained map, e.g.
+ *     java -Xmx1g lab9tester.MapBenchmark [number of keys, default 50000]
+ * Memory is measured from the heap in use after a garbage collection, so it
+ * is approximate; times are the best of a few rounds, after a warm-up.
+ */
+public class MapBenchmark {
+    private static final int EMPTY_MAPS = 1000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        String[] keys = new String[n];
+        String[] missing = new String[n];
+        for (int i = 0; i < n; i += 1) {
+            keys[i] = "key" + i;
+            missing[i] = "missing" + i;
+        }
+        System.out.println(n + " String keys.");
+        compare("MyHashMap (chaining)", MyHashMap::new, keys, missing);
+        compare("OpenHashMap (linear probing)", OpenHashMap::new, keys, missing);
+    }
+
+    private static void compare(String name, Supplier<Map61B<String, Integer>> maps,
+                                String[] keys, String[] missing) {
+        System.out.println(name + ":");
+
+        long before = usedMemory();
+        Object[] empty = new Object[EMPTY_MAPS];
+        for (int i = 0; i < EMPTY_MAPS; i += 1) {
+            empty[i] = maps.get();
+        }
+        System.out.printf("  empty map:     %,d bytes%n",
+            (usedMemory() - before) / EMPTY_MAPS);
+        empty = null;
+
+        before = usedMemory();
+        Map61B<String, Integer> full = fill(maps.get(), keys);
+        System.out.printf("  with all keys: %,d bytes, %.1f bytes per key%n",
+            usedMemory() - before, (double) (usedMemory() - before) / keys.length);
+        full = null;
+
+        double put = Double.MAX_VALUE;
+        double hit = Double.MAX_VALUE;
+        double miss = Double.MAX_VALUE;
+        for (int round = 0; round <= ROUNDS; round += 1) {
+            long start = System.nanoTime();
+            Map61B<String, Integer> map = fill(maps.get(), keys);
+            long filled = System.nanoTime();
+            int found = lookUp(map, keys);
+            long hits = System.nanoTime();
+            found += lookUp(map, missing);
+            long misses = System.nanoTime();
+            if (found != keys.length) {
+                throw new IllegalStateException(name + " lost keys.");
+            }
+            if (round > 0) {
+                put = Math.min(put, (double) (filled - start) / keys.length);
+                hit = Math.min(hit, (double) (hits - filled) / keys.length);
+                miss = Math.min(miss, (double) (misses - hits) / keys.length);
+            }
+        }
+        System.out.printf("  put: %.0f ns, get hit: %.0f ns, get miss: %.0f ns%n",
+            put, hit, miss);
+    }
+
+    private static Map61B<String, Integer> fill(Map61B<String, Integer> map, String[] keys) {
+        for (int i = 0; i < keys.length; i += 1) {
+            map.put(keys[i], i);
+        }
+        return map;
+    }
+
+    private static int lookUp(Map61B<String, Integer> map, String[] keys) {
+        int found = 0;
+        for (String key : keys) {
+            if (map.get(key) != null) {
+                found += 1;
+            }
+        }
+        return found;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i += 1) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
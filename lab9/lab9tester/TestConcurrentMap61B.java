@@ -0,0 +1,121 @@
+package lab9tester;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+import lab9.ConcurrentMap61B;
+
+/**
+ * Tests of ConcurrentMap61B, on one thread against java.util.HashMap and on
+ * several threads at once.
+ */
+public class TestConcurrentMap61B {
+    private static final int THREADS = 4;
+
+    /** Runs TASK on THREADS threads, passing each its number, and waits for them. */
+    private static void runThreads(java.util.function.IntConsumer task)
+        throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int id = t;
+            threads.add(new Thread(() -> task.accept(id)));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    @Test
+    public void randomOperationsTest() {
+        Random random = new Random(48);
+        ConcurrentMap61B<Integer, Integer> map = new ConcurrentMap61B<>(4);
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int op = 0; op < 20000; op++) {
+            int key = random.nextInt(2000);
+            switch (random.nextInt(4)) {
+                case 0:
+                    assertEquals(expected.remove(key), map.remove(key));
+                    break;
+                case 1:
+                    assertEquals(expected.putIfAbsent(key, op), map.putIfAbsent(key, op));
+                    break;
+                default:
+                    expected.put(key, op);
+                    map.put(key, op);
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (int key = 0; key < 2000; key++) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+        assertEquals(expected.keySet(), map.keySet());
+        map.clear();
+        assertEquals(0, map.size());
+        assertNull(map.get(0));
+    }
+
+    /** Threads writing different keys at once, through many resizes, lose none. */
+    @Test
+    public void concurrentPutTest() throws InterruptedException {
+        ConcurrentMap61B<String, Integer> map = new ConcurrentMap61B<>();
+        int perThread = 20000;
+        runThreads(t -> {
+            for (int i = 0; i < perThread; i++) {
+                map.put("t" + t + "k" + i, i);
+            }
+        });
+        assertEquals(THREADS * perThread, map.size());
+        for (int t = 0; t < THREADS; t++) {
+            for (int i = 0; i < perThread; i++) {
+                assertEquals(i, map.get("t" + t + "k" + i).intValue());
+            }
+        }
+    }
+
+    /** Readers never miss a key that is always there, while writers add and remove others. */
+    @Test
+    public void readDuringWritesTest() throws InterruptedException {
+        ConcurrentMap61B<Integer, Integer> map = new ConcurrentMap61B<>(2);
+        for (int key = 0; key < 1000; key += 2) {
+            map.put(key, -key);
+        }
+        AtomicBoolean wrong = new AtomicBoolean();
+        runThreads(t -> {
+            if (t % 2 == 0) {
+                for (int round = 0; round < 20; round++) {
+                    for (int key = 1 + t; key < 20000; key += 2 * THREADS) {
+                        map.put(key, key);
+                    }
+                    for (int key = 1 + t; key < 20000; key += 2 * THREADS) {
+                        map.remove(key);
+                    }
+                }
+            } else {
+                for (int round = 0; round < 200; round++) {
+                    for (int key = 0; key < 1000; key += 2) {
+                        Integer value = map.get(key);
+                        if (value == null || value != -key) {
+                            wrong.set(true);
+                        }
+                    }
+                }
+            }
+        });
+        assertFalse(wrong.get());
+        assertEquals(500, map.size());
+    }
+
+    public static void main(String[] args) {
+        jh61b.junit.TestRunner.runTests(TestConcurrentMap61B.class);
+    }
+}
@@ -0,0 +1,81 @@
+package lab9tester;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import lab9.LLRBMap;
+
+/**
+ * Tests of LLRBMap: random operations, ordered ones included, checked against
+ * java.util.TreeMap, and keys inserted in sorted order.
+ */
+public class TestLLRBMap {
+
+    @Test
+    public void randomOperationsTest() {
+        Random random = new Random(49);
+        LLRBMap<Integer, Integer> map = new LLRBMap<>();
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        for (int op = 0; op < 20000; op++) {
+            int key = random.nextInt(3000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                expected.put(key, op);
+                map.put(key, op);
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(map.keySet()));
+        for (int key = -1; key <= 3000; key++) {
+            assertEquals(expected.get(key), map.get(key));
+            assertEquals(expected.floorKey(key), map.floorKey(key));
+            assertEquals(expected.ceilingKey(key), map.ceilingKey(key));
+            assertEquals(expected.headMap(key).size(), map.rank(key));
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(i, map.rank(map.select(i)));
+        }
+        for (int trial = 0; trial < 100; trial++) {
+            int lo = random.nextInt(3000);
+            int hi = lo + random.nextInt(500);
+            List<Integer> keys = new ArrayList<>();
+            map.keys(lo, hi).forEach(keys::add);
+            assertEquals(new ArrayList<>(expected.subMap(lo, true, hi, true).keySet()), keys);
+        }
+    }
+
+    /** Sorted keys, which make BSTMap a linked list, still give a shallow tree. */
+    @Test
+    public void sortedInsertionTest() {
+        LLRBMap<Integer, Integer> map = new LLRBMap<>();
+        int n = 200000;
+        for (int i = 0; i < n; i++) {
+            map.put(i, -i);
+        }
+        assertEquals(n, map.size());
+        assertEquals(-12345, map.get(12345).intValue());
+        assertEquals(n - 1, map.select(n - 1).intValue());
+        for (int i = 0; i < n; i += 2) {
+            assertEquals(-i, map.remove(i).intValue());
+        }
+        assertEquals(n / 2, map.size());
+        assertEquals(1, map.select(0).intValue());
+        int expected = 1;
+        for (int key : map) {
+            assertEquals(expected, key);
+            expected += 2;
+        }
+        assertEquals(-3, map.remove(3, -3).intValue());
+        assertNull(map.remove(5, 5));
+    }
+
+    public static void main(String[] args) {
+        jh61b.junit.TestRunner.runTests(TestLLRBMap.class);
+    }
+}
@@ -0,0 +1,98 @@
+package lab9tester;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import lab9.OpenHashMap;
+
+/**
+ * Tests of OpenHashMap: the sanity tests of TestMyHashMap, and random
+ * operations checked against java.util.HashMap.
+ */
+public class TestOpenHashMap {
+
+    /** A key whose hash codes collide often, and differ only in the high bits. */
+    private static class Clash {
+        private final int id;
+
+        Clash(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return (id % 8) << 24;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Clash && ((Clash) o).id == id;
+        }
+    }
+
+    @Test
+    public void sanityClearTest() {
+        OpenHashMap<String, Integer> b = new OpenHashMap<>();
+        for (int i = 0; i < 455; i++) {
+            b.put("hi" + i, 1);
+            assertTrue(null != b.get("hi" + i) && b.containsKey("hi" + i));
+        }
+        assertEquals(455, b.size());
+        b.clear();
+        assertEquals(0, b.size());
+        for (int i = 0; i < 455; i++) {
+            assertTrue(null == b.get("hi" + i) && !b.containsKey("hi" + i));
+        }
+    }
+
+    @Test
+    public void functionalityTest() {
+        OpenHashMap<String, String> dictionary = new OpenHashMap<>();
+        assertEquals(0, dictionary.size());
+        dictionary.put("hello", "world");
+        assertEquals("world", dictionary.get("hello"));
+        dictionary.put("hello", "kevin");
+        assertEquals(1, dictionary.size());
+        assertEquals("kevin", dictionary.get("hello"));
+        assertNull(dictionary.remove("hello", "world"));
+        assertEquals("kevin", dictionary.remove("hello", "kevin"));
+        assertEquals(0, dictionary.size());
+        assertNull(dictionary.get(null));
+    }
+
+    /** Random puts and removes, on keys that collide, give the same map as HashMap. */
+    @Test
+    public void randomOperationsTest() {
+        Random random = new Random(47);
+        OpenHashMap<Clash, Integer> map = new OpenHashMap<>();
+        Map<Clash, Integer> expected = new HashMap<>();
+        for (int op = 0; op < 20000; op++) {
+            Clash key = new Clash(random.nextInt(500));
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                expected.put(key, op);
+                map.put(key, op);
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (int id = 0; id < 500; id++) {
+            assertEquals(expected.get(new Clash(id)), map.get(new Clash(id)));
+        }
+        assertEquals(expected.keySet(), map.keySet());
+        int count = 0;
+        for (Clash key : map) {
+            assertTrue(expected.containsKey(key));
+            count++;
+        }
+        assertEquals(expected.size(), count);
+    }
+
+    public static void main(String[] args) {
+        jh61b.junit.TestRunner.runTests(TestOpenHashMap.class);
+    }
+}
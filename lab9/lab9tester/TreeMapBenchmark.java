@@ -0,0 +1,70 @@
+package lab9tester;
+
+import java.util.Random;
+import java.util.function.Supplier;
+
+import lab9.BSTMap;
+import lab9.LLRBMap;
+import lab9.Map61B;
+
+/**
+ * Compares BSTMap and LLRBMap on keys inserted in sorted and in random order:
+ *     java -Xss64m lab9tester.TreeMapBenchmark [number of keys, default 20000]
+ * BSTMap recurses once per level, and sorted keys make it N levels deep, hence
+ * the big stack. Times are the best of a few rounds, after a warm-up.
+ */
+public class TreeMapBenchmark {
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        Integer[] sorted = new Integer[n];
+        Integer[] shuffled = new Integer[n];
+        for (int i = 0; i < n; i += 1) {
+            sorted[i] = i;
+            shuffled[i] = i;
+        }
+        Random random = new Random(49);
+        for (int i = n - 1; i > 0; i -= 1) {
+            int j = random.nextInt(i + 1);
+            Integer swap = shuffled[i];
+            shuffled[i] = shuffled[j];
+            shuffled[j] = swap;
+        }
+        System.out.println(n + " Integer keys. Nanoseconds per put, then per get:");
+        compare("BSTMap", BSTMap::new, sorted, shuffled);
+        compare("LLRBMap", LLRBMap::new, sorted, shuffled);
+    }
+
+    private static void compare(String name, Supplier<Map61B<Integer, Integer>> maps,
+                                Integer[] sorted, Integer[] shuffled) {
+        System.out.printf("  %-8s sorted: %s   random: %s%n", name,
+            time(maps, sorted, shuffled), time(maps, shuffled, shuffled));
+    }
+
+    /** Returns the best times to put KEYS in order, then get LOOKUPS. */
+    private static String time(Supplier<Map61B<Integer, Integer>> maps, Integer[] keys,
+                               Integer[] lookups) {
+        double put = Double.MAX_VALUE;
+        double get = Double.MAX_VALUE;
+        for (int round = 0; round <= ROUNDS; round += 1) {
+            long start = System.nanoTime();
+            Map61B<Integer, Integer> map = maps.get();
+            for (Integer key : keys) {
+                map.put(key, key);
+            }
+            long filled = System.nanoTime();
+            for (Integer key : lookups) {
+                if (map.get(key) == null) {
+                    throw new IllegalStateException("Lost key " + key + ".");
+                }
+            }
+            long done = System.nanoTime();
+            if (round > 0) {
+                put = Math.min(put, (double) (filled - start) / keys.length);
+                get = Math.min(get, (double) (done - filled) / lookups.length);
+            }
+        }
+        return String.format("%7.0f %7.0f", put, get);
+    }
+}
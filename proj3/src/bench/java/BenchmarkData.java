@@ -0,0 +1,77 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Shared inputs for the benchmark workloads. The OSM files are looked up on the classpath,
+ * the same way MapServer finds them, and every random choice is seeded so runs are
+ * comparable.
+ */
+class BenchmarkData {
+    /** Number of precomputed inputs a benchmark cycles through. */
+    static final int NUM_INPUTS = 64;
+    private static final long SEED = 61;
+
+    /** Returns the ids of all vertices of the graph. */
+    static List<Long> vertices(GraphDB g) {
+        List<Long> vertices = new ArrayList<>();
+        for (long v : g.vertices()) {
+            vertices.add(v);
+        }
+        return vertices;
+    }
+
+    /**
+     * Returns NUM_INPUTS start and end vertex pairs of the given length class. A sample of
+     * random pairs is sorted by straight-line distance and split into thirds, so "short",
+     * "medium" and "long" are relative to the size of the graph.
+     * @param length One of "short", "medium" or "long".
+     * @return Pairs of {start, end} vertex ids.
+     */
+    static List<long[]> routePairs(GraphDB g, String length) {
+        List<Long> vertices = vertices(g);
+        Random random = new Random(SEED);
+        List<long[]> sample = new ArrayList<>();
+        for (int i = 0; i < NUM_INPUTS * 3; i++) {
+            long s = vertices.get(random.nextInt(vertices.size()));
+            long t = vertices.get(random.nextInt(vertices.size()));
+            sample.add(new long[]{s, t});
+        }
+        sample.sort(Comparator.comparingDouble(p -> g.distance(p[0], p[1])));
+        int third;
+        switch (length) {
+            case "short":
+                third = 0;
+                break;
+            case "medium":
+                third = 1;
+                break;
+            case "long":
+                third = 2;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown route length " + length);
+        }
+        return new ArrayList<>(sample.subList(third * NUM_INPUTS, (third + 1) * NUM_INPUTS));
+    }
+
+    /** Returns NUM_INPUTS random {lon, lat} points inside the bounding box of the graph. */
+    static List<double[]> queryPoints(GraphDB g) {
+        double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+        for (long v : g.vertices()) {
+            minLon = Math.min(minLon, g.lon(v));
+            maxLon = Math.max(maxLon, g.lon(v));
+            minLat = Math.min(minLat, g.lat(v));
+            maxLat = Math.max(maxLat, g.lat(v));
+        }
+        Random random = new Random(SEED);
+        List<double[]> points = new ArrayList<>();
+        for (int i = 0; i < NUM_INPUTS; i++) {
+            points.add(new double[]{minLon + random.nextDouble() * (maxLon - minLon),
+                minLat + random.nextDouble() * (maxLat - minLat)});
+        }
+        return points;
+    }
+}
@@ -0,0 +1,231 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load generator for MapServer. Starts a MapServer in this JVM (or targets one given with
+ * --url), then has a number of simulated clients replay /raster pan-and-zoom sessions and
+ * random /route queries against it, and reports throughput and latency percentiles.
+ * Everything runs offline against the bundled OSM data and tiles.
+ *
+ * Build and run with the bench profile, e.g.
+ * <pre>
+ *     mvn -Pbench compile exec:java -Dexec.mainClass=LoadGenerator \
+ *         -Dexec.args="--concurrency 16 --requests 5000 --route-fraction 0.2"
+ * </pre>
+ */
+public class LoadGenerator {
+    private static final double ROOT_WIDTH = MapServer.ROOT_LRLON - MapServer.ROOT_ULLON;
+    private static final double ROOT_HEIGHT = MapServer.ROOT_ULLAT - MapServer.ROOT_LRLAT;
+    /** Viewport of the simulated browser window, in pixels. */
+    private static final int VIEW_W = 1024, VIEW_H = 768;
+    /** How many raster requests a simulated user makes before starting a new session. */
+    private static final int SESSION_LENGTH = 20;
+
+    private String baseUrl = "http://localhost:4567";
+    private boolean startServer = true;
+    private int concurrency = 8;
+    private int requests = 2000;
+    private int warmup = 200;
+    private double routeFraction = 0.2;
+    private long seed = 61;
+
+    private final LatencyHistogram rasterLatency = new LatencyHistogram();
+    private final LatencyHistogram routeLatency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+
+    public static void main(String[] args) throws Exception {
+        LoadGenerator lg = new LoadGenerator();
+        lg.parseArgs(args);
+        if (lg.startServer) {
+            MapServer.main(new String[0]);
+            spark.Spark.awaitInitialization();
+        }
+        try {
+            lg.run();
+        } finally {
+            if (lg.startServer) {
+                spark.Spark.stop();
+            }
+        }
+        System.exit(0);
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--url":
+                    baseUrl = value;
+                    startServer = false;
+                    break;
+                case "--concurrency":
+                    concurrency = Integer.parseInt(value);
+                    break;
+                case "--requests":
+                    requests = Integer.parseInt(value);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(value);
+                    break;
+                case "--route-fraction":
+                    routeFraction = Double.parseDouble(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+    }
+
+    private void run() throws Exception {
+        System.out.printf("Warming up with %d requests...%n", warmup);
+        runPhase(warmup, seed - 1, false);
+        System.out.printf("Running %d requests on %d clients against %s%n",
+                requests, concurrency, baseUrl);
+        long start = System.nanoTime();
+        runPhase(requests, seed, true);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf(Locale.ROOT, "Throughput: %.1f requests/s over %.1f s, %d errors%n",
+                requests / seconds, seconds, errors.sum());
+        report("/raster", rasterLatency);
+        report("/route", routeLatency);
+    }
+
+    /** Runs the given number of requests split over the clients. */
+    private void runPhase(int total, long phaseSeed, boolean record) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        AtomicInteger remaining = new AtomicInteger(total);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int c = 0; c < concurrency; c++) {
+            Random random = new Random(phaseSeed * 1000 + c);
+            futures.add(clients.submit(() -> {
+                Viewport view = Viewport.random(random);
+                int step = 0;
+                while (remaining.getAndDecrement() > 0) {
+                    if (random.nextDouble() < routeFraction) {
+                        timedGet(routeQuery(random), record ? routeLatency : null);
+                    } else {
+                        if (++step % SESSION_LENGTH == 0) {
+                            view = Viewport.random(random);
+                        } else {
+                            view = view.next(random);
+                        }
+                        timedGet(view.query(), record ? rasterLatency : null);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        clients.shutdown();
+    }
+
+    private void timedGet(String path, LatencyHistogram latency) {
+        long start = System.nanoTime();
+        try {
+            HttpURLConnection conn = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+            int status = conn.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                errors.increment();
+                return;
+            }
+            try (InputStream in = conn.getInputStream()) {
+                byte[] buf = new byte[8192];
+                while (in.read(buf) != -1) {
+                    continue;
+                }
+            }
+        } catch (IOException e) {
+            errors.increment();
+            return;
+        }
+        if (latency != null) {
+            latency.recordSince(start);
+        }
+    }
+
+    private static String routeQuery(Random random) {
+        return String.format(Locale.ROOT,
+                "/route?start_lon=%.7f&start_lat=%.7f&end_lon=%.7f&end_lat=%.7f",
+                randomLon(random), randomLat(random), randomLon(random), randomLat(random));
+    }
+
+    private static double randomLon(Random random) {
+        return MapServer.ROOT_ULLON + random.nextDouble() * ROOT_WIDTH;
+    }
+
+    private static double randomLat(Random random) {
+        return MapServer.ROOT_LRLAT + random.nextDouble() * ROOT_HEIGHT;
+    }
+
+    private static void report(String name, LatencyHistogram h) {
+        System.out.printf(Locale.ROOT, "%-8s n=%-6d p50=%8.2f ms  p99=%8.2f ms  p999=%8.2f ms%n",
+                name, h.count(), h.valueAtQuantile(0.5) / 1000.0,
+                h.valueAtQuantile(0.99) / 1000.0, h.valueAtQuantile(0.999) / 1000.0);
+    }
+
+    /**
+     * The part of the map a simulated user is looking at. Users mostly pan by part of a
+     * screen, and sometimes zoom in or out by a factor of two around the center.
+     */
+    private static class Viewport {
+        final double ullon, ullat, width, height;
+
+        Viewport(double ullon, double ullat, double width, double height) {
+            width = Math.min(width, ROOT_WIDTH);
+            height = Math.min(height, ROOT_HEIGHT);
+            this.ullon = clamp(ullon, MapServer.ROOT_ULLON, MapServer.ROOT_LRLON - width);
+            this.ullat = clamp(ullat, MapServer.ROOT_LRLAT + height, MapServer.ROOT_ULLAT);
+            this.width = width;
+            this.height = height;
+        }
+
+        static Viewport random(Random random) {
+            double width = ROOT_WIDTH / (1 << random.nextInt(6));
+            double height = width * VIEW_H / VIEW_W;
+            return new Viewport(randomLon(random) - width / 2, randomLat(random) + height / 2,
+                    width, height);
+        }
+
+        Viewport next(Random random) {
+            int move = random.nextInt(10);
+            if (move == 0) {
+                return new Viewport(ullon + width / 4, ullat - height / 4, width / 2, height / 2);
+            } else if (move == 1) {
+                return new Viewport(ullon - width / 2, ullat + height / 2, width * 2, height * 2);
+            }
+            double dx = (random.nextDouble() - 0.5) * width;
+            double dy = (random.nextDouble() - 0.5) * height;
+            return new Viewport(ullon + dx, ullat + dy, width, height);
+        }
+
+        String query() {
+            return String.format(Locale.ROOT,
+                    "/raster?ullon=%.9f&ullat=%.9f&lrlon=%.9f&lrlat=%.9f&w=%d&h=%d",
+                    ullon, ullat, ullon + width, ullat - height, VIEW_W, VIEW_H);
+        }
+
+        private static double clamp(double v, double lo, double hi) {
+            return Math.max(lo, Math.min(hi, v));
+        }
+    }
+}
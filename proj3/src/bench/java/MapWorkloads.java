@@ -0,0 +1,161 @@
+import bench.Workload;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The map server operations measured by bench.MapBenchmarks. Each workload precomputes
+ * its inputs in its constructor and cycles through them in run().
+ */
+public class MapWorkloads {
+    private static final double ROOT_WIDTH = MapServer.ROOT_LRLON - MapServer.ROOT_ULLON;
+    private static final double ROOT_HEIGHT = MapServer.ROOT_ULLAT - MapServer.ROOT_LRLAT;
+
+    /** Builds a GraphDB from an OSM file; args are {osm}. */
+    public static class Construction implements Workload {
+        private final String osm;
+
+        public Construction(String... args) {
+            this.osm = args[0];
+        }
+
+        @Override
+        public Object run() {
+            return new GraphDB(osm);
+        }
+    }
+
+    /** Finds the closest vertex to random points on the map; args are {osm}. */
+    public static class Closest implements Workload {
+        private final GraphDB graph;
+        private final List<double[]> points;
+        private int next;
+
+        public Closest(String... args) {
+            graph = new GraphDB(args[0]);
+            points = BenchmarkData.queryPoints(graph);
+        }
+
+        @Override
+        public Object run() {
+            double[] p = points.get(next++ % points.size());
+            return graph.closest(p[0], p[1]);
+        }
+    }
+
+    /**
+     * Finds shortest paths of one length class; args are {osm, length} or
+     * {osm, length, vertexOrder}, where vertexOrder names a GraphDB.VertexOrder.
+     */
+    public static class ShortestPath implements Workload {
+        private final GraphDB graph;
+        /* Dense vertex numbers of {start, end}, so that run() times A* alone rather than
+         * also the two closest-vertex scans. */
+        private final List<int[]> queries = new ArrayList<>();
+        private int next;
+
+        public ShortestPath(String... args) {
+            GraphDB.VertexOrder order = args.length > 2
+                    ? GraphDB.VertexOrder.valueOf(args[2]) : GraphDB.VertexOrder.BFS;
+            graph = new GraphDB(args[0], GraphDB.DEFAULT_MIN_COMPONENT_SIZE, order);
+            for (long[] pair : BenchmarkData.routePairs(graph, args[1])) {
+                queries.add(new int[]{graph.index(pair[0]), graph.index(pair[1])});
+            }
+        }
+
+        @Override
+        public Object run() {
+            int[] q = queries.get(next++ % queries.size());
+            return Router.shortestPath(graph, EdgeOverlay.EMPTY, q[0], q[1]);
+        }
+    }
+
+    /** Turns routes of one length class into directions; args are {osm, length}. */
+    public static class RouteDirections implements Workload {
+        private final GraphDB graph;
+        private final List<List<Long>> routes = new ArrayList<>();
+        private int next;
+
+        public RouteDirections(String... args) {
+            graph = new GraphDB(args[0]);
+            for (long[] pair : BenchmarkData.routePairs(graph, args[1])) {
+                List<Long> route = Router.shortestPath(graph, graph.lon(pair[0]),
+                        graph.lat(pair[0]), graph.lon(pair[1]), graph.lat(pair[1]));
+                if (route.size() > 1) {
+                    routes.add(route);
+                }
+            }
+        }
+
+        @Override
+        public Object run() {
+            return Router.routeDirections(graph, routes.get(next++ % routes.size()));
+        }
+    }
+
+    /** Rasters viewports at every zoom depth; takes no args. */
+    public static class MapRaster implements Workload {
+        private final List<Map<String, Double>> queries = new ArrayList<>();
+        private int next;
+
+        public MapRaster(String... args) {
+            Random random = new Random(61);
+            for (int i = 0; i < BenchmarkData.NUM_INPUTS; i++) {
+                double width = ROOT_WIDTH / (1 << (i % (Rasterer.MAX_DEPTH + 1)));
+                double height = width * 3 / 4;
+                double ullon = MapServer.ROOT_ULLON + random.nextDouble() * (ROOT_WIDTH - width);
+                double ullat = MapServer.ROOT_ULLAT - random.nextDouble() * (ROOT_HEIGHT - height);
+                Map<String, Double> params = new HashMap<>();
+                params.put("ullon", ullon);
+                params.put("ullat", ullat);
+                params.put("lrlon", ullon + width);
+                params.put("lrlat", ullat - height);
+                params.put("w", 1024.0);
+                params.put("h", 768.0);
+                queries.add(params);
+            }
+        }
+
+        @Override
+        public Object run() {
+            return new Rasterer().getMapRaster(queries.get(next++ % queries.size()));
+        }
+    }
+
+    /**
+     * Runs TrieST.keysWithPrefix over the location names of a map, the way the autocomplete
+     * search does; args are {osm, prefixLength}.
+     */
+    public static class KeysWithPrefix implements Workload {
+        private final TrieST<Integer> trie = new TrieST<>();
+        private final List<String> prefixes = new ArrayList<>();
+        private int next;
+
+        public KeysWithPrefix(String... args) {
+            GraphDB graph = new GraphDB(args[0]);
+            int prefixLength = Integer.parseInt(args[1]);
+            List<String> names = new ArrayList<>();
+            for (String name : graph.getLocationsByPrefix("")) {
+                String cleaned = GraphDB.cleanString(name);
+                trie.put(cleaned, names.size());
+                names.add(cleaned);
+            }
+            Random random = new Random(61);
+            for (int i = 0; i < BenchmarkData.NUM_INPUTS && !names.isEmpty(); i++) {
+                String name = names.get(random.nextInt(names.size()));
+                prefixes.add(name.substring(0, Math.min(prefixLength, name.length())));
+            }
+            if (prefixes.isEmpty()) {
+                prefixes.add("");
+            }
+        }
+
+        @Override
+        public Object run() {
+            return trie.keysWithPrefix(prefixes.get(next++ % prefixes.size()));
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for the core map server operations, on the tiny test graph and on the full
+ * Berkeley extract. Build with the bench profile and run the resulting jar, e.g.
+ * <pre>
+ *     mvn -Pbench package -DskipTests
+ *     java -cp target/proj3-1.0-jar-with-dependencies.jar org.openjdk.jmh.Main MapBenchmarks
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapBenchmarks {
+    /** The OSM files the graph benchmarks run on, looked up on the classpath. */
+    static final String TINY_OSM = "tiny-clean.osm.xml";
+    static final String FULL_OSM = "berkeley-2018.osm.xml";
+
+    @State(Scope.Benchmark)
+    public static class Graph {
+        @Param({TINY_OSM, FULL_OSM})
+        public String osm;
+
+        Workload construction;
+        Workload closest;
+
+        @Setup
+        public void setUp() {
+            construction = Workload.create("MapWorkloads$Construction", osm);
+            closest = Workload.create("MapWorkloads$Closest", osm);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Routes {
+        @Param({TINY_OSM, FULL_OSM})
+        public String osm;
+
+        @Param({"short", "medium", "long"})
+        public String length;
+
+        Workload shortestPath;
+        Workload routeDirections;
+
+        @Setup
+        public void setUp() {
+            shortestPath = Workload.create("MapWorkloads$ShortestPath", osm, length);
+            routeDirections = Workload.create("MapWorkloads$RouteDirections", osm, length);
+        }
+    }
+
+    /** Long routes on the full map, with the graph laid out in each GraphDB.VertexOrder. */
+    @State(Scope.Benchmark)
+    public static class Layouts {
+        @Param({"OSM_ID", "BFS", "HILBERT"})
+        public String vertexOrder;
+
+        Workload shortestPath;
+
+        @Setup
+        public void setUp() {
+            shortestPath = Workload.create("MapWorkloads$ShortestPath", FULL_OSM, "long",
+                    vertexOrder);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Raster {
+        Workload getMapRaster;
+
+        @Setup
+        public void setUp() {
+            getMapRaster = Workload.create("MapWorkloads$MapRaster");
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Search {
+        @Param({TINY_OSM, FULL_OSM})
+        public String osm;
+
+        /** Length of the prefixes searched for, as typed into the search bar. */
+        @Param({"1", "2", "4"})
+        public String prefixLength;
+
+        Workload keysWithPrefix;
+
+        @Setup
+        public void setUp() {
+            keysWithPrefix = Workload.create("MapWorkloads$KeysWithPrefix", osm, prefixLength);
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object graphConstruction(Graph state) {
+        return state.construction.run();
+    }
+
+    @Benchmark
+    public Object closest(Graph state) {
+        return state.closest.run();
+    }
+
+    @Benchmark
+    public Object shortestPath(Routes state) {
+        return state.shortestPath.run();
+    }
+
+    /** A* throughput on the full map for each vertex layout. */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public Object shortestPathByVertexOrder(Layouts state) {
+        return state.shortestPath.run();
+    }
+
+    @Benchmark
+    public Object routeDirections(Routes state) {
+        return state.routeDirections.run();
+    }
+
+    @Benchmark
+    public Object getMapRaster(Raster state) {
+        return state.getMapRaster.run();
+    }
+
+    @Benchmark
+    public Object keysWithPrefix(Search state) {
+        return state.keysWithPrefix.run();
+    }
+}
@@ -0,0 +1,34 @@
+package bench;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * One operation under benchmark, run on the next of a fixed set of precomputed inputs.
+ *
+ * JMH refuses benchmark classes in the default package, but GraphDB, Router and the rest of
+ * the map server live there, and Java cannot import from the default package. So the
+ * operations are implemented as Workloads next to the map server code (see MapWorkloads),
+ * and the JMH classes in this package look them up by name. The call through this
+ * interface is monomorphic at every benchmark site, so the JIT inlines it.
+ */
+public interface Workload {
+    /** Runs the operation once and returns its result, so it is not optimized away. */
+    Object run();
+
+    /**
+     * Creates the named Workload class with the given arguments.
+     * @param className The binary name of the class, e.g. "MapWorkloads$Closest".
+     * @param args The arguments for its String... constructor.
+     */
+    static Workload create(String className, String... args) {
+        try {
+            return (Workload) Class.forName(className)
+                    .getConstructor(String[].class)
+                    .newInstance((Object) args);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Could not set up " + className, e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not set up " + className, e);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Routes every query of a parameter file in the format of TestRouter's path_params.txt, and
+ * writes the routes in the format of path_results.txt, e.g. to check the routes of a new map
+ * against the routes of the last one:
+ * <pre>
+ *     java BatchRouter berkeley-2018.osm.xml path_params.txt path_results.txt 8
+ * </pre>
+ * Like everywhere else GraphDB is built, the OSM file is the name of a classpath resource,
+ * such as the maps under src/main/resources, while the parameter and result files are paths
+ * on disk.
+ *
+ * A parameter file has two comment lines, then four lines per query: the start longitude,
+ * the start latitude, the end longitude and the end latitude. A result file has two comment
+ * lines, then for each query the number of vertices of its route and their ids, one per line.
+ *
+ * Queries are routed in chunks on a pool of threads, each with its own Router.SearchState,
+ * and the chunks are written in order as they finish, so the result file is the same byte
+ * for byte whatever the number of threads.
+ */
+public class BatchRouter {
+    /** How many queries a thread routes at a time. */
+    private static final int CHUNK_SIZE = 64;
+    /** How many chunks per thread may be routed ahead of the one being written. */
+    private static final int CHUNKS_AHEAD = 4;
+    private static final String RESULTS_HEADER = "# Routes found by BatchRouter.\n"
+            + "# For each query: the number of vertices, then one vertex id per line.\n";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3 || args.length > 4) {
+            System.err.println("Usage: BatchRouter <osm classpath resource> <query file>"
+                    + " <result file> [threads, default all cores]");
+            System.exit(1);
+        }
+        int threads = args.length == 4 ? Integer.parseInt(args[3])
+                : Runtime.getRuntime().availableProcessors();
+        List<double[]> queries = readQueries(Paths.get(args[1]));
+        GraphDB g = new GraphDB(args[0]);
+
+        long start = System.nanoTime();
+        try (Writer out = new OutputStreamWriter(Files.newOutputStream(Paths.get(args[2])),
+                StandardCharsets.UTF_8)) {
+            route(g, queries, out, threads);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("Routed %d queries in %.2f s on %d threads:"
+                + " %.0f queries per second.", queries.size(), seconds, threads,
+                queries.size() / seconds));
+    }
+
+    /**
+     * Reads the queries of a parameter file.
+     * @return Each query as {start lon, start lat, end lon, end lat}.
+     */
+    static List<double[]> readQueries(Path path) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            if (!line.trim().isEmpty()) {
+                lines.add(line.trim());
+            }
+        }
+        int lineIdx = 2; // ignore comment lines
+        if ((lines.size() - lineIdx) % 4 != 0) {
+            throw new IllegalArgumentException(path + " does not hold four lines per query.");
+        }
+        List<double[]> queries = new ArrayList<>();
+        for (; lineIdx < lines.size(); lineIdx += 4) {
+            double[] query = new double[4];
+            for (int k = 0; k < 4; k++) {
+                query[k] = Double.parseDouble(lines.get(lineIdx + k));
+            }
+            queries.add(query);
+        }
+        return queries;
+    }
+
+    /**
+     * Routes the queries on a graph and writes the results, header included.
+     * @param threads How many threads to route on.
+     */
+    static void route(GraphDB g, List<double[]> queries, Writer out, int threads)
+            throws IOException {
+        Writer buffered = new BufferedWriter(out);
+        buffered.write(RESULTS_HEADER);
+        ThreadLocal<Router.SearchState> states =
+                ThreadLocal.withInitial(() -> new Router.SearchState(g.size()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            Deque<Future<String>> running = new ArrayDeque<>();
+            int next = 0;
+            while (next < queries.size() || !running.isEmpty()) {
+                while (next < queries.size() && running.size() < CHUNKS_AHEAD * threads) {
+                    List<double[]> chunk = queries.subList(next,
+                            Math.min(queries.size(), next + CHUNK_SIZE));
+                    running.addLast(pool.submit(() -> routeChunk(g, chunk, states.get())));
+                    next += chunk.size();
+                }
+                buffered.write(running.removeFirst().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while routing.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Routing failed.", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        buffered.flush();
+    }
+
+    /** Routes a chunk of queries, and returns their results as lines of a result file. */
+    private static String routeChunk(GraphDB g, List<double[]> chunk,
+                                     Router.SearchState state) {
+        StringBuilder sb = new StringBuilder();
+        for (double[] query : chunk) {
+            int start = g.closestIndex(query[0], query[1]);
+            int end = g.closestIndex(query[2], query[3]);
+            List<Long> route = new ArrayList<>();
+            if (start >= 0 && end >= 0) {
+                route = Router.shortestPath(g, EdgeOverlay.EMPTY, start, end, state);
+            }
+            sb.append(route.size()).append('\n');
+            for (long v : route) {
+                sb.append(v).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,207 @@
+import primitives.LongDoubleMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runtime changes to the road network, such as closed roads, layered over the graphs built
+ * from the OSM files. An overlay is immutable: every change returns a new overlay with the
+ * next version number, so a route search that takes the current overlay once at its start
+ * sees the same road network all the way through, whatever changes arrive meanwhile.
+ *
+ * Edges are identified by the OSM ids of their two endpoints and are undirected, like the
+ * graph. A change multiplies the length of an edge by a factor of at least 1, or closes it
+ * altogether. Factors below 1 are not allowed, since they would let the A* heuristic
+ * overestimate the remaining distance, and A* would no longer find the shortest route.
+ */
+public class EdgeOverlay {
+    /** The factor of a closed edge. */
+    public static final double CLOSED = Double.POSITIVE_INFINITY;
+    /** The overlay with no changes. */
+    public static final EdgeOverlay EMPTY = new EdgeOverlay(0, Collections.emptyMap());
+
+    private final long version;
+    /* Factor of every changed edge, under both endpoints. Never modified once built. */
+    private final Map<Long, Map<Long, Double>> factors;
+    /*
+     * The same factors for each graph searched under this overlay, keyed by the packed dense
+     * vertex numbers of both endpoints, so that relaxing an edge neither boxes nor hashes an
+     * OSM id. Built the first time a graph is searched; copied on write, since there are
+     * only as many graphs as regions.
+     */
+    private volatile GraphDB[] denseGraphs = new GraphDB[0];
+    private volatile LongDoubleMap[] denseFactors = new LongDoubleMap[0];
+
+    private EdgeOverlay(long version, Map<Long, Map<Long, Double>> factors) {
+        this.version = version;
+        this.factors = factors;
+    }
+
+    /** Returns the version of this overlay, which goes up by one with every change. */
+    public long version() {
+        return version;
+    }
+
+    public boolean isEmpty() {
+        return factors.isEmpty();
+    }
+
+    /**
+     * Returns the factor the length of the edge between two vertices is multiplied by: 1 for
+     * an unchanged edge, and CLOSED for a closed one.
+     */
+    public double factor(long v, long w) {
+        Map<Long, Double> edges = factors.get(v);
+        if (edges == null) {
+            return 1;
+        }
+        Double f = edges.get(w);
+        return f == null ? 1 : f;
+    }
+
+    /**
+     * Returns the length of the edge between vertices v and w of a graph under this overlay,
+     * in miles, or infinity if the edge is closed.
+     * @param g The graph.
+     * @param v The dense vertex number of one endpoint.
+     * @param w The dense vertex number of the other endpoint.
+     */
+    double weight(GraphDB g, int v, int w) {
+        double distance = g.distanceAt(v, w);
+        if (factors.isEmpty()) {
+            return distance;
+        }
+        return distance * denseFactors(g).get((long) v << 32 | w);
+    }
+
+    /** Returns the factors of the changed edges of g, keyed by packed dense vertex numbers. */
+    private LongDoubleMap denseFactors(GraphDB g) {
+        GraphDB[] graphs = denseGraphs;
+        for (int i = 0; i < graphs.length; i++) {
+            if (graphs[i] == g) {
+                return denseFactors[i];
+            }
+        }
+        synchronized (this) {
+            graphs = denseGraphs;
+            LongDoubleMap[] maps = denseFactors;
+            for (int i = 0; i < graphs.length; i++) {
+                if (graphs[i] == g) {
+                    return maps[i];
+                }
+            }
+            LongDoubleMap dense = new LongDoubleMap(1, factors.size());
+            for (Map.Entry<Long, Map<Long, Double>> entry : factors.entrySet()) {
+                int v = g.index(entry.getKey());
+                if (v < 0) {
+                    continue;
+                }
+                for (Map.Entry<Long, Double> edge : entry.getValue().entrySet()) {
+                    int w = g.index(edge.getKey());
+                    if (w >= 0) {
+                        dense.put((long) v << 32 | w, edge.getValue());
+                    }
+                }
+            }
+            graphs = Arrays.copyOf(graphs, graphs.length + 1);
+            maps = Arrays.copyOf(maps, maps.length + 1);
+            graphs[graphs.length - 1] = g;
+            maps[maps.length - 1] = dense;
+            /* Publish the maps first, so a reader that finds g also finds its map. */
+            denseFactors = maps;
+            denseGraphs = graphs;
+            return dense;
+        }
+    }
+
+    /**
+     * Returns a new overlay with the given edges set to the given factor.
+     * @param edges The edges, as pairs of OSM ids.
+     * @param factor The new factor: 1 to restore an edge, CLOSED to close it.
+     */
+    public EdgeOverlay withFactor(List<long[]> edges, double factor) {
+        if (!(factor >= 1)) {
+            throw new IllegalArgumentException("Edge factors must be at least 1.");
+        }
+        Map<Long, Map<Long, Double>> copy = new HashMap<>();
+        for (Map.Entry<Long, Map<Long, Double>> entry : factors.entrySet()) {
+            copy.put(entry.getKey(), new HashMap<>(entry.getValue()));
+        }
+        for (long[] edge : edges) {
+            put(copy, edge[0], edge[1], factor);
+            put(copy, edge[1], edge[0], factor);
+        }
+        return new EdgeOverlay(version + 1, copy);
+    }
+
+    /**
+     * Returns a new overlay with the factors of the given edges multiplied by a multiplier,
+     * e.g. to make a search avoid them. Closed edges stay closed.
+     * @param edges The edges, as pairs of OSM ids, each listed once.
+     * @param multiplier What to multiply their factors by, at least 1.
+     */
+    public EdgeOverlay scaled(List<long[]> edges, double multiplier) {
+        if (!(multiplier >= 1)) {
+            throw new IllegalArgumentException("Edge factors must be at least 1.");
+        }
+        Map<Long, Map<Long, Double>> copy = new HashMap<>();
+        for (Map.Entry<Long, Map<Long, Double>> entry : factors.entrySet()) {
+            copy.put(entry.getKey(), new HashMap<>(entry.getValue()));
+        }
+        for (long[] edge : edges) {
+            double factor = factor(edge[0], edge[1]) * multiplier;
+            put(copy, edge[0], edge[1], factor);
+            put(copy, edge[1], edge[0], factor);
+        }
+        return new EdgeOverlay(version + 1, copy);
+    }
+
+    private static void put(Map<Long, Map<Long, Double>> factors, long v, long w,
+                            double factor) {
+        if (factor == 1) {
+            Map<Long, Double> edges = factors.get(v);
+            if (edges != null) {
+                edges.remove(w);
+                if (edges.isEmpty()) {
+                    factors.remove(v);
+                }
+            }
+        } else {
+            factors.computeIfAbsent(v, k -> new HashMap<>()).put(w, factor);
+        }
+    }
+
+    /** Returns every changed edge once, with the smaller OSM id first. */
+    public List<Change> changes() {
+        List<Change> changes = new ArrayList<>();
+        for (Map.Entry<Long, Map<Long, Double>> entry : factors.entrySet()) {
+            for (Map.Entry<Long, Double> edge : entry.getValue().entrySet()) {
+                if (entry.getKey() < edge.getKey()) {
+                    changes.add(new Change(entry.getKey(), edge.getKey(), edge.getValue()));
+                }
+            }
+        }
+        return changes;
+    }
+
+    /** The change to one edge. */
+    public static class Change {
+        public final long from;
+        public final long to;
+        public final double factor;
+
+        Change(long from, long to, double factor) {
+            this.from = from;
+            this.to = to;
+            this.factor = factor;
+        }
+
+        public boolean isClosed() {
+            return factor == CLOSED;
+        }
+    }
+}
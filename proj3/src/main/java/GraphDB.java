@@ -10,6 +10,9 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.*;
 
+import primitives.IntArrayList;
+import primitives.LongIntMap;
+
 
 /**
  * Graph for storing all of the intersection (vertex) and road (edge) information.
@@ -18,18 +21,82 @@ import java.util.*;
  * methods. You'll also need to include instance variables and methods for
  * modifying the graph (e.g. addNode and addEdge).
  *
+ * Concurrency: a GraphDB is built by its constructor and read-only afterwards. The add
+ * methods are only for the GraphBuildingHandler during the build, and throw
+ * IllegalStateException once it is over. Everything the other methods read is held in final
+ * fields, or only reachable through them, and never changes after the constructor returns.
+ * So a GraphDB is safely published to other threads however they get hold of it, and any
+ * number of threads may query it at once without locking. Methods returning collections
+ * return new ones that the caller may change.
+ *
  * @author Alan Yao, Josh Hug
  */
 
 
 public class GraphDB {
+    /**
+     * By default, only components of a single vertex, i.e. nodes with no connections at all,
+     * are dropped after the build. Pass a larger minimum component size to the constructor to
+     * also drop small islands of road that cannot be reached from the rest of the map.
+     */
+    static final int DEFAULT_MIN_COMPONENT_SIZE = 2;
+
+    /** How the vertices are laid out in memory after the build. */
+    public enum VertexOrder {
+        /** In order of OSM id, which is roughly the order they were mapped in. */
+        OSM_ID,
+        /** Breadth-first through each component, so neighbors are numbered close together. */
+        BFS,
+        /**
+         * Along a <a href="https://en.wikipedia.org/wiki/Hilbert_curve">Hilbert curve</a>
+         * through the bounding box of the map, so that vertices close to each other on the map
+         * are close to each other in memory, whatever the shape of the road network.
+         */
+        HILBERT
+    }
+
+    /** Bits per coordinate of the Hilbert curve grid the map is snapped to. */
+    private static final int HILBERT_BITS = 16;
+
     /** Your instance variables for storing the graph. You should consider
      * creating helper classes, e.g. Node, Edge, etc. */
 
-    private Map<Long, Node> spots = new HashMap<>();
+    /*
+     * Build-time state, filled in by GraphBuildingHandler and freed by compact(): the nodes,
+     * numbered in the order they are added, the map from OSM id to that number, and the
+     * locations by OSM id.
+     */
+    private List<Node> spotNodes = new ArrayList<>();
+    private LongIntMap spots = new LongIntMap();
     private Map<Long, Location> sites = new HashMap<>();
-    private Map<String, List<Long>> wayNames = new HashMap<>();
-    private TrieST<Long> st = new TrieST<>();
+    /* The location names, filled in during the build and only read afterwards. */
+    private final Map<String, List<Long>> wayNames = new HashMap<>();
+    private final TrieST<Long> st = new TrieST<>();
+
+    /*
+     * The compacted graph, see GraphStorage for its layout. Vertices are numbered densely
+     * from 0 to size() - 1, in BFS order unless another VertexOrder is asked for, so that
+     * vertices close to each other in the graph are close to each other in memory. Ways are
+     * numbered too, and wayNameTable holds the name of each number.
+     */
+    private final GraphStorage storage;
+    private final String[] wayNameTable;
+
+    /* The compacted locations, sorted by OSM id. */
+    private final long[] siteIds;
+    private final double[] siteLons;
+    private final double[] siteLats;
+    private final String[] siteNames;
+
+    /** The arrays compact() builds, for the constructor to move into the final fields. */
+    private static class Layout {
+        GraphStorage.Columns graph;
+        String[] wayNameTable;
+        long[] siteIds;
+        double[] siteLons;
+        double[] siteLats;
+        String[] siteNames;
+    }
 
     /**
      * Example constructor shows how to create and start an XML parser.
@@ -37,6 +104,40 @@ public class GraphDB {
      * @param dbPath Path to the XML file to be parsed.
      */
     public GraphDB(String dbPath) {
+        this(dbPath, DEFAULT_MIN_COMPONENT_SIZE);
+    }
+
+    /**
+     * Build the graph, dropping connected components with fewer than minComponentSize
+     * vertices.
+     * @param dbPath Path to the XML file to be parsed.
+     * @param minComponentSize The smallest component to keep.
+     */
+    public GraphDB(String dbPath, int minComponentSize) {
+        this(dbPath, minComponentSize, VertexOrder.BFS);
+    }
+
+    /**
+     * Build the graph, dropping connected components with fewer than minComponentSize
+     * vertices and laying out the rest in the given order.
+     * @param dbPath Path to the XML file to be parsed.
+     * @param minComponentSize The smallest component to keep.
+     * @param vertexOrder How to number the vertices.
+     */
+    public GraphDB(String dbPath, int minComponentSize, VertexOrder vertexOrder) {
+        this(dbPath, minComponentSize, vertexOrder, GraphStorage.defaultKind());
+    }
+
+    /**
+     * Build the graph, dropping connected components with fewer than minComponentSize
+     * vertices, laying out the rest in the given order and keeping it in the given storage.
+     * @param dbPath Path to the XML file to be parsed.
+     * @param minComponentSize The smallest component to keep.
+     * @param vertexOrder How to number the vertices.
+     * @param storageKind Where to keep the compacted graph.
+     */
+    GraphDB(String dbPath, int minComponentSize, VertexOrder vertexOrder,
+            GraphStorage.Kind storageKind) {
         try {
 //            File inputFile = new File(dbPath);
 //            FileInputStream inputStream = new FileInputStream(inputFile);
@@ -50,7 +151,16 @@ public class GraphDB {
         } catch (ParserConfigurationException | SAXException | IOException e) {
             e.printStackTrace();
         }
-        clean();
+        Layout layout = compact(minComponentSize, vertexOrder);
+        storage = GraphStorage.of(storageKind, layout.graph);
+        wayNameTable = layout.wayNameTable;
+        siteIds = layout.siteIds;
+        siteLons = layout.siteLons;
+        siteLats = layout.siteLats;
+        siteNames = layout.siteNames;
+        spots = null;
+        spotNodes = null;
+        sites = null;
     }
 
     /**
@@ -63,32 +173,220 @@ public class GraphDB {
     }
 
     /**
-     *  Remove nodes with no connections from the graph.
+     *  Remove small components from the graph and move the survivors into flat arrays.
      *  While this does not guarantee that any two nodes in the remaining graph are connected,
      *  we can reasonably assume this since typically roads are connected.
+     *  The constructor then moves the arrays into its final fields and releases the
+     *  build-time maps keyed by OSM id.
+     *  @param minComponentSize The smallest component to keep.
+     *  @param vertexOrder How to number the surviving vertices.
      */
-    private void clean() {
-        // TODO: Your code here.
-        Iterator<Map.Entry<Long, Node>> nodes = spots.entrySet().iterator();
-        while (nodes.hasNext()) {
-            Map.Entry<Long, Node> item = nodes.next();
-            Node n = item.getValue();
-            if (noConnectNode(n)) {
-                nodes.remove();
+    private Layout compact(int minComponentSize, VertexOrder vertexOrder) {
+        /* Number the nodes in OSM id order, so the result does not depend on hashing. */
+        long[] osmIds = spots.keys();
+        Arrays.sort(osmIds);
+        Node[] nodes = new Node[osmIds.length];
+        /* The OSM id order position of each node, by the number it was added under. */
+        int[] position = new int[spotNodes.size()];
+        for (int i = 0; i < osmIds.length; i++) {
+            int added = spots.get(osmIds[i]);
+            nodes[i] = spotNodes.get(added);
+            position[added] = i;
+        }
+
+        /* Lay out each component that is large enough in BFS order. */
+        int[] order = new int[nodes.length];
+        boolean[] seen = new boolean[nodes.length];
+        int count = 0;
+        for (int seed = 0; seed < nodes.length; seed++) {
+            if (seen[seed]) {
+                continue;
             }
+            int componentStart = count;
+            seen[seed] = true;
+            order[count++] = seed;
+            for (int head = componentStart; head < count; head++) {
+                IntArrayList adjNodes = nodes[order[head]].adjNodes;
+                for (int a = 0; a < adjNodes.size(); a++) {
+                    int next = position[adjNodes.get(a)];
+                    if (!seen[next]) {
+                        seen[next] = true;
+                        order[count++] = next;
+                    }
+                }
+            }
+            if (count - componentStart < minComponentSize) {
+                count = componentStart;
+            }
+        }
+        if (vertexOrder == VertexOrder.OSM_ID) {
+            Arrays.sort(order, 0, count);
+        } else if (vertexOrder == VertexOrder.HILBERT) {
+            hilbertSort(order, count, nodes);
+        }
+
+        int[] dense = new int[nodes.length];
+        Arrays.fill(dense, -1);
+        for (int v = 0; v < count; v++) {
+            dense[order[v]] = v;
+        }
+
+        long[] ids = new long[count];
+        double[] lons = new double[count];
+        double[] lats = new double[count];
+        int[] adjStart = new int[count + 1];
+        int[] vertexWayStart = new int[count + 1];
+        for (int v = 0; v < count; v++) {
+            Node n = nodes[order[v]];
+            ids[v] = osmIds[order[v]];
+            lons[v] = n.lon;
+            lats[v] = n.lat;
+            adjStart[v + 1] = adjStart[v] + n.adjNodes.size();
+            vertexWayStart[v + 1] = vertexWayStart[v] + n.nodeNames.size();
+        }
+        /* Number the way names in order of first use, so each is stored once. */
+        Map<String, Integer> wayNumbers = new HashMap<>();
+        int[] vertexWays = new int[vertexWayStart[count]];
+        int[] adj = new int[adjStart[count]];
+        int[] edgeWays = new int[adjStart[count]];
+        for (int v = 0; v < count; v++) {
+            int e = vertexWayStart[v];
+            for (String way : nodes[order[v]].nodeNames) {
+                vertexWays[e++] = wayNumbers.computeIfAbsent(way, x -> wayNumbers.size());
+            }
+            e = adjStart[v];
+            for (String way : nodes[order[v]].adjWays) {
+                edgeWays[e++] = wayNumbers.computeIfAbsent(way, x -> wayNumbers.size());
+            }
+            e = adjStart[v];
+            IntArrayList adjNodes = nodes[order[v]].adjNodes;
+            for (int a = 0; a < adjNodes.size(); a++) {
+                adj[e++] = dense[position[adjNodes.get(a)]];
+            }
+        }
+
+        long[] sortedIds = new long[count];
+        int[] sortedIndex = new int[count];
+        int k = 0;
+        for (int i = 0; i < osmIds.length; i++) {
+            if (dense[i] >= 0) {
+                sortedIds[k] = osmIds[i];
+                sortedIndex[k] = dense[i];
+                k++;
+            }
+        }
+
+        long[] siteIds = new long[sites.size()];
+        k = 0;
+        for (long id : sites.keySet()) {
+            siteIds[k++] = id;
+        }
+        Arrays.sort(siteIds);
+        double[] siteLons = new double[siteIds.length];
+        double[] siteLats = new double[siteIds.length];
+        String[] siteNames = new String[siteIds.length];
+        for (int i = 0; i < siteIds.length; i++) {
+            Location loc = sites.get(siteIds[i]);
+            siteLons[i] = loc.lon;
+            siteLats[i] = loc.lat;
+            siteNames[i] = loc.name;
+        }
+
+
+        String[] wayNameTable = new String[wayNumbers.size()];
+        for (Map.Entry<String, Integer> way : wayNumbers.entrySet()) {
+            wayNameTable[way.getValue()] = way.getKey();
+        }
+
+        Layout layout = new Layout();
+        layout.graph = new GraphStorage.Columns();
+        layout.graph.ids = ids;
+        layout.graph.lons = lons;
+        layout.graph.lats = lats;
+        layout.graph.adjStart = adjStart;
+        layout.graph.adj = adj;
+        layout.graph.edgeWays = edgeWays;
+        layout.graph.vertexWayStart = vertexWayStart;
+        layout.graph.vertexWays = vertexWays;
+        layout.graph.sortedIds = sortedIds;
+        layout.graph.sortedIndex = sortedIndex;
+        layout.wayNameTable = wayNameTable;
+        layout.siteIds = siteIds;
+        layout.siteLons = siteLons;
+        layout.siteLats = siteLats;
+        layout.siteNames = siteNames;
+        return layout;
+    }
+
+    /**
+     * Sorts the first count entries of order by the Hilbert index of their node's position
+     * within the bounding box of those nodes.
+     */
+    private static void hilbertSort(int[] order, int count, Node[] nodes) {
+        double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            Node n = nodes[order[i]];
+            minLon = Math.min(minLon, n.lon);
+            maxLon = Math.max(maxLon, n.lon);
+            minLat = Math.min(minLat, n.lat);
+            maxLat = Math.max(maxLat, n.lat);
+        }
+        int cells = 1 << HILBERT_BITS;
+        double lonScale = (cells - 1) / Math.max(maxLon - minLon, Double.MIN_VALUE);
+        double latScale = (cells - 1) / Math.max(maxLat - minLat, Double.MIN_VALUE);
+
+        /* Pack the 32-bit curve index and the 31-bit node position into one sortable long. */
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            Node n = nodes[order[i]];
+            int x = (int) ((n.lon - minLon) * lonScale);
+            int y = (int) ((n.lat - minLat) * latScale);
+            keys[i] = hilbertIndex(x, y, HILBERT_BITS) << 31 | order[i];
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < count; i++) {
+            order[i] = (int) (keys[i] & Integer.MAX_VALUE);
         }
     }
 
+    /**
+     * Returns the distance along a Hilbert curve filling a 2^bits by 2^bits grid to the
+     * cell (x, y).
+     */
+    static long hilbertIndex(int x, int y, int bits) {
+        int n = 1 << bits;
+        long d = 0;
+        for (int s = n / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = n - 1 - x;
+                    y = n - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
     private class Node {
         double lon;
         double lat;
-        List<Long> adjNodes;
+        /* The neighbours, by the number they were added under, and the way to each. */
+        IntArrayList adjNodes;
+        List<String> adjWays;
         Set<String> nodeNames;
 
         Node(double lon, double lat) {
             this.lon = lon;
             this.lat = lat;
-            this.adjNodes = new LinkedList<>();
+            this.adjNodes = new IntArrayList();
+            this.adjWays = new LinkedList<>();
             this.nodeNames = new HashSet<>();
         }
     }
@@ -105,79 +403,115 @@ public class GraphDB {
         }
     }
 
+    /** Throws IllegalStateException if the build is over, see the class comment. */
+    private void checkBuilding() {
+        if (spots == null) {
+            throw new IllegalStateException("A GraphDB cannot be changed once it is built.");
+        }
+    }
+
     void addNode(long id, double lon, double lat) {
+        checkBuilding();
         Node newNode = new Node(lon, lat);
-        spots.put(id, newNode);
+        int added = spots.get(id);
+        if (added >= 0) {
+            spotNodes.set(added, newNode);
+        } else {
+            spots.put(id, spotNodes.size());
+            spotNodes.add(newNode);
+        }
     }
 
     void addLocation(long id, double lon, double lat, String locationName) {
+        checkBuilding();
         Location newLoc = new Location(lon, lat, locationName);
         sites.put(id, newLoc);
     }
 
     void addEdge(long id1, long id2) {
-        if (isNodeValid(id1) && isNodeValid(id2)) {
-            spots.get(id1).adjNodes.add(id2);
-            spots.get(id2).adjNodes.add(id1);
+        addEdge(id1, id2, "");
+    }
+
+    private void addEdge(long id1, long id2, String wayName) {
+        checkBuilding();
+        int added1 = spots.get(id1);
+        int added2 = spots.get(id2);
+        if (added1 >= 0 && added2 >= 0) {
+            spotNodes.get(added1).adjNodes.add(added2);
+            spotNodes.get(added1).adjWays.add(wayName);
+            spotNodes.get(added2).adjNodes.add(added1);
+            spotNodes.get(added2).adjWays.add(wayName);
         } else {
             throw new IllegalArgumentException("Node not valid.");
         }
     }
 
-    boolean noConnectNode(Node n) {
-        if (n.adjNodes.isEmpty()) {
-            return true;
-        } else {
-            return false;
+    /** Returns the build-time node with the given OSM id. */
+    private Node spot(long id) {
+        int added = spots.get(id);
+        if (added < 0) {
+            throw new IllegalArgumentException("Node not valid.");
         }
+        return spotNodes.get(added);
     }
 
     double locationLat(long id) {
-        if (isLocationValid(id)) {
-            return sites.get(id).lat;
-        } else {
-            throw new IllegalArgumentException("Location not found.");
-        }
-
+        return siteLats[siteIndex(id)];
     }
 
     double locationLon(long id) {
-        if (isLocationValid(id)) {
-            return sites.get(id).lon;
-        } else {
-            throw new IllegalArgumentException("Location not found.");
-        }
+        return siteLons[siteIndex(id)];
     }
 
-    private boolean isNodeValid(long id) {
-        if(spots.containsKey(id)) {
-            return true;
-        }
-        return false;
+    /**
+     * Returns the dense vertex number of the node with the given OSM id, or -1 if it is
+     * not in the graph.
+     */
+    int index(long id) {
+        return storage.vertexOf(id);
     }
 
-    private boolean isLocationValid(long id) {
-        if (sites.containsKey(id)) {
-            return true;
+    /** Returns the dense vertex number of the node with the given OSM id. */
+    private int vertex(long id) {
+        int v = index(id);
+        if (v < 0) {
+            throw new IllegalArgumentException("Node not found.");
         }
-        return false;
+        return v;
     }
 
-    String getWayName(long id) {
-
-        if (isLocationValid(id)) {
-            return sites.get(id).name;
-        } else {
+    private int siteIndex(long id) {
+        int i = Arrays.binarySearch(siteIds, id);
+        if (i < 0) {
             throw new IllegalArgumentException("Location not found.");
         }
+        return i;
+    }
 
+    String getWayName(long id) {
+        return siteNames[siteIndex(id)];
     }
 
     public List<String> getLocationsByPrefix(String prefix) {
+        return getLocationsByPrefix(st.cursor(), prefix);
+    }
+
+    /** Returns a cursor over the cleaned names of the locations, see getLocationsByPrefix. */
+    TrieST<Long>.Cursor locationCursor() {
+        return st.cursor();
+    }
+
+    /**
+     * Like getLocationsByPrefix(prefix), but moves a cursor from locationCursor() to the
+     * cleaned prefix instead of walking down from the root of the trie, so that a session
+     * typing a name one character at a time takes one step per character.
+     */
+    List<String> getLocationsByPrefix(TrieST<Long>.Cursor cursor, String prefix) {
         List<String> locationNameList = new LinkedList<>();
 
         String cleaned = cleanString(prefix);
-        for (String key : st.keysWithPrefix(cleaned)) {
+        cursor.moveTo(cleaned);
+        for (String key : cursor.keys()) {
             Long id = wayNames.get(key).get(0);
             String fullName = getWayName(id);
             locationNameList.add(fullName);
@@ -190,6 +524,9 @@ public class GraphDB {
         List<Long> locationList = new LinkedList<>();
 
         String cleaned = cleanString(locationName);
+        if (!wayNames.containsKey(cleaned)) {
+            return locationList;
+        }
         for (long v : wayNames.get(cleaned)) {
             locationList.add(v);
         }
@@ -203,8 +540,103 @@ public class GraphDB {
      * @return An iterable of id's of all vertices in the graph.
      */
     Iterable<Long> vertices() {
-        //YOUR CODE HERE, this currently returns only an empty list.
-        return spots.keySet();
+        List<Long> vertices = new ArrayList<>(storage.size());
+        for (int v = 0; v < storage.size(); v++) {
+            vertices.add(storage.id(v));
+        }
+        return vertices;
+    }
+
+    /** Returns the number of vertices in the graph. */
+    int size() {
+        return storage.size();
+    }
+
+    /* Accessors by dense vertex number, for searches that want to avoid boxing. */
+
+    /** Returns the OSM id of vertex v. */
+    long id(int v) {
+        return storage.id(v);
+    }
+
+    double lonAt(int v) {
+        return storage.lon(v);
+    }
+
+    double latAt(int v) {
+        return storage.lat(v);
+    }
+
+    /** Returns the position in the edge arrays of the first edge out of vertex v. */
+    int firstEdge(int v) {
+        return storage.firstEdge(v);
+    }
+
+    /** Returns the position in the edge arrays just past the last edge out of vertex v. */
+    int endEdge(int v) {
+        return storage.endEdge(v);
+    }
+
+    /** Returns the vertex edge e leads to. */
+    int edgeTarget(int e) {
+        return storage.edgeTarget(e);
+    }
+
+    /** Returns the name of the way edge e was added for, or "" if it has none. */
+    String edgeWay(int e) {
+        return wayNameTable[storage.edgeWay(e)];
+    }
+
+    /* Accessors for the named locations, numbered from 0 to siteCount() - 1. */
+
+    int siteCount() {
+        return siteIds.length;
+    }
+
+    long siteId(int i) {
+        return siteIds[i];
+    }
+
+    double siteLonAt(int i) {
+        return siteLons[i];
+    }
+
+    double siteLatAt(int i) {
+        return siteLats[i];
+    }
+
+    String siteNameAt(int i) {
+        return siteNames[i];
+    }
+
+    /** Returns the great-circle distance between vertices v and w in miles. */
+    double distanceAt(int v, int w) {
+        return distance(storage.lon(v), storage.lat(v), storage.lon(w), storage.lat(w));
+    }
+
+    /**
+     * Returns the edges of every way with the given name, compared the way search compares
+     * names, as pairs of OSM ids with the smaller id first. Each edge is listed once.
+     * @param wayName The name of the way, e.g. "Bancroft Way".
+     */
+    List<long[]> edgesOfWay(String wayName) {
+        String cleaned = cleanString(wayName);
+        /* There are far fewer distinct way names than edges, so clean each name once. */
+        boolean[] matches = new boolean[wayNameTable.length];
+        for (int way = 0; way < wayNameTable.length; way++) {
+            matches[way] = cleanString(wayNameTable[way]).equals(cleaned);
+        }
+        List<long[]> edges = new ArrayList<>();
+        for (int v = 0; v < storage.size(); v++) {
+            for (int e = storage.firstEdge(v); e < storage.endEdge(v); e++) {
+                long from = storage.id(v);
+                long to = storage.id(storage.edgeTarget(e));
+                if (from < to && matches[storage.edgeWay(e)]) {
+                    edges.add(new long[]{from, to});
+                }
+            }
+        }
+        return edges;
     }
 
     /**
@@ -213,11 +645,12 @@ public class GraphDB {
      * @return An iterable of the ids of the neighbors of v.
      */
     Iterable<Long> adjacent(long v) {
-        if (isNodeValid(v)) {
-            return spots.get(v).adjNodes;
-        } else {
-            throw new IllegalArgumentException("Node not found.");
+        int i = vertex(v);
+        List<Long> neighbors = new ArrayList<>(storage.endEdge(i) - storage.firstEdge(i));
+        for (int e = storage.firstEdge(i); e < storage.endEdge(i); e++) {
+            neighbors.add(storage.id(storage.edgeTarget(e)));
         }
+        return neighbors;
     }
 
     /**
@@ -278,17 +711,28 @@ public class GraphDB {
      * @return The id of the node in the graph closest to the target.
      */
     long closest(double lon, double lat) {
+        int v = closestIndex(lon, lat);
+        if (v < 0) {
+            return -117;
+        }
+        return storage.id(v);
+    }
+
+    /**
+     * Returns the dense vertex number of the vertex closest to the given longitude and
+     * latitude, or -1 if the graph is empty.
+     */
+    int closestIndex(double lon, double lat) {
         double shortest = Double.MAX_VALUE;
-        long closestId = -117;
-        for (long id : spots.keySet()) {
-//            Node n = spots.get(id);
-            double currentDistance = distance(lon(id), lat(id), lon, lat);
+        int closest = -1;
+        for (int v = 0; v < storage.size(); v++) {
+            double currentDistance = distance(storage.lon(v), storage.lat(v), lon, lat);
             if (currentDistance < shortest) {
                 shortest = currentDistance;
-                closestId = id;
+                closest = v;
             }
         }
-        return closestId;
+        return closest;
 
     }
 
@@ -298,11 +742,7 @@ public class GraphDB {
      * @return The longitude of the vertex.
      */
     double lon(long id) {
-        if (isNodeValid(id)) {
-            return spots.get(id).lon;
-        } else {
-            throw new IllegalArgumentException("Node not found.");
-        }
+        return storage.lon(vertex(id));
     }
 
     /**
@@ -311,11 +751,7 @@ public class GraphDB {
      * @return The latitude of the vertex.
      */
     double lat(long id) {
-        if (isNodeValid(id)) {
-            return spots.get(id).lat;
-        } else {
-            throw new IllegalArgumentException("Node not found.");
-        }
+        return storage.lat(vertex(id));
     }
 
     /**
@@ -324,14 +760,15 @@ public class GraphDB {
      * @param nodeName The name of the node
      */
     void addHighWay(List<Long> highWay, String nodeName) {
+        checkBuilding();
         int length = highWay.size();
         for (int i = 0; i < length; i++) {
             if (i == 0) {
-                spots.get(highWay.get(i)).nodeNames.add(nodeName);
+                spot(highWay.get(i)).nodeNames.add(nodeName);
                 continue;
             }
-            addEdge(highWay.get(i - 1), highWay.get(i));
-            spots.get(highWay.get(i)).nodeNames.add(nodeName);
+            addEdge(highWay.get(i - 1), highWay.get(i), nodeName);
+            spot(highWay.get(i)).nodeNames.add(nodeName);
         }
 
     }
@@ -345,6 +782,7 @@ public class GraphDB {
      */
 
     void addName(long id, double lon, double lat, String name) {
+        checkBuilding();
         String goodName = cleanString(name);
 
         if (!wayNames.containsKey(goodName)) {
@@ -358,9 +796,10 @@ public class GraphDB {
     }
 
     Set<String> nodeNames(long v) {
+        int i = vertex(v);
         Set<String> names = new HashSet<>();
-        for (String way : spots.get(v).nodeNames) {
-            names.add(way);
+        for (int k = storage.firstVertexWay(i); k < storage.endVertexWay(i); k++) {
+            names.add(wayNameTable[storage.vertexWay(k)]);
         }
         return names;
     }
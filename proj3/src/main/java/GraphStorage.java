@@ -0,0 +1,348 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Where a GraphDB keeps its compacted vertex and edge arrays, see GraphDB.compact. Every
+ * read of the graph goes through these accessors, so the arrays can live outside the Java
+ * heap: a map the size of the Bay Area then costs the garbage collector nothing to trace,
+ * and the heap stays the same size whatever map is loaded.
+ *
+ * Vertex v has OSM id id(v) and position (lon(v), lat(v)). Its edges are firstEdge(v) to
+ * endEdge(v) - 1; edge e leads to edgeTarget(e) and belongs to the way numbered edgeWay(e).
+ * The ways through v are vertexWay(firstVertexWay(v)) to vertexWay(endVertexWay(v) - 1).
+ * Ways are numbered by GraphDB, which keeps their names.
+ */
+abstract class GraphStorage {
+    /** Where to keep the arrays. */
+    enum Kind {
+        /** In ordinary Java arrays. */
+        HEAP,
+        /** In direct ByteBuffers, allocated outside the heap. */
+        DIRECT,
+        /**
+         * In a temporary file mapped into memory, so the operating system can page the
+         * graph in and out as it is used.
+         */
+        MAPPED
+    }
+
+    /**
+     * Set this system property to heap, direct or mapped to choose the storage of graphs
+     * built without an explicit Kind. The default is heap.
+     */
+    static final String STORAGE_PROPERTY = "bearmaps.storage";
+
+    /** Returns the storage chosen by STORAGE_PROPERTY. */
+    static Kind defaultKind() {
+        return Kind.valueOf(System.getProperty(STORAGE_PROPERTY, "heap").toUpperCase(Locale.ROOT));
+    }
+
+    /** The arrays of a compacted graph, as built on the heap by GraphDB.compact. */
+    static class Columns {
+        long[] ids;
+        double[] lons;
+        double[] lats;
+        int[] adjStart;
+        int[] adj;
+        int[] edgeWays;
+        int[] vertexWayStart;
+        int[] vertexWays;
+        /* OSM ids in increasing order, and the vertex number of each. */
+        long[] sortedIds;
+        int[] sortedIndex;
+    }
+
+    /**
+     * Returns storage of the given kind holding the given columns. The arrays are copied
+     * unless kind is HEAP, so the caller may drop them afterwards.
+     */
+    static GraphStorage of(Kind kind, Columns columns) {
+        switch (kind) {
+            case DIRECT:
+                return new BufferStorage(columns, null);
+            case MAPPED:
+                try {
+                    File file = File.createTempFile("graph", ".bin");
+                    file.deleteOnExit();
+                    return new BufferStorage(columns, file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot create the graph file.", e);
+                }
+            default:
+                return new HeapStorage(columns);
+        }
+    }
+
+    abstract int size();
+
+    abstract long id(int v);
+
+    abstract double lon(int v);
+
+    abstract double lat(int v);
+
+    abstract int firstEdge(int v);
+
+    abstract int endEdge(int v);
+
+    abstract int edgeTarget(int e);
+
+    abstract int edgeWay(int e);
+
+    abstract int firstVertexWay(int v);
+
+    abstract int endVertexWay(int v);
+
+    abstract int vertexWay(int i);
+
+    /** Returns the vertex number of the given OSM id, or -1 if there is no such vertex. */
+    abstract int vertexOf(long id);
+
+    /** The arrays as they are. */
+    private static class HeapStorage extends GraphStorage {
+        private final long[] ids;
+        private final double[] lons;
+        private final double[] lats;
+        private final int[] adjStart;
+        private final int[] adj;
+        private final int[] edgeWays;
+        private final int[] vertexWayStart;
+        private final int[] vertexWays;
+        private final long[] sortedIds;
+        private final int[] sortedIndex;
+
+        HeapStorage(Columns a) {
+            ids = a.ids;
+            lons = a.lons;
+            lats = a.lats;
+            adjStart = a.adjStart;
+            adj = a.adj;
+            edgeWays = a.edgeWays;
+            vertexWayStart = a.vertexWayStart;
+            vertexWays = a.vertexWays;
+            sortedIds = a.sortedIds;
+            sortedIndex = a.sortedIndex;
+        }
+
+        @Override
+        int size() {
+            return ids.length;
+        }
+
+        @Override
+        long id(int v) {
+            return ids[v];
+        }
+
+        @Override
+        double lon(int v) {
+            return lons[v];
+        }
+
+        @Override
+        double lat(int v) {
+            return lats[v];
+        }
+
+        @Override
+        int firstEdge(int v) {
+            return adjStart[v];
+        }
+
+        @Override
+        int endEdge(int v) {
+            return adjStart[v + 1];
+        }
+
+        @Override
+        int edgeTarget(int e) {
+            return adj[e];
+        }
+
+        @Override
+        int edgeWay(int e) {
+            return edgeWays[e];
+        }
+
+        @Override
+        int firstVertexWay(int v) {
+            return vertexWayStart[v];
+        }
+
+        @Override
+        int endVertexWay(int v) {
+            return vertexWayStart[v + 1];
+        }
+
+        @Override
+        int vertexWay(int i) {
+            return vertexWays[i];
+        }
+
+        @Override
+        int vertexOf(long id) {
+            int i = Arrays.binarySearch(sortedIds, id);
+            return i < 0 ? -1 : sortedIndex[i];
+        }
+    }
+
+    /**
+     * The arrays copied into buffers outside the heap: direct buffers, or buffers mapped
+     * from a file. Each array gets a buffer of its own, in native byte order.
+     */
+    private static class BufferStorage extends GraphStorage {
+        private final int size;
+        private final LongBuffer ids;
+        private final DoubleBuffer lons;
+        private final DoubleBuffer lats;
+        private final IntBuffer adjStart;
+        private final IntBuffer adj;
+        private final IntBuffer edgeWays;
+        private final IntBuffer vertexWayStart;
+        private final IntBuffer vertexWays;
+        private final LongBuffer sortedIds;
+        private final IntBuffer sortedIndex;
+
+        /**
+         * Copy the arrays out of the heap.
+         * @param file The file to map the buffers from, or null for direct buffers.
+         */
+        BufferStorage(Columns a, File file) {
+            size = a.ids.length;
+            try (Allocator allocator = new Allocator(file)) {
+                ids = allocator.allocate(a.ids.length * Long.BYTES).asLongBuffer().put(a.ids);
+                lons = allocator.allocate(a.lons.length * Double.BYTES).asDoubleBuffer()
+                        .put(a.lons);
+                lats = allocator.allocate(a.lats.length * Double.BYTES).asDoubleBuffer()
+                        .put(a.lats);
+                adjStart = ints(allocator, a.adjStart);
+                adj = ints(allocator, a.adj);
+                edgeWays = ints(allocator, a.edgeWays);
+                vertexWayStart = ints(allocator, a.vertexWayStart);
+                vertexWays = ints(allocator, a.vertexWays);
+                sortedIds = allocator.allocate(a.sortedIds.length * Long.BYTES).asLongBuffer()
+                        .put(a.sortedIds);
+                sortedIndex = ints(allocator, a.sortedIndex);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot map the graph file.", e);
+            }
+        }
+
+        private static IntBuffer ints(Allocator allocator, int[] values) throws IOException {
+            return allocator.allocate(values.length * Integer.BYTES).asIntBuffer().put(values);
+        }
+
+        /** Hands out direct buffers, or consecutive mapped regions of a file. */
+        private static class Allocator implements AutoCloseable {
+            private final RandomAccessFile file;
+            private long position;
+
+            Allocator(File file) throws IOException {
+                this.file = file == null ? null : new RandomAccessFile(file, "rw");
+            }
+
+            ByteBuffer allocate(int bytes) throws IOException {
+                ByteBuffer buffer;
+                if (file == null) {
+                    buffer = ByteBuffer.allocateDirect(bytes);
+                } else {
+                    buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, position,
+                            bytes);
+                    position += bytes;
+                }
+                return buffer.order(ByteOrder.nativeOrder());
+            }
+
+            @Override
+            public void close() throws IOException {
+                /* Mappings stay valid after their channel is closed. */
+                if (file != null) {
+                    file.close();
+                }
+            }
+        }
+
+        @Override
+        int size() {
+            return size;
+        }
+
+        @Override
+        long id(int v) {
+            return ids.get(v);
+        }
+
+        @Override
+        double lon(int v) {
+            return lons.get(v);
+        }
+
+        @Override
+        double lat(int v) {
+            return lats.get(v);
+        }
+
+        @Override
+        int firstEdge(int v) {
+            return adjStart.get(v);
+        }
+
+        @Override
+        int endEdge(int v) {
+            return adjStart.get(v + 1);
+        }
+
+        @Override
+        int edgeTarget(int e) {
+            return adj.get(e);
+        }
+
+        @Override
+        int edgeWay(int e) {
+            return edgeWays.get(e);
+        }
+
+        @Override
+        int firstVertexWay(int v) {
+            return vertexWayStart.get(v);
+        }
+
+        @Override
+        int endVertexWay(int v) {
+            return vertexWayStart.get(v + 1);
+        }
+
+        @Override
+        int vertexWay(int i) {
+            return vertexWays.get(i);
+        }
+
+        @Override
+        int vertexOf(long id) {
+            int lo = 0;
+            int hi = sortedIds.limit() - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                long midId = sortedIds.get(mid);
+                if (midId < id) {
+                    lo = mid + 1;
+                } else if (midId > id) {
+                    hi = mid - 1;
+                } else {
+                    return sortedIndex.get(mid);
+                }
+            }
+            return -1;
+        }
+    }
+}
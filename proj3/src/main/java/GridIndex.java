@@ -0,0 +1,187 @@
+import java.util.Arrays;
+
+/**
+ * A uniform grid over a rectangle of the plane, for finding the item nearest to a point
+ * without looking at every item. Items are numbered 0 to count - 1 by the caller and added
+ * with their bounding box; an item is listed in every cell its bounding box overlaps.
+ *
+ * nearest() looks at the cell holding the query point, then at rings of cells around it,
+ * and stops as soon as the best item found is closer than anything outside the cells
+ * looked at so far could be. within() looks only at the cells a circle around the point
+ * overlaps.
+ */
+class GridIndex {
+    /** Measures how far an item is from a point, in the units of the grid. */
+    interface ItemDistance {
+        double distance(int item, double x, double y);
+    }
+
+    /** Receives the items found by within(). */
+    interface ItemVisitor {
+        void visit(int item, double distance);
+    }
+
+    /** About how many items to put in one cell on average. */
+    private static final int ITEMS_PER_CELL = 8;
+
+    private final double minX, minY;
+    private final double cellWidth, cellHeight;
+    private final int columns, rows;
+
+    /* While adding, the cell and item of every entry; build() turns them into cellStart. */
+    private int[] entryCells = new int[16];
+    private int[] entryItems = new int[16];
+    private int entries;
+    private int[] cellStart;
+    private int[] cellItems;
+
+    /**
+     * Create an empty grid.
+     * @param minX The smallest x of any item.
+     * @param minY The smallest y of any item.
+     * @param maxX The largest x of any item.
+     * @param maxY The largest y of any item.
+     * @param count How many items will be added, to size the cells.
+     */
+    GridIndex(double minX, double minY, double maxX, double maxY, int count) {
+        double width = Math.max(maxX - minX, 1e-9);
+        double height = Math.max(maxY - minY, 1e-9);
+        int cells = Math.max(1, count / ITEMS_PER_CELL);
+        /* Make the cells roughly square. */
+        double side = Math.sqrt(width * height / cells);
+        this.columns = Math.max(1, Math.min(cells, (int) Math.ceil(width / side)));
+        this.rows = Math.max(1, Math.min(cells, (int) Math.ceil(height / side)));
+        this.minX = minX;
+        this.minY = minY;
+        this.cellWidth = width / columns;
+        this.cellHeight = height / rows;
+    }
+
+    /** Add an item with the given bounding box. */
+    void add(int item, double x1, double y1, double x2, double y2) {
+        int c1 = column(Math.min(x1, x2));
+        int c2 = column(Math.max(x1, x2));
+        int r1 = row(Math.min(y1, y2));
+        int r2 = row(Math.max(y1, y2));
+        for (int r = r1; r <= r2; r++) {
+            for (int c = c1; c <= c2; c++) {
+                if (entries == entryCells.length) {
+                    entryCells = Arrays.copyOf(entryCells, entries * 2);
+                    entryItems = Arrays.copyOf(entryItems, entries * 2);
+                }
+                entryCells[entries] = r * columns + c;
+                entryItems[entries] = item;
+                entries++;
+            }
+        }
+    }
+
+    /** Pack the added items into per-cell arrays. No items may be added afterwards. */
+    void build() {
+        cellStart = new int[columns * rows + 1];
+        for (int i = 0; i < entries; i++) {
+            cellStart[entryCells[i] + 1]++;
+        }
+        for (int cell = 0; cell < columns * rows; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        cellItems = new int[entries];
+        int[] next = Arrays.copyOf(cellStart, cellStart.length - 1);
+        for (int i = 0; i < entries; i++) {
+            cellItems[next[entryCells[i]]++] = entryItems[i];
+        }
+        entryCells = null;
+        entryItems = null;
+    }
+
+    /**
+     * Returns the item nearest to the given point, or -1 if there are no items.
+     * @param distance How far an item is from the point; must never be less than the
+     *                 distance from the point to the item's bounding box.
+     */
+    int nearest(double x, double y, ItemDistance distance) {
+        int column = column(x);
+        int row = row(y);
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int ring = 0; ; ring++) {
+            for (int r = row - ring; r <= row + ring; r++) {
+                if (r < 0 || r >= rows) {
+                    continue;
+                }
+                boolean edgeRow = r == row - ring || r == row + ring;
+                int step = edgeRow ? 1 : 2 * ring;
+                for (int c = column - ring; c <= column + ring; c += step) {
+                    if (c < 0 || c >= columns) {
+                        continue;
+                    }
+                    int cell = r * columns + c;
+                    for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                        int item = cellItems[i];
+                        double d = distance.distance(item, x, y);
+                        if (d < bestDistance || (d == bestDistance && item < best)) {
+                            best = item;
+                            bestDistance = d;
+                        }
+                    }
+                }
+            }
+            if (best >= 0 && bestDistance <= unseenDistance(x, y, column, row, ring)) {
+                break;
+            }
+            if (column - ring <= 0 && row - ring <= 0 && column + ring >= columns - 1
+                    && row + ring >= rows - 1) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Calls visitor with every item within radius of the given point, and its distance. An
+     * item whose bounding box spans several cells may be visited more than once.
+     * @param distance How far an item is from the point, as for nearest().
+     */
+    void within(double x, double y, double radius, ItemDistance distance,
+                ItemVisitor visitor) {
+        int c1 = column(x - radius);
+        int c2 = column(x + radius);
+        int r1 = row(y - radius);
+        int r2 = row(y + radius);
+        for (int r = r1; r <= r2; r++) {
+            for (int c = c1; c <= c2; c++) {
+                int cell = r * columns + c;
+                for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                    int item = cellItems[i];
+                    double d = distance.distance(item, x, y);
+                    if (d <= radius) {
+                        visitor.visit(item, d);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a lower bound on the distance from (x, y) to any item not in the cells within
+     * ring rings of (column, row).
+     */
+    private double unseenDistance(double x, double y, int column, int row, int ring) {
+        double x0 = minX + (column - ring) * cellWidth;
+        double x1 = minX + (column + ring + 1) * cellWidth;
+        double y0 = minY + (row - ring) * cellHeight;
+        double y1 = minY + (row + ring + 1) * cellHeight;
+        if (x < x0 || x > x1 || y < y0 || y > y1) {
+            return 0;
+        }
+        return Math.min(Math.min(x - x0, x1 - x), Math.min(y - y0, y1 - y));
+    }
+
+    private int column(double x) {
+        return Math.max(0, Math.min(columns - 1, (int) ((x - minX) / cellWidth)));
+    }
+
+    private int row(double y) {
+        return Math.max(0, Math.min(rows - 1, (int) ((y - minY) / cellHeight)));
+    }
+}
@@ -0,0 +1,107 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram in the style of
+ * <a href="http://hdrhistogram.org/">HdrHistogram</a>. Values are recorded in microseconds
+ * into log-linear buckets: every power of two is split into SUB_BUCKETS equal buckets, so
+ * any recorded value is reported within 1 / SUB_BUCKETS (about 6%) of its true value, using
+ * a fixed array of counters no matter how many values are recorded. Recording is a single
+ * atomic increment, which keeps it cheap enough to leave on in production.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** Values of 2^MAX_MAGNITUDE microseconds (about 12 days) and up share the last bucket. */
+    private static final int MAX_MAGNITUDE = 40;
+    private static final int NUM_BUCKETS = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+
+    /**
+     * Record the time elapsed since the given System.nanoTime() reading.
+     * @param startNanos The System.nanoTime() reading taken when the timed work started.
+     */
+    public void recordSince(long startNanos) {
+        recordNanos(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Record a duration.
+     * @param nanos The duration in nanoseconds.
+     */
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(bucketIndex(micros));
+        count.increment();
+        sumMicros.add(micros);
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int magnitude = Math.min(MAX_MAGNITUDE, 63 - Long.numberOfLeadingZeros(micros));
+        if (magnitude == MAX_MAGNITUDE) {
+            return NUM_BUCKETS - 1;
+        }
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int sub = (int) ((micros >>> shift) & (SUB_BUCKETS - 1));
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    /** Returns the smallest value, in microseconds, that falls into the given bucket. */
+    static long bucketLowerBound(int index) {
+        int block = index / SUB_BUCKETS;
+        int sub = index % SUB_BUCKETS;
+        if (block == 0) {
+            return sub;
+        }
+        return (long) (SUB_BUCKETS + sub) << (block - 1);
+    }
+
+    /** Returns the value, in microseconds, reported for everything in the given bucket. */
+    private static long bucketValue(int index) {
+        long lower = bucketLowerBound(index);
+        long width = index < SUB_BUCKETS ? 1 : 1L << (index / SUB_BUCKETS - 1);
+        return lower + (width - 1) / 2;
+    }
+
+    /** Returns the number of recorded values. */
+    public long count() {
+        return count.sum();
+    }
+
+    /** Returns the sum of the recorded values, in microseconds. */
+    public long sumMicros() {
+        return sumMicros.sum();
+    }
+
+    /**
+     * Returns the value at the given quantile, in microseconds, or 0 if nothing was recorded.
+     * Concurrent recording may make the result slightly stale, but never invalid.
+     * @param quantile The quantile, between 0 and 1, e.g. 0.99 for p99.
+     */
+    public long valueAtQuantile(double quantile) {
+        long[] snapshot = new long[NUM_BUCKETS];
+        long total = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return bucketValue(i);
+            }
+        }
+        return bucketValue(NUM_BUCKETS - 1);
+    }
+}
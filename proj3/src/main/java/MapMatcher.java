@@ -0,0 +1,460 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import primitives.LongDoubleMap;
+
+/**
+ * Snaps GPS traces onto the roads of a graph with a hidden Markov model, after Newson and
+ * Krumm, "Hidden Markov Map Matching Through Noise and Sparseness". The hidden states of
+ * each GPS point are the road segments within a search radius of it, found through a
+ * GridIndex. A segment is more likely the closer the point is to it, and a move from one
+ * segment to the next is more likely the closer the distance along the roads between them
+ * is to the straight-line distance between the two points. The Viterbi algorithm then picks
+ * the most likely sequence of segments.
+ *
+ * Traces are matched as they stream in: a Trace decides a point as soon as every candidate
+ * of the newest point descends from the same candidate of that point, and forgets it
+ * afterwards, so a trace of any length needs only a short window of points in memory.
+ * Distances along the roads come from bounded Dijkstra searches, cached per trace.
+ *
+ * Like ReverseGeocoder, the index works in a plane where x is the longitude scaled by the
+ * cosine of the map's middle latitude. Distances are in miles, as everywhere else.
+ */
+public class MapMatcher {
+    /** Standard deviation of GPS noise: 4.07 m, as Newson and Krumm measured. */
+    static final double DEFAULT_SIGMA = 0.00253;
+    /** Scale of the difference between road and straight-line distance between points. */
+    static final double DEFAULT_BETA = 0.003;
+    /** How far from a point to look for its segments: 50 m. */
+    static final double DEFAULT_RADIUS = 0.031;
+    /** The most segments to consider for one point, nearest first. */
+    private static final int MAX_CANDIDATES = 8;
+    /**
+     * How much longer than the straight line between two points the road between them may
+     * be, before the move is taken to be impossible.
+     */
+    private static final double MAX_DETOUR = 2;
+    /** How many Dijkstra searches each trace keeps. */
+    private static final int ROUTE_CACHE_SIZE = 256;
+    /** The most undecided points a trace keeps; past that, the best path so far is taken. */
+    private static final int MAX_WINDOW = 500;
+    /** Miles per degree of latitude, to convert distances in the index plane to miles. */
+    private static final double MILES_PER_DEGREE = 3963 * Math.PI / 180;
+
+    private final GraphDB g;
+    private final double sigma;
+    private final double beta;
+    private final double radius;
+    private final double lonScale;
+
+    /* Every undirected edge once, by dense vertex numbers, and its length in miles. */
+    private final int[] segmentFrom;
+    private final int[] segmentTo;
+    private final double[] segmentLength;
+    private final GridIndex segmentIndex;
+
+    /**
+     * Index the roads of a graph, with the default model parameters.
+     * @param g The graph, which must not change afterwards.
+     */
+    public MapMatcher(GraphDB g) {
+        this(g, DEFAULT_SIGMA, DEFAULT_BETA, DEFAULT_RADIUS);
+    }
+
+    /**
+     * Index the roads of a graph.
+     * @param g The graph, which must not change afterwards.
+     * @param sigma The standard deviation of GPS noise, in miles.
+     * @param beta The scale of route length differences, in miles.
+     * @param radius How far from a point to look for its segments, in miles.
+     */
+    MapMatcher(GraphDB g, double sigma, double beta, double radius) {
+        this.g = g;
+        this.sigma = sigma;
+        this.beta = beta;
+        this.radius = radius;
+        double minLat = Double.POSITIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
+        double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+        int segments = 0;
+        for (int v = 0; v < g.size(); v++) {
+            minLat = Math.min(minLat, g.latAt(v));
+            maxLat = Math.max(maxLat, g.latAt(v));
+            for (int e = g.firstEdge(v); e < g.endEdge(v); e++) {
+                if (g.id(v) < g.id(g.edgeTarget(e))) {
+                    segments++;
+                }
+            }
+        }
+        this.lonScale = minLat > maxLat ? 1 : Math.cos(Math.toRadians((minLat + maxLat) / 2));
+        for (int v = 0; v < g.size(); v++) {
+            minX = Math.min(minX, x(g.lonAt(v)));
+            maxX = Math.max(maxX, x(g.lonAt(v)));
+        }
+
+        segmentFrom = new int[segments];
+        segmentTo = new int[segments];
+        segmentLength = new double[segments];
+        segmentIndex = new GridIndex(minX, minLat, maxX, maxLat, segments);
+        int s = 0;
+        for (int v = 0; v < g.size(); v++) {
+            for (int e = g.firstEdge(v); e < g.endEdge(v); e++) {
+                int w = g.edgeTarget(e);
+                if (g.id(v) < g.id(w)) {
+                    segmentFrom[s] = v;
+                    segmentTo[s] = w;
+                    segmentLength[s] = g.distanceAt(v, w);
+                    segmentIndex.add(s, x(g.lonAt(v)), g.latAt(v), x(g.lonAt(w)), g.latAt(w));
+                    s++;
+                }
+            }
+        }
+        segmentIndex.build();
+    }
+
+    private double x(double lon) {
+        return lon * lonScale;
+    }
+
+    /** Starts matching a new trace. */
+    public Trace trace() {
+        return new Trace();
+    }
+
+    /** Matches a whole trace at once; see Trace for the result. */
+    public List<Match> match(double[] lons, double[] lats) {
+        Trace trace = trace();
+        List<Match> matches = new ArrayList<>();
+        for (int i = 0; i < lons.length; i++) {
+            matches.addAll(trace.add(lons[i], lats[i]));
+        }
+        matches.addAll(trace.finish());
+        return matches;
+    }
+
+    /** A GPS point and the segments it may have been on, with the Viterbi state of each. */
+    private class Step {
+        final int index;
+        final double lon, lat;
+        final int count;
+        final int[] segments = new int[MAX_CANDIDATES];
+        final double[] fractions = new double[MAX_CANDIDATES];
+        final double[] distances = new double[MAX_CANDIDATES];
+        /* The log probability of the best path to each candidate, and its previous step. */
+        final double[] scores = new double[MAX_CANDIDATES];
+        final int[] back = new int[MAX_CANDIDATES];
+
+        Step(int index, double lon, double lat) {
+            this.index = index;
+            this.lon = lon;
+            this.lat = lat;
+            double px = x(lon);
+            int[] found = {0};
+            segmentIndex.within(px, lat, radius / MILES_PER_DEGREE, this::segmentDistance,
+                    (segment, distance) -> found[0] = offer(found[0], segment,
+                            distance * MILES_PER_DEGREE));
+            count = found[0];
+            for (int c = 0; c < count; c++) {
+                int s = segments[c];
+                fractions[c] = fraction(px, lat, x(g.lonAt(segmentFrom[s])),
+                        g.latAt(segmentFrom[s]), x(g.lonAt(segmentTo[s])),
+                        g.latAt(segmentTo[s]));
+            }
+        }
+
+        private double segmentDistance(int s, double px, double py) {
+            return SimplifiedRoute.segmentDistance(px, py, x(g.lonAt(segmentFrom[s])),
+                    g.latAt(segmentFrom[s]), x(g.lonAt(segmentTo[s])),
+                    g.latAt(segmentTo[s]));
+        }
+
+        /* Keeps the nearest MAX_CANDIDATES segments, sorted by distance. */
+        private int offer(int size, int segment, double distance) {
+            for (int c = 0; c < size; c++) {
+                if (segments[c] == segment) {
+                    return size;
+                }
+            }
+            int c = size;
+            if (size == MAX_CANDIDATES) {
+                c = MAX_CANDIDATES - 1;
+                if (distances[c] < distance || distances[c] == distance && segments[c] < segment) {
+                    return size;
+                }
+            }
+            while (c > 0 && (distances[c - 1] > distance
+                    || distances[c - 1] == distance && segments[c - 1] > segment)) {
+                segments[c] = segments[c - 1];
+                distances[c] = distances[c - 1];
+                c--;
+            }
+            segments[c] = segment;
+            distances[c] = distance;
+            return Math.min(size + 1, MAX_CANDIDATES);
+        }
+
+        double emission(int c) {
+            double z = distances[c] / sigma;
+            return -0.5 * z * z;
+        }
+
+        Match match(int c) {
+            int s = segments[c];
+            int v = segmentFrom[s];
+            int w = segmentTo[s];
+            double t = fractions[c];
+            return new Match(index, g.id(v), g.id(w),
+                    g.lonAt(v) + t * (g.lonAt(w) - g.lonAt(v)),
+                    g.latAt(v) + t * (g.latAt(w) - g.latAt(v)), distances[c]);
+        }
+    }
+
+    /** Returns how far along the segment from a to b the point nearest to p is, from 0 to 1. */
+    private static double fraction(double px, double py, double ax, double ay,
+                                   double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        if (lengthSquared == 0) {
+            return 0;
+        }
+        return Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / lengthSquared));
+    }
+
+    /** The distances found by one bounded Dijkstra search, and how far it searched. */
+    private static class Distances {
+        final double limit;
+        final LongDoubleMap distanceTo;
+
+        Distances(double limit, LongDoubleMap distanceTo) {
+            this.limit = limit;
+            this.distanceTo = distanceTo;
+        }
+    }
+
+    /**
+     * The matching of one trace. Points are added in order with add(), which returns the
+     * points it has decided; finish() decides the rest. Each point is matched at most once,
+     * and matches come out in the order the points went in. A point with no road within
+     * the search radius is left unmatched. When no road leads from the previous points to
+     * the next one, the previous points are decided and matching starts afresh.
+     *
+     * A Trace is not thread-safe, but any number of traces may share one MapMatcher.
+     */
+    public class Trace {
+        private final Deque<Step> window = new ArrayDeque<>();
+        private int points;
+        private Step last;
+        /* The searches of this trace, least recently used first. */
+        private final Map<Integer, Distances> routeCache =
+                new LinkedHashMap<Integer, Distances>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Integer, Distances> e) {
+                        return size() > ROUTE_CACHE_SIZE;
+                    }
+                };
+
+        private Trace() {
+        }
+
+        /**
+         * Adds the next point of the trace.
+         * @return The matches of the points decided by this one, possibly none.
+         */
+        public List<Match> add(double lon, double lat) {
+            Step step = new Step(points++, lon, lat);
+            List<Match> matches = new ArrayList<>();
+            if (step.count == 0) {
+                return matches;
+            }
+            if (last != null && !transition(last, step)) {
+                decideAll(matches);
+            }
+            if (window.isEmpty()) {
+                for (int c = 0; c < step.count; c++) {
+                    step.scores[c] = step.emission(c);
+                    step.back[c] = -1;
+                }
+            }
+            window.addLast(step);
+            last = step;
+            if (window.size() > MAX_WINDOW) {
+                decideAll(matches);
+            } else {
+                decideConverged(matches);
+            }
+            return matches;
+        }
+
+        /** Ends the trace, and returns the matches of the points not yet decided. */
+        public List<Match> finish() {
+            List<Match> matches = new ArrayList<>();
+            decideAll(matches);
+            return matches;
+        }
+
+        /**
+         * One step of the Viterbi algorithm: scores the candidates of next by their best
+         * predecessor among the candidates of previous.
+         * @return False if no candidate of next can be reached from any of previous.
+         */
+        private boolean transition(Step previous, Step next) {
+            double straight = GraphDB.distance(previous.lon, previous.lat, next.lon, next.lat);
+            double limit = MAX_DETOUR * straight + 2 * radius;
+            boolean reachable = false;
+            for (int c = 0; c < next.count; c++) {
+                next.scores[c] = Double.NEGATIVE_INFINITY;
+                next.back[c] = -1;
+            }
+            for (int p = 0; p < previous.count; p++) {
+                if (previous.scores[p] == Double.NEGATIVE_INFINITY) {
+                    continue;
+                }
+                for (int c = 0; c < next.count; c++) {
+                    double route = routeDistance(previous, p, next, c, limit);
+                    if (route > limit) {
+                        continue;
+                    }
+                    double score = previous.scores[p] - Math.abs(route - straight) / beta
+                            + next.emission(c);
+                    if (score > next.scores[c]) {
+                        next.scores[c] = score;
+                        next.back[c] = p;
+                        reachable = true;
+                    }
+                }
+            }
+            return reachable;
+        }
+
+        /** Returns the distance along the roads from candidate p of a to candidate c of b. */
+        private double routeDistance(Step a, int p, Step b, int c, double limit) {
+            int sa = a.segments[p];
+            int sb = b.segments[c];
+            double ta = a.fractions[p];
+            double tb = b.fractions[c];
+            if (sa == sb) {
+                return Math.abs(ta - tb) * segmentLength[sa];
+            }
+            double best = Double.POSITIVE_INFINITY;
+            int[] starts = {segmentFrom[sa], segmentTo[sa]};
+            double[] startOffsets = {ta * segmentLength[sa], (1 - ta) * segmentLength[sa]};
+            int[] ends = {segmentFrom[sb], segmentTo[sb]};
+            double[] endOffsets = {tb * segmentLength[sb], (1 - tb) * segmentLength[sb]};
+            for (int i = 0; i < 2; i++) {
+                LongDoubleMap distanceTo = distancesFrom(starts[i], limit);
+                for (int j = 0; j < 2; j++) {
+                    best = Math.min(best, startOffsets[i] + distanceTo.get(ends[j])
+                            + endOffsets[j]);
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Returns the distances from a vertex to every vertex at most limit away. Searches
+         * go twice as far as asked, so that later points can reuse them.
+         */
+        private LongDoubleMap distancesFrom(int source, double limit) {
+            Distances cached = routeCache.get(source);
+            if (cached == null || cached.limit < limit) {
+                cached = new Distances(2 * limit,
+                        Router.distancesWithin(g, EdgeOverlay.EMPTY, source, 2 * limit));
+                routeCache.put(source, cached);
+            }
+            return cached.distanceTo;
+        }
+
+        /**
+         * Decides the points before the newest one whose candidates all descend from a
+         * single candidate.
+         */
+        private void decideConverged(List<Match> matches) {
+            Step[] steps = window.toArray(new Step[0]);
+            boolean[] alive = new boolean[MAX_CANDIDATES];
+            Step newest = steps[steps.length - 1];
+            for (int c = 0; c < newest.count; c++) {
+                alive[c] = newest.scores[c] > Double.NEGATIVE_INFINITY;
+            }
+            for (int i = steps.length - 1; i > 0; i--) {
+                boolean[] parents = new boolean[MAX_CANDIDATES];
+                int count = 0;
+                int parent = -1;
+                for (int c = 0; c < steps[i].count; c++) {
+                    if (alive[c] && !parents[steps[i].back[c]]) {
+                        parent = steps[i].back[c];
+                        parents[parent] = true;
+                        count++;
+                    }
+                }
+                if (count == 1) {
+                    decide(steps, i - 1, parent, matches);
+                    return;
+                }
+                alive = parents;
+            }
+        }
+
+        /** Decides every point in the window, by the best path to the newest one. */
+        private void decideAll(List<Match> matches) {
+            if (window.isEmpty()) {
+                return;
+            }
+            Step[] steps = window.toArray(new Step[0]);
+            Step newest = steps[steps.length - 1];
+            int best = 0;
+            for (int c = 1; c < newest.count; c++) {
+                if (newest.scores[c] > newest.scores[best]) {
+                    best = c;
+                }
+            }
+            decide(steps, steps.length - 1, best, matches);
+            last = null;
+        }
+
+        /**
+         * Matches steps[0] to steps[end] by following the back pointers from candidate c
+         * of steps[end], and drops them from the window.
+         */
+        private void decide(Step[] steps, int end, int c, List<Match> matches) {
+            int[] chosen = new int[end + 1];
+            for (int i = end; i >= 0; i--) {
+                chosen[i] = c;
+                c = steps[i].back[c];
+            }
+            for (int i = 0; i <= end; i++) {
+                matches.add(steps[i].match(chosen[i]));
+                window.removeFirst();
+            }
+        }
+    }
+
+    /** A GPS point snapped onto a road. */
+    public static class Match {
+        /** The position of the point in its trace, counting from 0. */
+        public final int index;
+        /** The OSM ids of the ends of the road segment, the smaller first. */
+        public final long from, to;
+        /** The point of the segment the GPS point was snapped to. */
+        public final double lon, lat;
+        /** How far the GPS point is from that point, in miles. */
+        public final double distance;
+
+        Match(int index, long from, long to, double lon, double lat, double distance) {
+            this.index = index;
+            this.from = from;
+            this.to = to;
+            this.lon = lon;
+            this.lat = lat;
+            this.distance = distance;
+        }
+
+        @Override
+        public String toString() {
+            return index + ": " + from + "-" + to;
+        }
+    }
+}
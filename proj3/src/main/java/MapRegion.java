@@ -0,0 +1,164 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+
+/**
+ * One region of a sharded map: an OSM extract, and the tile pyramid whose root tile covers
+ * the region's bounding box. The graph is built the first time it is needed rather than
+ * when the server starts, since building a city-sized graph takes seconds and most
+ * regions of a large deployment are rarely visited.
+ *
+ * Neighbouring regions are expected to be cut the way OSM extracts usually are: ways that
+ * cross the border keep the node just across it, so the two graphs share some vertices,
+ * with the same OSM ids. RegionCoordinator stitches routes together through those.
+ */
+public class MapRegion {
+    private final String name;
+    private final String osmPath;
+    private final String imgRoot;
+    private final String tileArchivePath;
+    private final double ullon, ullat, lrlon, lrlat;
+    private final int minComponentSize;
+    private final Rasterer rasterer;
+    private volatile GraphDB graph;
+    private volatile ReverseGeocoder geocoder;
+    private volatile TileArchive tileArchive;
+
+    /**
+     * Create a region. Nothing is loaded until graph() is first called.
+     * @param name A name for the region, unique among the regions of a map.
+     * @param osmPath The classpath location of the region's OSM XML file.
+     * @param imgRoot The classpath folder of the region's tiles, ending in a slash.
+     * @param ullon The upper left longitude of the region's root tile.
+     * @param ullat The upper left latitude of the region's root tile.
+     * @param lrlon The lower right longitude of the region's root tile.
+     * @param lrlat The lower right latitude of the region's root tile.
+     * @param minComponentSize The smallest component to keep in the region's graph.
+     */
+    public MapRegion(String name, String osmPath, String imgRoot, double ullon, double ullat,
+                     double lrlon, double lrlat, int minComponentSize) {
+        this(name, osmPath, imgRoot, null, ullon, ullat, lrlon, lrlat, minComponentSize);
+    }
+
+    /**
+     * Create a region whose tiles are served from a TileArchive rather than the classpath.
+     * The archive is mapped into memory when the first tile is needed.
+     * @param tileArchivePath The archive file, or null to read tiles from imgRoot.
+     */
+    public MapRegion(String name, String osmPath, String imgRoot, String tileArchivePath,
+                     double ullon, double ullat, double lrlon, double lrlat,
+                     int minComponentSize) {
+        if (ullon >= lrlon || lrlat >= ullat) {
+            throw new IllegalArgumentException("Invalid bounding box for region " + name + ".");
+        }
+        this.name = name;
+        this.osmPath = osmPath;
+        this.imgRoot = imgRoot;
+        this.tileArchivePath = tileArchivePath;
+        this.ullon = ullon;
+        this.ullat = ullat;
+        this.lrlon = lrlon;
+        this.lrlat = lrlat;
+        this.minComponentSize = minComponentSize;
+        this.rasterer = new Rasterer(ullon, ullat, lrlon, lrlat);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /** Returns the classpath folder of the region's tiles. */
+    public String imgRoot() {
+        return imgRoot;
+    }
+
+    /**
+     * Returns a stream over the PNG bytes of a tile, or null if the region has no such tile.
+     * @param tileName The file name of the tile, as in Rasterer's render grid.
+     */
+    public InputStream tile(String tileName) {
+        if (tileArchivePath == null) {
+            return MapRegion.class.getClassLoader().getResourceAsStream(imgRoot + tileName);
+        }
+        TileArchive archive = tileArchive;
+        if (archive == null) {
+            synchronized (this) {
+                archive = tileArchive;
+                if (archive == null) {
+                    try {
+                        archive = TileArchive.open(Paths.get(tileArchivePath));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Cannot open tile archive "
+                                + tileArchivePath + ".", e);
+                    }
+                    tileArchive = archive;
+                }
+            }
+        }
+        return archive.open(tileName);
+    }
+
+    public Rasterer rasterer() {
+        return rasterer;
+    }
+
+    /** Returns the region's graph, building it on the first call. */
+    public GraphDB graph() {
+        GraphDB g = graph;
+        if (g == null) {
+            synchronized (this) {
+                g = graph;
+                if (g == null) {
+                    g = new GraphDB(osmPath, minComponentSize);
+                    graph = g;
+                }
+            }
+        }
+        return g;
+    }
+
+    /**
+     * Returns the index of the region's named ways and locations, building it (and the
+     * graph) on the first call.
+     */
+    public ReverseGeocoder geocoder() {
+        ReverseGeocoder r = geocoder;
+        if (r == null) {
+            GraphDB g = graph();
+            synchronized (this) {
+                r = geocoder;
+                if (r == null) {
+                    r = new ReverseGeocoder(g);
+                    geocoder = r;
+                }
+            }
+        }
+        return r;
+    }
+
+    /** Returns whether the region's graph has been built yet. */
+    public boolean isLoaded() {
+        return graph != null;
+    }
+
+    /** Returns whether the given point lies in the region's bounding box. */
+    public boolean contains(double lon, double lat) {
+        return lon >= ullon && lon <= lrlon && lat >= lrlat && lat <= ullat;
+    }
+
+    /**
+     * Returns how far, in degrees, the given point lies outside the region's bounding box,
+     * or 0 if it lies inside.
+     */
+    double distanceTo(double lon, double lat) {
+        double dx = Math.max(0, Math.max(ullon - lon, lon - lrlon));
+        double dy = Math.max(0, Math.max(lrlat - lat, lat - ullat));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
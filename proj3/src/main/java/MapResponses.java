@@ -0,0 +1,243 @@
+import com.google.gson.Gson;
+import com.google.gson.annotations.SerializedName;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The JSON bodies of MapServer's responses, one class per kind of response, serialized with
+ * the shared GSON instance. Fields left null are left out of the JSON.
+ */
+class MapResponses {
+    /** Gson instances are thread-safe, so every handler shares this one. */
+    static final Gson GSON = new Gson();
+
+    private static final byte[] IMAGE_FIELD_START =
+            "{\"b64_encoded_image_data\":\"".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * A response body that MapServer writes to the client itself, on the request thread,
+     * once the handler has returned it. A handler run on the RequestExecutor can then still
+     * be timed out without its response having been partly written already.
+     */
+    interface Streamed {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /** Writes the bytes of an image, Base64 encoded, to a stream. */
+    interface ImageWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /** Returns an ImageWriter for an image already Base64 encoded into ASCII bytes. */
+    static ImageWriter encoded(byte[] base64) {
+        return out -> out.write(base64);
+    }
+
+    /**
+     * Returns an ImageWriter that Base64 encodes a PNG on its way to the stream, without
+     * holding the encoded image in memory.
+     */
+    static ImageWriter png(ByteArrayOutputStream png) {
+        return out -> {
+            /* Closing the encoder writes the final padding, but must not close out. */
+            OutputStream encoder = Base64.getEncoder().wrap(new FilterOutputStream(out) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            });
+            png.writeTo(encoder);
+            encoder.close();
+        };
+    }
+
+    /** The response to /raster; see Rasterer.getMapRaster for the fields. */
+    static class RasterResponse {
+        @SerializedName("render_grid")
+        final String[][] renderGrid;
+        @SerializedName("raster_ul_lon")
+        final Double rasterUlLon;
+        @SerializedName("raster_ul_lat")
+        final Double rasterUlLat;
+        @SerializedName("raster_lr_lon")
+        final Double rasterLrLon;
+        @SerializedName("raster_lr_lat")
+        final Double rasterLrLat;
+        final Integer depth;
+        @SerializedName("query_success")
+        final Boolean querySuccess;
+        @SerializedName("raster_width")
+        final Integer rasterWidth;
+        @SerializedName("raster_height")
+        final Integer rasterHeight;
+
+        /** Take the fields from the result of Rasterer.getMapRaster. */
+        RasterResponse(Map<String, Object> rasteredImgParams) {
+            renderGrid = (String[][]) rasteredImgParams.get("render_grid");
+            rasterUlLon = (Double) rasteredImgParams.get("raster_ul_lon");
+            rasterUlLat = (Double) rasteredImgParams.get("raster_ul_lat");
+            rasterLrLon = (Double) rasteredImgParams.get("raster_lr_lon");
+            rasterLrLat = (Double) rasteredImgParams.get("raster_lr_lat");
+            depth = (Integer) rasteredImgParams.get("depth");
+            querySuccess = (Boolean) rasteredImgParams.get("query_success");
+            rasterWidth = (Integer) rasteredImgParams.get("raster_width");
+            rasterHeight = (Integer) rasteredImgParams.get("raster_height");
+        }
+
+        /**
+         * Write this response as JSON, with the image in its b64_encoded_image_data field.
+         * The image goes straight to the stream rather than into a String first, since it
+         * is by far the largest part of the response.
+         */
+        void writeTo(OutputStream out, ImageWriter image) throws IOException {
+            out.write(IMAGE_FIELD_START);
+            image.writeTo(out);
+            String rest = GSON.toJson(this);
+            out.write('"');
+            if (rest.length() > 2) {
+                out.write(',');
+            }
+            out.write(rest.substring(1).getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+    }
+
+    /** The response to /route. */
+    static class RouteResponse {
+        @SerializedName("routing_success")
+        final boolean routingSuccess;
+        @SerializedName("directions_success")
+        final boolean directionsSuccess;
+        final String directions;
+        @SerializedName("route_polyline")
+        final String routePolyline;
+        /** Only set when alternatives were asked for. */
+        final List<AlternativeRoute> alternatives;
+
+        RouteResponse(boolean routingSuccess, String directions, String routePolyline,
+                      List<AlternativeRoute> alternatives) {
+            this.routingSuccess = routingSuccess;
+            this.directionsSuccess = directions.length() > 0;
+            this.directions = directions;
+            this.routePolyline = routePolyline;
+            this.alternatives = alternatives;
+        }
+    }
+
+    /** One of the alternatives of a /route response. */
+    static class AlternativeRoute {
+        @SerializedName("route_polyline")
+        final String routePolyline;
+        final double distance;
+
+        AlternativeRoute(String routePolyline, double distance) {
+            this.routePolyline = routePolyline;
+            this.distance = distance;
+        }
+    }
+
+    /** The response to /tour. */
+    static class TourResponse {
+        @SerializedName("tour_success")
+        final boolean tourSuccess;
+        /** The positions of the stops in the request, in the order to visit them. */
+        final int[] order;
+        final double distance;
+        @SerializedName("directions_success")
+        final boolean directionsSuccess;
+        final String directions;
+        @SerializedName("route_polyline")
+        final String routePolyline;
+
+        TourResponse(TourPlanner.Tour tour, String directions, String routePolyline) {
+            this.tourSuccess = !tour.isEmpty();
+            this.order = tour.order();
+            this.distance = tourSuccess ? tour.distance() : 0;
+            this.directionsSuccess = directions.length() > 0;
+            this.directions = directions;
+            this.routePolyline = routePolyline;
+        }
+    }
+
+    /** The response to /route_polyline. */
+    static class PolylineResponse {
+        @SerializedName("route_polyline")
+        final String routePolyline;
+
+        PolylineResponse(String routePolyline) {
+            this.routePolyline = routePolyline;
+        }
+    }
+
+    /** The response to /reverse. */
+    static class ReverseResponse {
+        final Place way;
+        final Place location;
+        @SerializedName("reverse_success")
+        final boolean reverseSuccess;
+
+        ReverseResponse(ReverseGeocoder.Result way, ReverseGeocoder.Result location) {
+            this.way = way == null ? null : new Place(way, null);
+            this.location = location == null ? null : new Place(location, location.id);
+            this.reverseSuccess = way != null || location != null;
+        }
+    }
+
+    /** A named way or location near a point. */
+    static class Place {
+        final String name;
+        final double lon;
+        final double lat;
+        final double distance;
+        final Long id;
+
+        Place(ReverseGeocoder.Result result, Long id) {
+            this.name = result.name;
+            this.lon = result.lon;
+            this.lat = result.lat;
+            this.distance = result.distance;
+            this.id = id;
+        }
+    }
+
+    /** The response to the /admin endpoints: the current overlay. */
+    static class OverlayResponse {
+        final long version;
+        final List<Change> changes = new ArrayList<>();
+
+        OverlayResponse(EdgeOverlay overlay) {
+            version = overlay.version();
+            for (EdgeOverlay.Change change : overlay.changes()) {
+                changes.add(new Change(change));
+            }
+        }
+    }
+
+    /** One changed edge of an OverlayResponse; the factor is left out for closed edges. */
+    static class Change {
+        final long from;
+        final long to;
+        final boolean closed;
+        final Double factor;
+
+        Change(EdgeOverlay.Change change) {
+            from = change.from;
+            to = change.to;
+            closed = change.isClosed();
+            factor = closed ? null : change.factor;
+        }
+    }
+}
@@ -5,12 +5,19 @@ import java.awt.Color;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.awt.image.BufferedImage;
 import javax.imageio.ImageIO;
 import java.io.IOException;
@@ -41,6 +48,15 @@ public class MapServer {
     public static final int TILE_SIZE = 256;
     /** HTTP failed response. */
     private static final int HALT_RESPONSE = 403;
+    /** HTTP response for requests turned away because the server is saturated. */
+    private static final int OVERLOADED_RESPONSE = 503;
+    /**
+     * Set this system property to true to run request work on a dedicated RequestExecutor
+     * rather than on Jetty's request threads, e.g. java -Dbearmaps.async=true -jar ...
+     */
+    private static final String ASYNC_PROPERTY = "bearmaps.async";
+    /** How long an async request may wait and run before it is answered with a 503. */
+    private static final long ASYNC_TIMEOUT_MILLIS = 10000;
     /** Route stroke information: typically roads are not more than 5px wide. */
     public static final float ROUTE_STROKE_WIDTH_PX = 5.0f;
     /** Route stroke information: Cyan with half transparency. */
@@ -52,6 +68,31 @@ public class MapServer {
      * using custom region selection.
      **/
     private static final String OSM_DB_PATH = "berkeley-2018.osm.xml";
+    /**
+     * Islands of road with fewer vertices than this are dropped from the graph, so that
+     * closest() never snaps a route endpoint onto a piece of road it cannot leave.
+     */
+    private static final int MIN_COMPONENT_SIZE = 10;
+    /**
+     * Set this system property to the classpath location of a regions file to serve a map
+     * sharded into several regions, see RegionCoordinator.fromJson. Without it, the map is
+     * the single region described by the constants above.
+     */
+    private static final String REGIONS_PROPERTY = "bearmaps.regions";
+    /**
+     * Set this system property to the path of a TileArchive file built from IMG_ROOT by
+     * TileArchiveBuilder to serve the tiles of the single region map from the archive.
+     */
+    private static final String TILE_ARCHIVE_PROPERTY = "bearmaps.tiles";
+    /**
+     * Set this system property to a secret to enable the /admin endpoints for closing and
+     * reopening roads at runtime. Admin requests must carry the secret in the ADMIN_HEADER
+     * header. Without it, the endpoints do not exist.
+     */
+    private static final String ADMIN_TOKEN_PROPERTY = "bearmaps.admin.token";
+    private static final String ADMIN_HEADER = "X-Admin-Token";
+    /** HTTP response for admin requests without the right token. */
+    private static final int UNAUTHORIZED_RESPONSE = 401;
     /**
      * Each raster request to the server will have the following parameters
      * as keys in the params map accessible by,
@@ -70,6 +111,36 @@ public class MapServer {
      **/
     private static final String[] REQUIRED_ROUTE_REQUEST_PARAMS = {"start_lat", "start_lon",
         "end_lat", "end_lon"};
+    /**
+     * Optional raster request parameter. When a client sets it to true, it draws the route
+     * itself from the encoded polyline returned by /route, so the route is left out of the
+     * rastered image and the image can be served from the raster cache.
+     */
+    private static final String VECTOR_ROUTE_PARAM = "vector_route";
+    /**
+     * Optional route request parameter: how many different routes to look for, from 1 to
+     * MAX_ALTERNATIVES. The shortest becomes the current route, and the others are returned
+     * in the "alternatives" field of the response, each as an encoded polyline and a distance.
+     */
+    private static final String ALTERNATIVES_PARAM = "alternatives";
+    private static final int MAX_ALTERNATIVES = 3;
+    /**
+     * Each reverse geocoding request to the server will have the following parameters
+     * as keys in the params map.<br>
+     * lon : longitude of the point, <br> lat : latitude of the point.
+     **/
+    private static final String[] REQUIRED_REVERSE_REQUEST_PARAMS = {"lon", "lat"};
+    /**
+     * Each tour request to the server will have this parameter: the stops to visit, as
+     * lon,lat pairs separated by semicolons, the first being where the tour starts.
+     */
+    private static final String STOPS_PARAM = "stops";
+    /** Optional tour request parameter: true if the tour ends back at the first stop. */
+    private static final String ROUND_TRIP_PARAM = "roundtrip";
+    /** The HTTP session attribute holding a client's SearchSession. */
+    private static final String SEARCH_SESSION_ATTRIBUTE = "search";
+    /** Number of encoded route-free raster images kept in the raster cache. */
+    private static final int RASTER_CACHE_SIZE = 64;
 
     /**
      * The result of rastering must be a map containing all of the
@@ -78,10 +149,49 @@ public class MapServer {
     private static final String[] REQUIRED_RASTER_RESULT_PARAMS = {"render_grid", "raster_ul_lon",
         "raster_ul_lat", "raster_lr_lon", "raster_lr_lat", "depth", "query_success"};
 
-    private static Rasterer rasterer;
-    private static GraphDB graph;
-    private static List<Long> route = new LinkedList<>();
+    /** The serializer every handler shares, see MapResponses. */
+    private static final Gson GSON = MapResponses.GSON;
+
+    private static RegionCoordinator regions;
+    private static RequestExecutor requestExecutor;
+    /* Replaced as a whole by /route, /tour and /clear_route; read once per request. */
+    private static volatile CurrentRoute currentRoute = new CurrentRoute(RegionRoute.empty());
     /* Define any static variables here. Do not define any instance variables of MapServer. */
+    private static final Map<String, CachedRaster> RASTER_CACHE =
+            new LinkedHashMap<String, CachedRaster>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedRaster> eldest) {
+                    return size() > RASTER_CACHE_SIZE;
+                }
+            };
+
+    /**
+     * The current route together with its simplifications, published through one field so
+     * that a request never sees the route of one request with the polyline of another.
+     */
+    private static class CurrentRoute {
+        final RegionRoute route;
+        final SimplifiedRoute simplified;
+
+        CurrentRoute(RegionRoute route) {
+            this.route = route;
+            this.simplified = simplify(route);
+        }
+    }
+
+    /** An encoded raster image without a route drawn on it. */
+    private static class CachedRaster {
+        /** The PNG, Base64 encoded into ASCII bytes ready to be written to a response. */
+        final byte[] encodedImage;
+        final int width;
+        final int height;
+
+        CachedRaster(byte[] encodedImage, int width, int height) {
+            this.encodedImage = encodedImage;
+            this.width = width;
+            this.height = height;
+        }
+    }
 
 
     /**
@@ -90,8 +200,28 @@ public class MapServer {
      * This is for testing purposes, and you may fail tests otherwise.
      **/
     public static void initialize() {
-        graph = new GraphDB(OSM_DB_PATH);
-        rasterer = new Rasterer();
+        String regionsFile = System.getProperty(REGIONS_PROPERTY);
+        if (regionsFile != null) {
+            regions = RegionCoordinator.fromJson(regionsFile);
+        } else {
+            regions = new RegionCoordinator(Collections.singletonList(new MapRegion("default",
+                    OSM_DB_PATH, IMG_ROOT, System.getProperty(TILE_ARCHIVE_PROPERTY),
+                    ROOT_ULLON, ROOT_ULLAT, ROOT_LRLON, ROOT_LRLAT, MIN_COMPONENT_SIZE)));
+        }
+        /* Regions load lazily, but a single region map might as well be ready right away. */
+        if (regions.regions().size() == 1) {
+            regions.regions().get(0).graph();
+        }
+        if (Boolean.getBoolean(ASYNC_PROPERTY)) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            requestExecutor = new RequestExecutor(ASYNC_TIMEOUT_MILLIS);
+            requestExecutor.limit("/raster", 2 * cores, 32);
+            requestExecutor.limit("/route", cores, 64);
+            requestExecutor.limit("/search", 4 * cores, 128);
+            requestExecutor.limit("/reverse", 4 * cores, 128);
+            /* A tour searches on several cores at once, in TourPlanner's own pool. */
+            requestExecutor.limit("/tour", Math.max(1, cores / 2), 16);
+        }
     }
 
     public static void main(String[] args) {
@@ -109,40 +239,102 @@ public class MapServer {
 
         /* Define the raster endpoint for HTTP GET requests. I use anonymous functions to define
          * the request handlers. */
-        get("/raster", (req, res) -> {
+        get("/raster", handle("/raster", (req, res) -> {
             HashMap<String, Double> params =
                     getRequestParams(req, REQUIRED_RASTER_REQUEST_PARAMS);
-            /* The png image is written to the ByteArrayOutputStream */
-            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            boolean vectorRoute = Boolean.parseBoolean(req.queryParams(VECTOR_ROUTE_PARAM));
+            MapRegion region = regions.rasterRegion(params);
             /* getMapRaster() does almost all the work for this API call */
-            Map<String, Object> rasteredImgParams = rasterer.getMapRaster(params);
+            Map<String, Object> rasteredImgParams = region.rasterer().getMapRaster(params);
 
             boolean rasterSuccess = validateRasteredImgParams(rasteredImgParams);
 
             if (rasterSuccess) {
-                writeImagesToOutputStream(rasteredImgParams, os);
-                String encodedImage = Base64.getEncoder().encodeToString(os.toByteArray());
-                rasteredImgParams.put("b64_encoded_image_data", encodedImage);
+                MapResponses.ImageWriter image;
+                if (vectorRoute) {
+                    image = writeCachedImage(region, rasteredImgParams);
+                } else {
+                    /* The png image is written to the ByteArrayOutputStream */
+                    ByteArrayOutputStream os = new ByteArrayOutputStream();
+                    writeImagesToOutputStream(region, rasteredImgParams, os, true);
+                    image = MapResponses.png(os);
+                }
+                /* The image is Base64 encoded straight into the response, by handle(). */
+                MapResponses.RasterResponse response =
+                        new MapResponses.RasterResponse(rasteredImgParams);
+                return (MapResponses.Streamed) out -> {
+                    long writeStart = System.nanoTime();
+                    response.writeTo(out, image);
+                    Metrics.RASTER_WRITE.recordSince(writeStart);
+                };
             }
 
             /* Encode response to Json */
-            Gson gson = new Gson();
-            return gson.toJson(rasteredImgParams);
-        });
+            return GSON.toJson(new MapResponses.RasterResponse(rasteredImgParams));
+        }));
 
         /* Define the routing endpoint for HTTP GET requests. */
-        get("/route", (req, res) -> {
+        get("/route", handle("/route", (req, res) -> {
             HashMap<String, Double> params =
                     getRequestParams(req, REQUIRED_ROUTE_REQUEST_PARAMS);
-            route = Router.shortestPath(graph, params.get("start_lon"), params.get("start_lat"),
-                    params.get("end_lon"), params.get("end_lat"));
-            String directions = getDirectionsText();
-            Map<String, Object> routeParams = new HashMap<>();
-            routeParams.put("routing_success", !route.isEmpty());
-            routeParams.put("directions_success", directions.length() > 0);
-            routeParams.put("directions", directions);
-            Gson gson = new Gson();
-            return gson.toJson(routeParams);
+            int k = 1;
+            if (req.queryParams(ALTERNATIVES_PARAM) != null) {
+                try {
+                    k = Integer.parseInt(req.queryParams(ALTERNATIVES_PARAM));
+                } catch (NumberFormatException e) {
+                    halt(HALT_RESPONSE, "Incorrect parameters - provide numbers.");
+                }
+                k = Math.max(1, Math.min(MAX_ALTERNATIVES, k));
+            }
+            List<RegionRoute> routes = regions.alternatives(params.get("start_lon"),
+                    params.get("start_lat"), params.get("end_lon"), params.get("end_lat"), k);
+            CurrentRoute current = new CurrentRoute(routes.get(0));
+            currentRoute = current;
+            String directions = getDirectionsText(current.route);
+            List<MapResponses.AlternativeRoute> alternatives = null;
+            if (k > 1) {
+                alternatives = new ArrayList<>();
+                for (RegionRoute alternative : routes.subList(1, routes.size())) {
+                    alternatives.add(new MapResponses.AlternativeRoute(
+                            RoutePolyline.encode(alternative.lons(), alternative.lats()),
+                            alternative.distance()));
+                }
+            }
+            return GSON.toJson(new MapResponses.RouteResponse(!current.route.isEmpty(),
+                    directions, current.simplified.polyline(), alternatives));
+        }));
+
+        /* Define the endpoint for planning a tour through several stops. The tour becomes
+         * the current route. */
+        get("/tour", handle("/tour", (req, res) -> {
+            double[][] stops = getStops(req);
+            TourPlanner.Tour tour = regions.tour(stops[0], stops[1],
+                    Boolean.parseBoolean(req.queryParams(ROUND_TRIP_PARAM)));
+            CurrentRoute current = new CurrentRoute(tour.route());
+            currentRoute = current;
+            return GSON.toJson(new MapResponses.TourResponse(tour,
+                    getDirectionsText(current.route), current.simplified.polyline()));
+        }));
+
+        /* Define the API endpoint for fetching the current route as an encoded polyline.
+         * An optional depth parameter returns the route simplified for that zoom depth. */
+        get("/route_polyline", (req, res) -> {
+            SimplifiedRoute current = currentRoute.simplified;
+            String depth = req.queryParams("depth");
+            String polyline = null;
+            try {
+                polyline = depth == null ? current.polyline()
+                        : current.polyline(Integer.parseInt(depth));
+            } catch (NumberFormatException e) {
+                halt(HALT_RESPONSE, "Incorrect parameters - provide numbers.");
+            }
+            return GSON.toJson(new MapResponses.PolylineResponse(polyline));
+        });
+
+        /* Define the API endpoint for Prometheus to scrape. */
+        get("/metrics", (req, res) -> {
+            res.type("text/plain; version=0.0.4");
+            return Metrics.toPrometheus();
         });
 
         /* Define the API endpoint for clearing the current route. */
@@ -152,20 +344,42 @@ public class MapServer {
         });
 
         /* Define the API endpoint for search */
-        get("/search", (req, res) -> {
+        get("/search", handle("/search", (req, res) -> {
             Set<String> reqParams = req.queryParams();
             String term = req.queryParams("term");
-            Gson gson = new Gson();
             /* Search for actual location data. */
             if (reqParams.contains("full")) {
                 List<Map<String, Object>> data = getLocations(term);
-                return gson.toJson(data);
+                return GSON.toJson(data);
             } else {
-                /* Search for prefix matching strings. */
-                List<String> matches = getLocationsByPrefix(term);
-                return gson.toJson(matches);
+                /* Search for prefix matching strings, continuing the session's last search. */
+                SearchSession session = req.session().attribute(SEARCH_SESSION_ATTRIBUTE);
+                if (session == null) {
+                    session = new SearchSession();
+                    req.session().attribute(SEARCH_SESSION_ATTRIBUTE, session);
+                }
+                List<String> matches = regions.getLocationsByPrefix(term, session);
+                return GSON.toJson(matches);
             }
-        });
+        }));
+
+        /* Define the API endpoint for reverse geocoding: the named way and the named location
+         * nearest to a point. */
+        get("/reverse", handle("/reverse", (req, res) -> {
+            HashMap<String, Double> params =
+                    getRequestParams(req, REQUIRED_REVERSE_REQUEST_PARAMS);
+            double lon = params.get("lon");
+            double lat = params.get("lat");
+            ReverseGeocoder geocoder = regions.regionAt(lon, lat).geocoder();
+            ReverseGeocoder.Result way = geocoder.nearestWay(lon, lat);
+            ReverseGeocoder.Result location = geocoder.nearestLocation(lon, lat);
+            return GSON.toJson(new MapResponses.ReverseResponse(way, location));
+        }));
+
+        String adminToken = System.getProperty(ADMIN_TOKEN_PROPERTY);
+        if (adminToken != null) {
+            defineAdminEndpoints(adminToken);
+        }
 
         /* Define map application redirect */
         get("/", (request, response) -> {
@@ -174,6 +388,101 @@ public class MapServer {
         });
     }
 
+    /**
+     * Define the endpoints for changing the road network at runtime. Edges are given by the
+     * OSM ids of their endpoints in the from and to parameters, ways by their name in the
+     * name parameter. Every change answers with the new overlay, as does GET /admin/overlay.
+     * @param token The secret admin requests must carry.
+     */
+    private static void defineAdminEndpoints(String token) {
+        before("/admin/*", (req, res) -> {
+            String given = req.headers(ADMIN_HEADER);
+            if (given == null || !MessageDigest.isEqual(
+                    given.getBytes(StandardCharsets.UTF_8),
+                    token.getBytes(StandardCharsets.UTF_8))) {
+                halt(UNAUTHORIZED_RESPONSE, "Admin token missing or wrong.");
+            }
+        });
+        get("/admin/overlay", (req, res) -> overlayJson(regions.overlay()));
+        post("/admin/edge/disable", (req, res) -> adminChange(() ->
+                regions.disableEdge(idParam(req, "from"), idParam(req, "to"))));
+        post("/admin/edge/enable", (req, res) -> adminChange(() ->
+                regions.enableEdge(idParam(req, "from"), idParam(req, "to"))));
+        post("/admin/edge/weight", (req, res) -> {
+            HashMap<String, Double> params = getRequestParams(req, new String[]{"factor"});
+            return adminChange(() -> regions.reweightEdge(idParam(req, "from"),
+                    idParam(req, "to"), params.get("factor")));
+        });
+        post("/admin/way/close", (req, res) -> adminChange(() ->
+                regions.closeWay(nameParam(req))));
+        post("/admin/way/open", (req, res) -> adminChange(() ->
+                regions.openWay(nameParam(req))));
+    }
+
+    /** Applies a change to the road network and answers with the new overlay. */
+    private static String adminChange(Supplier<EdgeOverlay> change) {
+        try {
+            return overlayJson(change.get());
+        } catch (IllegalArgumentException e) {
+            halt(HALT_RESPONSE, e.getMessage());
+            return null;
+        }
+    }
+
+    private static long idParam(spark.Request req, String name) {
+        try {
+            return Long.parseLong(req.queryParams(name));
+        } catch (NumberFormatException e) {
+            halt(HALT_RESPONSE, "Incorrect parameters - provide OSM ids.");
+            return -1;
+        }
+    }
+
+    private static String nameParam(spark.Request req) {
+        String name = req.queryParams("name");
+        if (name == null) {
+            halt(HALT_RESPONSE, "Request failed - parameters missing.");
+        }
+        return name;
+    }
+
+    private static String overlayJson(EdgeOverlay overlay) {
+        return GSON.toJson(new MapResponses.OverlayResponse(overlay));
+    }
+
+    /**
+     * Wraps the handler for an endpoint so that its latency is recorded in Metrics and, in
+     * async mode, its work runs on the RequestExecutor, and requests beyond the endpoint's
+     * limits get a 503. A MapResponses.Streamed result is written out here, on the request
+     * thread, after the work is done, so a timeout never lands on a half written response.
+     * @param name The endpoint name the limits were registered under.
+     * @param handler The handler doing the request work.
+     */
+    private static spark.Route handle(String name, spark.Route handler) {
+        LatencyHistogram latency = Metrics.endpoint(name);
+        return (req, res) -> {
+            long start = System.nanoTime();
+            try {
+                Object result;
+                if (requestExecutor == null) {
+                    result = handler.handle(req, res);
+                } else {
+                    result = requestExecutor.call(name, () -> handler.handle(req, res));
+                }
+                if (result instanceof MapResponses.Streamed) {
+                    ((MapResponses.Streamed) result).writeTo(res.raw().getOutputStream());
+                    return "";
+                }
+                return result;
+            } catch (RequestExecutor.OverloadedException e) {
+                halt(OVERLOADED_RESPONSE, e.getMessage());
+                return null;
+            } finally {
+                latency.recordSince(start);
+            }
+        };
+    }
+
     private static int getHerokuAssignedPort() {
         ProcessBuilder processBuilder = new ProcessBuilder();
         if (processBuilder.environment().get("PORT") != null) {
@@ -208,13 +517,84 @@ public class MapServer {
         return params;
     }
 
+    /**
+     * Validate & return the stops of a tour request.
+     * @param req HTTP Request.
+     * @return The longitudes of the stops, and their latitudes.
+     */
+    private static double[][] getStops(spark.Request req) {
+        String param = req.queryParams(STOPS_PARAM);
+        if (param == null) {
+            halt(HALT_RESPONSE, "Request failed - parameters missing.");
+        }
+        String[] pairs = param.split(";");
+        if (pairs.length > TourPlanner.MAX_STOPS) {
+            halt(HALT_RESPONSE, "Request failed - at most " + TourPlanner.MAX_STOPS
+                    + " stops.");
+        }
+        double[][] stops = new double[2][pairs.length];
+        for (int i = 0; i < pairs.length; i++) {
+            String[] lonLat = pairs[i].split(",");
+            try {
+                if (lonLat.length != 2) {
+                    throw new NumberFormatException(pairs[i]);
+                }
+                stops[0][i] = Double.parseDouble(lonLat[0]);
+                stops[1][i] = Double.parseDouble(lonLat[1]);
+            } catch (NumberFormatException e) {
+                halt(HALT_RESPONSE, "Incorrect parameters - provide numbers.");
+            }
+        }
+        return stops;
+    }
+
+    /**
+     * Returns the encoded, route-free image for rasteredImgParams, from the raster cache if
+     * possible, and puts its size into the result map. The cache key is the region, the
+     * depth and the tile grid corners, which fully determine the stitched image once the
+     * route is no longer drawn into it.
+     */
+    private static MapResponses.ImageWriter writeCachedImage(MapRegion region,
+            Map<String, Object> rasteredImgParams) {
+        String[][] renderGrid = (String[][]) rasteredImgParams.get("render_grid");
+        String[] lastRow = renderGrid[renderGrid.length - 1];
+        String key = region.name() + ":" + renderGrid[0][0] + ":"
+                + lastRow[lastRow.length - 1];
+        CachedRaster cached;
+        synchronized (RASTER_CACHE) {
+            cached = RASTER_CACHE.get(key);
+        }
+        if (cached == null) {
+            Metrics.RASTER_CACHE_MISSES.increment();
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            writeImagesToOutputStream(region, rasteredImgParams, os, false);
+            long base64Start = System.nanoTime();
+            byte[] encodedImage = Base64.getEncoder().encode(os.toByteArray());
+            Metrics.BASE64.recordSince(base64Start);
+            cached = new CachedRaster(encodedImage,
+                    (int) rasteredImgParams.get("raster_width"),
+                    (int) rasteredImgParams.get("raster_height"));
+            synchronized (RASTER_CACHE) {
+                RASTER_CACHE.put(key, cached);
+            }
+        } else {
+            Metrics.RASTER_CACHE_HITS.increment();
+        }
+        rasteredImgParams.put("raster_width", cached.width);
+        rasteredImgParams.put("raster_height", cached.height);
+        return MapResponses.encoded(cached.encodedImage);
+    }
+
     /**
      * Writes the images corresponding to rasteredImgParams to the output stream.
      * In Spring 2016, students had to do this on their own, but in 2017,
      * we have made this into provided code since it was just a bit too low level.
+     * @param region The region whose tiles to use.
+     * @param drawRoute Whether to draw the current route on top of the tiles.
      */
-    private static void writeImagesToOutputStream(Map<String, Object> rasteredImageParams,
-                                                  ByteArrayOutputStream os) {
+    private static void writeImagesToOutputStream(MapRegion region,
+                                                  Map<String, Object> rasteredImageParams,
+                                                  ByteArrayOutputStream os, boolean drawRoute) {
         String[][] renderGrid = (String[][]) rasteredImageParams.get("render_grid");
         int numVertTiles = renderGrid.length;
         int numHorizTiles = renderGrid[0].length;
@@ -223,10 +603,11 @@ public class MapServer {
                 numVertTiles * MapServer.TILE_SIZE, BufferedImage.TYPE_INT_RGB);
         Graphics graphic = img.getGraphics();
         int x = 0, y = 0;
+        long stitchStart = System.nanoTime();
 
         for (int r = 0; r < numVertTiles; r += 1) {
             for (int c = 0; c < numHorizTiles; c += 1) {
-                graphic.drawImage(getImage(IMG_ROOT + renderGrid[r][c]), x, y, null);
+                graphic.drawImage(getImage(region, renderGrid[r][c]), x, y, null);
                 x += MapServer.TILE_SIZE;
                 if (x >= img.getWidth()) {
                     x = 0;
@@ -234,6 +615,7 @@ public class MapServer {
                 }
             }
         }
+        Metrics.STITCH.recordSince(stitchStart);
 
         /* If there is a route, draw it. */
         double ullon = (double) rasteredImageParams.get("raster_ul_lon"); //tiles.get(0).ulp;
@@ -243,43 +625,46 @@ public class MapServer {
 
         final double wdpp = (lrlon - ullon) / img.getWidth();
         final double hdpp = (ullat - lrlat) / img.getHeight();
-        if (route != null && !route.isEmpty()) {
+        /* Draw only the nodes of the route that are visible at this depth. */
+        SimplifiedRoute current = currentRoute.simplified;
+        int depth = (int) rasteredImageParams.get("depth");
+        double[] lons = current.lons(depth);
+        double[] lats = current.lats(depth);
+        if (drawRoute && lons.length > 0) {
             Graphics2D g2d = (Graphics2D) graphic;
             g2d.setColor(MapServer.ROUTE_STROKE_COLOR);
             g2d.setStroke(new BasicStroke(MapServer.ROUTE_STROKE_WIDTH_PX,
                     BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-            route.stream().reduce((v, w) -> {
-                g2d.drawLine((int) ((graph.lon(v) - ullon) * (1 / wdpp)),
-                             (int) ((ullat - graph.lat(v)) * (1 / hdpp)),
-                             (int) ((graph.lon(w) - ullon) * (1 / wdpp)),
-                             (int) ((ullat - graph.lat(w)) * (1 / hdpp)));
-                return w;
-            });
+            for (int i = 1; i < lons.length; i++) {
+                g2d.drawLine((int) ((lons[i - 1] - ullon) * (1 / wdpp)),
+                             (int) ((ullat - lats[i - 1]) * (1 / hdpp)),
+                             (int) ((lons[i] - ullon) * (1 / wdpp)),
+                             (int) ((ullat - lats[i]) * (1 / hdpp)));
+            }
         }
 
         rasteredImageParams.put("raster_width", img.getWidth());
         rasteredImageParams.put("raster_height", img.getHeight());
 
+        long encodeStart = System.nanoTime();
         try {
             ImageIO.write(img, "png", os);
         } catch (IOException e) {
             e.printStackTrace();
         }
+        Metrics.PNG_ENCODE.recordSince(encodeStart);
 
     }
 
-    private static BufferedImage getImage(String imgPath) {
+    private static BufferedImage getImage(MapRegion region, String tileName) {
+        long loadStart = System.nanoTime();
         BufferedImage tileImg = null;
-        if (tileImg == null) {
-            try {
-//                File in = new File(imgPath);
-                InputStream inputStream = MapServer.class.getClassLoader().getResourceAsStream(imgPath);
-
-                tileImg = ImageIO.read(inputStream);
-            } catch (IOException | NullPointerException e) {
-                e.printStackTrace();
-            }
+        try (InputStream inputStream = region.tile(tileName)) {
+            tileImg = ImageIO.read(inputStream);
+        } catch (IOException | NullPointerException e) {
+            e.printStackTrace();
         }
+        Metrics.TILE_LOAD.recordSince(loadStart);
         return tileImg;
     }
 
@@ -287,7 +672,13 @@ public class MapServer {
      * Clear the current found route, if it exists.
      */
     public static void clearRoute() {
-        route = new LinkedList<Long>();
+        currentRoute = new CurrentRoute(RegionRoute.empty());
+    }
+
+    /** Simplify a route to the pixels of the region it is drawn in. */
+    private static SimplifiedRoute simplify(RegionRoute r) {
+        Rasterer rasterer = r.isEmpty() ? new Rasterer() : regions.routeRasterer(r);
+        return new SimplifiedRoute(r.route(), r.lons(), r.lats(), rasterer);
     }
 
     /**
@@ -298,7 +689,7 @@ public class MapServer {
      * cleaned <code>prefix</code>.
      */
     public static List<String> getLocationsByPrefix(String prefix) {
-        return graph.getLocationsByPrefix(prefix);
+        return regions.getLocationsByPrefix(prefix);
     }
 
     /**
@@ -316,15 +707,23 @@ public class MapServer {
     public static List<Map<String, Object>> getLocations(String locationName) {
         List<Map<String, Object>> locationList = new LinkedList<>();
 
-        List<Long> nodes = graph.getLocations(locationName);
-        for (long id : nodes) {
-            Map<String, Object> node = new HashMap<>();
-            node.put("name", locationName);
-            node.put("id", id);
-            node.put("lat", graph.locationLat(id));
-            node.put("lon", graph.locationLon(id));
+        /* Regions may overlap along their borders, so a location can be in more than one. */
+        Set<Long> seen = new HashSet<>();
+        for (MapRegion region : regions.regions()) {
+            GraphDB graph = region.graph();
+            List<Long> nodes = graph.getLocations(locationName);
+            for (long id : nodes) {
+                if (!seen.add(id)) {
+                    continue;
+                }
+                Map<String, Object> node = new HashMap<>();
+                node.put("name", locationName);
+                node.put("id", id);
+                node.put("lat", graph.locationLat(id));
+                node.put("lon", graph.locationLon(id));
 
-            locationList.add(node);
+                locationList.add(node);
+            }
         }
 
         return locationList;
@@ -353,11 +752,11 @@ public class MapServer {
     }
 
     /**
-     * Takes the route of this MapServer and converts it into an HTML friendly
+     * Takes a route and converts its directions into an HTML friendly
      * String to be passed to the frontend.
      */
-    private static String getDirectionsText() {
-        List<Router.NavigationDirection> directions = Router.routeDirections(graph, route);
+    private static String getDirectionsText(RegionRoute route) {
+        List<Router.NavigationDirection> directions = route.directions();
         if (directions == null || directions.isEmpty()) {
           return "";
         }
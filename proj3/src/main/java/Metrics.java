@@ -0,0 +1,115 @@
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Built-in instrumentation for MapServer: latency histograms for every endpoint and for the
+ * phases of the work behind them, plus a few counters. Everything is exposed at /metrics in
+ * the <a href="https://prometheus.io/docs/instrumenting/exposition_formats/">Prometheus text
+ * format</a>, with the histograms reported as summaries.
+ *
+ * The phase histograms and counters are static fields, so instrumenting a code path costs a
+ * System.nanoTime() call and an atomic increment, e.g.
+ * <pre>
+ *     long start = System.nanoTime();
+ *     long id = g.closest(lon, lat);
+ *     Metrics.CLOSEST.recordSince(start);
+ * </pre>
+ */
+public class Metrics {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static final Map<String, LatencyHistogram> ENDPOINTS = new ConcurrentSkipListMap<>();
+    private static final Map<String, LatencyHistogram> PHASES = new ConcurrentSkipListMap<>();
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentSkipListMap<>();
+
+    /** Finding the closest graph vertex to a point. */
+    public static final LatencyHistogram CLOSEST = phase("closest");
+    /** The A* search itself. */
+    public static final LatencyHistogram ASTAR = phase("astar");
+    /** Turning a route into navigation directions. */
+    public static final LatencyHistogram DIRECTIONS = phase("directions");
+    /** Loading and decoding one tile image. */
+    public static final LatencyHistogram TILE_LOAD = phase("tile_load");
+    /** Drawing all the tiles of a raster into one image, including loading them. */
+    public static final LatencyHistogram STITCH = phase("stitch");
+    /** Encoding the stitched image as a PNG. */
+    public static final LatencyHistogram PNG_ENCODE = phase("png_encode");
+    /** Base64 encoding the PNG of a route-free raster for the raster cache. */
+    public static final LatencyHistogram BASE64 = phase("base64");
+    /** Writing a raster response to the client, Base64 encoding an uncached PNG on the way. */
+    public static final LatencyHistogram RASTER_WRITE = phase("raster_write");
+    /** Finding the road distances between every pair of stops of a tour. */
+    public static final LatencyHistogram TOUR_MATRIX = phase("tour_matrix");
+    /** Choosing the order of the stops of a tour. */
+    public static final LatencyHistogram TOUR_SOLVE = phase("tour_solve");
+
+    /** Raster requests answered from the raster cache. */
+    public static final LongAdder RASTER_CACHE_HITS = counter("raster_cache_hits");
+    /** Raster requests that had to be stitched and encoded. */
+    public static final LongAdder RASTER_CACHE_MISSES = counter("raster_cache_misses");
+    /** Route requests answered from the route cache. */
+    public static final LongAdder ROUTE_CACHE_HITS = counter("route_cache_hits");
+    /** Route requests that needed a search. */
+    public static final LongAdder ROUTE_CACHE_MISSES = counter("route_cache_misses");
+    /** Prefix searches answered from the prefix cache. */
+    public static final LongAdder PREFIX_CACHE_HITS = counter("prefix_cache_hits");
+    /** Short prefix searches that had to collect their names from the tries. */
+    public static final LongAdder PREFIX_CACHE_MISSES = counter("prefix_cache_misses");
+    /** Vertices settled by A* searches. */
+    public static final LongAdder VERTICES_SETTLED = counter("vertices_settled");
+
+    private static LatencyHistogram phase(String name) {
+        return PHASES.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    private static LongAdder counter(String name) {
+        return COUNTERS.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    /**
+     * Returns the latency histogram for the given endpoint, creating it if needed.
+     * @param name The endpoint, e.g. "/raster".
+     */
+    public static LatencyHistogram endpoint(String name) {
+        return ENDPOINTS.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    /** Returns all metrics in the Prometheus text exposition format. */
+    public static String toPrometheus() {
+        StringBuilder sb = new StringBuilder();
+        appendSummaries(sb, "bearmaps_request_seconds", "Latency of MapServer endpoints.",
+                "endpoint", ENDPOINTS);
+        appendSummaries(sb, "bearmaps_phase_seconds", "Latency of request processing phases.",
+                "phase", PHASES);
+        for (Map.Entry<String, LongAdder> entry : COUNTERS.entrySet()) {
+            String name = "bearmaps_" + entry.getKey() + "_total";
+            sb.append("# TYPE ").append(name).append(" counter\n");
+            sb.append(name).append(' ').append(entry.getValue().sum()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void appendSummaries(StringBuilder sb, String name, String help, String label,
+                                        Map<String, LatencyHistogram> histograms) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(" summary\n");
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            String labels = label + "=\"" + entry.getKey() + "\"";
+            LatencyHistogram h = entry.getValue();
+            for (double q : QUANTILES) {
+                sb.append(name).append('{').append(labels).append(",quantile=\"").append(q)
+                        .append("\"} ").append(seconds(h.valueAtQuantile(q))).append('\n');
+            }
+            sb.append(name).append("_sum{").append(labels).append("} ")
+                    .append(seconds(h.sumMicros())).append('\n');
+            sb.append(name).append("_count{").append(labels).append("} ")
+                    .append(h.count()).append('\n');
+        }
+    }
+
+    private static String seconds(long micros) {
+        return String.format(Locale.ROOT, "%.6f", micros / 1e6);
+    }
+}
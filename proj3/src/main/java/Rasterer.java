@@ -8,13 +8,34 @@ import java.util.Map;
  * not draw the output correctly.
  */
 public class Rasterer {
-    private Boolean query_success;
-    private static final double ROOT_WIDTH = MapServer.ROOT_LRLON - MapServer.ROOT_ULLON;
-    private static final double ROOT_HEIGHT = MapServer.ROOT_ULLAT - MapServer.ROOT_LRLAT;
-    private static final double ROOT_LONDPP = ROOT_WIDTH / MapServer.TILE_SIZE;
+    /** The deepest zoom level that has tiles. */
+    public static final int MAX_DEPTH = 7;
 
+    /* The bounding box of the root tile of the tiles this Rasterer serves. */
+    private final double rootUllon, rootUllat, rootLrlon, rootLrlat;
+    private final double rootWidth, rootHeight, rootLonDPP;
+
+    /** Create a Rasterer for the tiles of the default map, rooted at MapServer.ROOT_*. */
     public Rasterer() {
-        query_success = true;
+        this(MapServer.ROOT_ULLON, MapServer.ROOT_ULLAT, MapServer.ROOT_LRLON,
+                MapServer.ROOT_LRLAT);
+    }
+
+    /**
+     * Create a Rasterer for a tile set whose root tile has the given bounding box.
+     * @param ullon The upper left longitude of the root tile.
+     * @param ullat The upper left latitude of the root tile.
+     * @param lrlon The lower right longitude of the root tile.
+     * @param lrlat The lower right latitude of the root tile.
+     */
+    public Rasterer(double ullon, double ullat, double lrlon, double lrlat) {
+        this.rootUllon = ullon;
+        this.rootUllat = ullat;
+        this.rootLrlon = lrlon;
+        this.rootLrlat = lrlat;
+        this.rootWidth = lrlon - ullon;
+        this.rootHeight = ullat - lrlat;
+        this.rootLonDPP = rootWidth / MapServer.TILE_SIZE;
     }
 
     /**
@@ -52,8 +73,8 @@ public class Rasterer {
         int depth = getDepth(lonDPP);
 
         results.put("depth", depth);
-        double xStepCount = ROOT_WIDTH / Math.pow(2, depth);
-        double yStepCount = ROOT_HEIGHT / Math.pow(2, depth);
+        double xStepCount = rootWidth / Math.pow(2, depth);
+        double yStepCount = rootHeight / Math.pow(2, depth);
 
         int[] xCounts = horizonCount(params.get("ullon"), params.get("lrlon"), xStepCount);
         int[] yCounts = verticalCount(params.get("ullat"), params.get("lrlat"), yStepCount);
@@ -61,15 +82,17 @@ public class Rasterer {
 
         String[][] images = getImageFiles(depth, xCounts, yCounts);
 
-        results.put("raster_ul_lon", MapServer.ROOT_ULLON + xCounts[0] * xStepCount);
-        results.put("raster_lr_lon", MapServer.ROOT_ULLON + (1.0 + xCounts[1]) * xStepCount);
-        results.put("raster_ul_lat", MapServer.ROOT_ULLAT - yCounts[0] * yStepCount);
-        results.put("raster_lr_lat", MapServer.ROOT_ULLAT - (1.0 + yCounts[1]) * yStepCount);
+        results.put("raster_ul_lon", rootUllon + xCounts[0] * xStepCount);
+        results.put("raster_lr_lon", rootUllon + (1.0 + xCounts[1]) * xStepCount);
+        results.put("raster_ul_lat", rootUllat - yCounts[0] * yStepCount);
+        results.put("raster_lr_lat", rootUllat - (1.0 + yCounts[1]) * yStepCount);
         results.put("render_grid", images);
 
+        /* Local, since one Rasterer serves concurrent requests. */
+        boolean query_success = true;
         if (params.get("ullon") > params.get("lrlon") || params.get("lrlat") > params.get("ullat") ||
-                params.get("lrlon") <= MapServer.ROOT_ULLON || params.get("ullon") >= MapServer.ROOT_LRLON ||
-                params.get("lrlat") >= MapServer.ROOT_ULLAT || params.get("ullat") <= MapServer.ROOT_LRLAT) {
+                params.get("lrlon") <= rootUllon || params.get("ullon") >= rootLrlon ||
+                params.get("lrlat") >= rootUllat || params.get("ullat") <= rootLrlat) {
             query_success = false;
         }
         results.put("query_success", query_success);
@@ -104,21 +127,37 @@ public class Rasterer {
 
     private int getDepth(double req_lonDPP) {
         int depth = 0;
-        while (ROOT_LONDPP > req_lonDPP) {
+        while (rootLonDPP > req_lonDPP) {
             depth++;
             req_lonDPP *= 2;
         }
 
-        if (depth > 7) {
-            return 7;
+        if (depth > MAX_DEPTH) {
+            return MAX_DEPTH;
         } else {
             return depth;
         }
     }
 
+    /**
+     * Returns the longitudinal distance per pixel of this Rasterer's tiles at the given depth.
+     * @param depth The zoom level, from 0 to MAX_DEPTH.
+     */
+    public double lonDPP(int depth) {
+        return rootLonDPP / (1 << depth);
+    }
+
+    /**
+     * Returns the latitudinal distance per pixel of this Rasterer's tiles at the given depth.
+     * @param depth The zoom level, from 0 to MAX_DEPTH.
+     */
+    public double latDPP(int depth) {
+        return rootHeight / MapServer.TILE_SIZE / (1 << depth);
+    }
+
     private int[] horizonCount(double userUllon, double userLrlon, double step) {
         int[] result = new int[2];
-        double currentLon = MapServer.ROOT_ULLON + step;
+        double currentLon = rootUllon + step;
         int a = 0;
         for (; userUllon > currentLon; a++) {
             currentLon += step;
@@ -127,7 +166,7 @@ public class Rasterer {
 
         for (; userLrlon > currentLon; a++) {
             currentLon += step;
-            if (currentLon > MapServer.ROOT_LRLON) {
+            if (currentLon > rootLrlon) {
                 break;
             }
         }
@@ -138,7 +177,7 @@ public class Rasterer {
 
     private int[] verticalCount(double userUllat, double userLrlat, double step) {
         int[] result = new int[2];
-        double currentLat = MapServer.ROOT_ULLAT - step;
+        double currentLat = rootUllat - step;
         int a = 0;
         for (; userUllat < currentLat; a++) {
             currentLat -= step;
@@ -147,7 +186,7 @@ public class Rasterer {
 
         for (; userLrlat < currentLat; a++) {
             currentLat -= step;
-            if (currentLat < MapServer.ROOT_LRLAT) {
+            if (currentLat < rootLrlat) {
                 break;
             }
         }
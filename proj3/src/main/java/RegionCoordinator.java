@@ -0,0 +1,458 @@
+import com.google.gson.Gson;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dispatches MapServer requests over the regions of a sharded map. Raster requests go to
+ * the region under the center of the viewport, and routes between two points in the same
+ * region are found on that region's graph alone.
+ *
+ * A route between two regions is stitched together through the vertices the two graphs
+ * share along their border, see MapRegion. Dijkstra's algorithm runs from the start in its
+ * region and from the destination in its region, and the route goes through the boundary
+ * vertex with the smallest total distance. That is the shortest route that crosses the
+ * border once; routes between regions that do not share a border are not supported.
+ */
+public class RegionCoordinator {
+    /** The layout of one region in a regions file. */
+    private static class RegionConfig {
+        String name;
+        String osm;
+        String tiles;
+        String archive;
+        double ullon;
+        double ullat;
+        double lrlon;
+        double lrlat;
+        int minComponentSize = GraphDB.DEFAULT_MIN_COMPONENT_SIZE;
+    }
+
+    /** Number of routes kept in the route cache. */
+    private static final int ROUTE_CACHE_SIZE = 256;
+    /**
+     * Prefixes up to this long match so many names that collecting them dominates a
+     * search; their results are kept in the prefix cache.
+     */
+    static final int SHORT_PREFIX_LENGTH = 3;
+    /** Number of short prefixes kept in the prefix cache. */
+    private static final int PREFIX_CACHE_SIZE = 128;
+
+    private final List<MapRegion> regions;
+    /** The vertices shared by each pair of regions, by "name|name", found on first use. */
+    private final Map<String, long[]> boundaries = new ConcurrentHashMap<>();
+    /** The current overlay; replaced, never modified, while holding the routeCache lock. */
+    private volatile EdgeOverlay overlay = EdgeOverlay.EMPTY;
+    /** Routes by their regions and end vertices, see shortestPath. */
+    private final Map<String, RegionRoute> routeCache =
+            new LinkedHashMap<String, RegionRoute>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, RegionRoute> eldest) {
+                    return size() > ROUTE_CACHE_SIZE;
+                }
+            };
+
+    /** Location names by short cleaned prefix. The names never change, so neither do these. */
+    private final Map<String, List<String>> prefixCache =
+            new LinkedHashMap<String, List<String>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest) {
+                    return size() > PREFIX_CACHE_SIZE;
+                }
+            };
+
+    public RegionCoordinator(List<MapRegion> regions) {
+        if (regions.isEmpty()) {
+            throw new IllegalArgumentException("A map needs at least one region.");
+        }
+        this.regions = Collections.unmodifiableList(new ArrayList<>(regions));
+    }
+
+    /**
+     * Read the regions of a map from a JSON file on the classpath, e.g.
+     * <pre>
+     * [{"name": "west", "osm": "west.osm.xml", "tiles": "west_imgs/",
+     *   "ullon": -122.30, "ullat": 37.89, "lrlon": -122.25, "lrlat": 37.82},
+     *  {"name": "east", ...}]
+     * </pre>
+     * Each region may also set minComponentSize, and archive, the path of a TileArchive
+     * file to serve its tiles from instead of the tiles folder.
+     * @param path The classpath location of the file.
+     */
+    public static RegionCoordinator fromJson(String path) {
+        InputStream in = RegionCoordinator.class.getClassLoader().getResourceAsStream(path);
+        if (in == null) {
+            throw new IllegalArgumentException("Regions file " + path + " not found.");
+        }
+        RegionConfig[] configs = new Gson().fromJson(
+                new InputStreamReader(in, StandardCharsets.UTF_8), RegionConfig[].class);
+        List<MapRegion> regions = new ArrayList<>();
+        for (RegionConfig c : configs) {
+            regions.add(new MapRegion(c.name, c.osm, c.tiles, c.archive, c.ullon, c.ullat,
+                    c.lrlon, c.lrlat, c.minComponentSize));
+        }
+        return new RegionCoordinator(regions);
+    }
+
+    public List<MapRegion> regions() {
+        return regions;
+    }
+
+    /**
+     * Returns the region containing the given point. If it lies in several, the first one
+     * is used, and if it lies in none, the nearest one.
+     */
+    public MapRegion regionAt(double lon, double lat) {
+        MapRegion nearest = null;
+        double nearestDistance = Double.POSITIVE_INFINITY;
+        for (MapRegion region : regions) {
+            double d = region.distanceTo(lon, lat);
+            if (d < nearestDistance) {
+                nearest = region;
+                nearestDistance = d;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Returns the region to raster a query box from: the one under the center of the box.
+     * A box that straddles a border is rastered from that region's tiles alone.
+     * @param params The raster request parameters, see Rasterer.getMapRaster.
+     */
+    public MapRegion rasterRegion(Map<String, Double> params) {
+        double lon = (params.get("ullon") + params.get("lrlon")) / 2;
+        double lat = (params.get("ullat") + params.get("lrlat")) / 2;
+        return regionAt(lon, lat);
+    }
+
+    /**
+     * Returns the Rasterer whose pixels a route is simplified to. A route between two regions
+     * uses the one of its end regions with the smaller pixels, so that neither part of the
+     * route is simplified more than its own region's tiles allow.
+     * @param route A route that is not empty.
+     */
+    public Rasterer routeRasterer(RegionRoute route) {
+        double[] lons = route.lons();
+        double[] lats = route.lats();
+        Rasterer first = regionAt(lons[0], lats[0]).rasterer();
+        Rasterer last = regionAt(lons[lons.length - 1], lats[lats.length - 1]).rasterer();
+        return last.lonDPP(0) < first.lonDPP(0) ? last : first;
+    }
+
+    /**
+     * Finds the shortest route between the graph vertices closest to the start and to the
+     * destination, through as many as two regions, on the road network as changed by the
+     * current overlay. Routes are cached by the vertices they run between.
+     * @return The route, or an empty route if there is none.
+     */
+    public RegionRoute shortestPath(double stlon, double stlat, double destlon,
+                                    double destlat) {
+        MapRegion from = regionAt(stlon, stlat);
+        MapRegion to = regionAt(destlon, destlat);
+        GraphDB a = from.graph();
+        GraphDB b = to.graph();
+        long closestStart = System.nanoTime();
+        int start = a.closestIndex(stlon, stlat);
+        int end = b.closestIndex(destlon, destlat);
+        Metrics.CLOSEST.recordSince(closestStart);
+        if (start < 0 || end < 0) {
+            return RegionRoute.empty();
+        }
+
+        String key = from.name() + ":" + a.id(start) + "|" + to.name() + ":" + b.id(end);
+        EdgeOverlay snapshot;
+        synchronized (routeCache) {
+            RegionRoute cached = routeCache.get(key);
+            if (cached != null) {
+                Metrics.ROUTE_CACHE_HITS.increment();
+                return cached;
+            }
+            snapshot = overlay;
+        }
+        Metrics.ROUTE_CACHE_MISSES.increment();
+
+        RegionRoute route;
+        if (from == to) {
+            route = new RegionRoute(Collections.singletonList(a), Collections.singletonList(
+                    Router.shortestPath(a, snapshot, start, end)));
+        } else {
+            route = acrossRegions(from, to, snapshot, start, end);
+        }
+        synchronized (routeCache) {
+            /* Drop the route if the overlay changed while it was being found. */
+            if (overlay == snapshot) {
+                routeCache.put(key, route);
+            }
+        }
+        return route;
+    }
+
+    /**
+     * Finds up to k different routes between the graph vertices closest to the start and to
+     * the destination, shortest first, see Router.alternatives. Alternatives are only looked
+     * for within one region; between two regions, this returns the shortest route alone.
+     * @return The routes, or a list holding just an empty route if there is none.
+     */
+    public List<RegionRoute> alternatives(double stlon, double stlat, double destlon,
+                                          double destlat, int k) {
+        MapRegion from = regionAt(stlon, stlat);
+        MapRegion to = regionAt(destlon, destlat);
+        if (from != to || k <= 1) {
+            return Collections.singletonList(shortestPath(stlon, stlat, destlon, destlat));
+        }
+        GraphDB g = from.graph();
+        long closestStart = System.nanoTime();
+        int start = g.closestIndex(stlon, stlat);
+        int end = g.closestIndex(destlon, destlat);
+        Metrics.CLOSEST.recordSince(closestStart);
+        List<RegionRoute> routes = new ArrayList<>();
+        if (start >= 0 && end >= 0) {
+            for (List<Long> route : Router.alternatives(g, overlay, start, end, k)) {
+                routes.add(new RegionRoute(Collections.singletonList(g),
+                        Collections.singletonList(route)));
+            }
+        }
+        if (routes.isEmpty()) {
+            routes.add(RegionRoute.empty());
+        }
+        return routes;
+    }
+
+    /**
+     * Plans the order to visit the stops closest to the given points in, see TourPlanner.
+     * A tour stays within the region of its first stop, on the road network as changed by
+     * the current overlay.
+     * @param roundTrip Whether the tour ends back at the first stop.
+     * @return The tour, or an empty tour if some stop cannot be reached.
+     */
+    public TourPlanner.Tour tour(double[] lons, double[] lats, boolean roundTrip) {
+        GraphDB g = regionAt(lons[0], lats[0]).graph();
+        return TourPlanner.plan(g, overlay, lons, lats, roundTrip,
+                TourPlanner.DEFAULT_BUDGET_NANOS);
+    }
+
+    /** Stitches a route between two regions together at their best shared vertex. */
+    private RegionRoute acrossRegions(MapRegion from, MapRegion to, EdgeOverlay snapshot,
+                                      int start, int end) {
+        GraphDB a = from.graph();
+        GraphDB b = to.graph();
+        long[] boundary = boundary(from, to);
+        if (boundary.length == 0) {
+            return RegionRoute.empty();
+        }
+        int[] edgeToA = new int[a.size()];
+        int[] edgeToB = new int[b.size()];
+        long searchStart = System.nanoTime();
+        double[] fromStart = Router.shortestPathTree(a, snapshot, start, edgeToA);
+        double[] toEnd = Router.shortestPathTree(b, snapshot, end, edgeToB);
+        Metrics.ASTAR.recordSince(searchStart);
+
+        long best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (long id : boundary) {
+            double d = fromStart[a.index(id)] + toEnd[b.index(id)];
+            if (d < bestDistance) {
+                best = id;
+                bestDistance = d;
+            }
+        }
+        if (best == -1) {
+            return RegionRoute.empty();
+        }
+        List<Long> first = Router.buildRoute(a, edgeToA, a.index(best));
+        List<Long> second = Router.buildRoute(b, edgeToB, b.index(best));
+        Collections.reverse(second);
+        return new RegionRoute(Arrays.asList(a, b), Arrays.asList(first, second));
+    }
+
+    /** Returns the current road network overlay. */
+    public EdgeOverlay overlay() {
+        return overlay;
+    }
+
+    /**
+     * Close the road between two vertices, in both directions.
+     * @param from The OSM id of one endpoint.
+     * @param to The OSM id of the other endpoint.
+     * @return The new overlay.
+     */
+    public EdgeOverlay disableEdge(long from, long to) {
+        return setFactor(Collections.singletonList(edge(from, to)), EdgeOverlay.CLOSED);
+    }
+
+    /** Reopen the road between two vertices, undoing any change to it. */
+    public EdgeOverlay enableEdge(long from, long to) {
+        return setFactor(Collections.singletonList(edge(from, to)), 1);
+    }
+
+    /**
+     * Make the road between two vertices count as longer, e.g. because of roadworks.
+     * @param factor What to multiply its length by, at least 1.
+     */
+    public EdgeOverlay reweightEdge(long from, long to, double factor) {
+        return setFactor(Collections.singletonList(edge(from, to)), factor);
+    }
+
+    /** Close every road of the ways with the given name, in every region. */
+    public EdgeOverlay closeWay(String wayName) {
+        return setFactor(edgesOfWay(wayName), EdgeOverlay.CLOSED);
+    }
+
+    /** Reopen every road of the ways with the given name, undoing any change to them. */
+    public EdgeOverlay openWay(String wayName) {
+        return setFactor(edgesOfWay(wayName), 1);
+    }
+
+    /** Returns the edge between two vertices, if some region has it. */
+    private long[] edge(long from, long to) {
+        for (MapRegion region : regions) {
+            GraphDB g = region.graph();
+            if (g.index(from) >= 0 && g.index(to) >= 0) {
+                for (long w : g.adjacent(from)) {
+                    if (w == to) {
+                        return new long[]{from, to};
+                    }
+                }
+            }
+        }
+        throw new IllegalArgumentException("No road between " + from + " and " + to + ".");
+    }
+
+    private List<long[]> edgesOfWay(String wayName) {
+        List<long[]> edges = new ArrayList<>();
+        for (MapRegion region : regions) {
+            edges.addAll(region.graph().edgesOfWay(wayName));
+        }
+        if (edges.isEmpty()) {
+            throw new IllegalArgumentException("No way named " + wayName + ".");
+        }
+        return edges;
+    }
+
+    /**
+     * Installs a new overlay with the given edges set to the given factor, and invalidates
+     * the cached routes it may have changed. Making edges longer can only change routes
+     * that use them, but making them shorter can change any route, so that clears the cache.
+     */
+    private synchronized EdgeOverlay setFactor(List<long[]> edges, double factor) {
+        EdgeOverlay before = overlay;
+        EdgeOverlay after = before.withFactor(edges, factor);
+        boolean shorter = false;
+        Map<Long, Set<Long>> longer = new HashMap<>();
+        for (long[] edge : edges) {
+            double old = before.factor(edge[0], edge[1]);
+            if (factor < old) {
+                shorter = true;
+            } else if (factor > old) {
+                longer.computeIfAbsent(edge[0], k -> new HashSet<>()).add(edge[1]);
+                longer.computeIfAbsent(edge[1], k -> new HashSet<>()).add(edge[0]);
+            }
+        }
+
+        synchronized (routeCache) {
+            overlay = after;
+            if (shorter) {
+                routeCache.clear();
+            } else if (!longer.isEmpty()) {
+                routeCache.values().removeIf(route -> uses(route.route(), longer));
+            }
+        }
+        return after;
+    }
+
+    private static boolean uses(List<Long> route, Map<Long, Set<Long>> edges) {
+        Long prev = null;
+        for (Long v : route) {
+            if (prev != null) {
+                Set<Long> neighbors = edges.get(prev);
+                if (neighbors != null && neighbors.contains(v)) {
+                    return true;
+                }
+            }
+            prev = v;
+        }
+        return false;
+    }
+
+    /** Returns the OSM ids of the vertices in both regions' graphs, in increasing order. */
+    private long[] boundary(MapRegion r1, MapRegion r2) {
+        return boundaries.computeIfAbsent(r1.name() + "|" + r2.name(), k -> {
+            GraphDB g1 = r1.graph();
+            GraphDB g2 = r2.graph();
+            List<Long> shared = new ArrayList<>();
+            for (long id : g1.vertices()) {
+                if (g2.index(id) >= 0) {
+                    shared.add(id);
+                }
+            }
+            long[] ids = new long[shared.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = shared.get(i);
+            }
+            Arrays.sort(ids);
+            return ids;
+        });
+    }
+
+    /**
+     * Collects the names of locations in any region that prefix-match the query string.
+     * Searching loads every region.
+     */
+    public List<String> getLocationsByPrefix(String prefix) {
+        return getLocationsByPrefix(prefix, null);
+    }
+
+    /**
+     * Like getLocationsByPrefix(prefix), but continues from where the session's last search
+     * left off. Results for short prefixes come from the prefix cache instead.
+     * @param session The searching client's session, or null to search from scratch.
+     */
+    public List<String> getLocationsByPrefix(String prefix, SearchSession session) {
+        String cleaned = GraphDB.cleanString(prefix);
+        boolean cacheable = cleaned.length() <= SHORT_PREFIX_LENGTH;
+        if (cacheable) {
+            List<String> cached;
+            synchronized (prefixCache) {
+                cached = prefixCache.get(cleaned);
+            }
+            if (cached != null) {
+                Metrics.PREFIX_CACHE_HITS.increment();
+                return cached;
+            }
+            Metrics.PREFIX_CACHE_MISSES.increment();
+        }
+        Set<String> names = new LinkedHashSet<>();
+        if (session == null) {
+            for (MapRegion region : regions) {
+                names.addAll(region.graph().getLocationsByPrefix(prefix));
+            }
+        } else {
+            synchronized (session) {
+                for (MapRegion region : regions) {
+                    names.addAll(region.graph().getLocationsByPrefix(session.cursor(region),
+                            prefix));
+                }
+            }
+        }
+        List<String> result = Collections.unmodifiableList(new ArrayList<>(names));
+        if (cacheable) {
+            synchronized (prefixCache) {
+                prefixCache.put(cleaned, result);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,110 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A route that may run through several regions of a sharded map. It is made of legs, each
+ * found on the graph of one region, where every leg starts at the boundary vertex the
+ * previous one ended at. The coordinates and directions are worked out per leg, on that
+ * leg's graph, so nothing later needs to know which region a node came from.
+ */
+public class RegionRoute {
+    private static final RegionRoute EMPTY =
+            new RegionRoute(Collections.emptyList(), Collections.emptyList());
+
+    private final List<Long> route = new ArrayList<>();
+    private final double[] lons;
+    private final double[] lats;
+    private final List<Router.NavigationDirection> directions;
+
+    /**
+     * Create a route from its legs.
+     * @param graphs The graph each leg was found on.
+     * @param legs The node ids of each leg, in order.
+     */
+    public RegionRoute(List<GraphDB> graphs, List<List<Long>> legs) {
+        if (graphs.size() != legs.size()) {
+            throw new IllegalArgumentException("Every leg needs a graph.");
+        }
+        List<Double> lonList = new ArrayList<>();
+        List<Double> latList = new ArrayList<>();
+        List<Router.NavigationDirection> nav = new ArrayList<>();
+        for (int i = 0; i < legs.size(); i++) {
+            GraphDB g = graphs.get(i);
+            List<Long> leg = legs.get(i);
+            if (leg.isEmpty()) {
+                continue;
+            }
+            /* Consecutive legs share the boundary vertex; keep it once. */
+            boolean joined = !route.isEmpty();
+            if (joined && route.get(route.size() - 1).longValue() != leg.get(0)) {
+                throw new IllegalArgumentException("Leg " + i + " does not start where the"
+                        + " previous leg ends.");
+            }
+            double turnBearing = 0;
+            if (joined && leg.size() > 1 && route.size() > 1) {
+                int last = lonList.size() - 1;
+                double before = GraphDB.bearing(lonList.get(last - 1), latList.get(last - 1),
+                        lonList.get(last), latList.get(last));
+                double after = g.bearing(leg.get(0), leg.get(1));
+                turnBearing = after - before;
+            }
+            for (int j = joined ? 1 : 0; j < leg.size(); j++) {
+                route.add(leg.get(j));
+                lonList.add(g.lon(leg.get(j)));
+                latList.add(g.lat(leg.get(j)));
+            }
+            if (leg.size() > 1) {
+                long start = System.nanoTime();
+                nav = Router.joinDirections(nav, Router.routeDirections(g, leg), turnBearing);
+                Metrics.DIRECTIONS.recordSince(start);
+            }
+        }
+
+        lons = new double[route.size()];
+        lats = new double[route.size()];
+        for (int i = 0; i < route.size(); i++) {
+            lons[i] = lonList.get(i);
+            lats[i] = latList.get(i);
+        }
+        directions = Collections.unmodifiableList(nav);
+    }
+
+    /** Returns a route with no nodes, for when no route was found. */
+    public static RegionRoute empty() {
+        return EMPTY;
+    }
+
+    /** Returns the node ids of the whole route, in order. */
+    public List<Long> route() {
+        return Collections.unmodifiableList(route);
+    }
+
+    /** Returns the longitude of every node of the route. Do not modify the array. */
+    double[] lons() {
+        return lons;
+    }
+
+    /** Returns the latitude of every node of the route. Do not modify the array. */
+    double[] lats() {
+        return lats;
+    }
+
+    /** Returns the length of the route in miles. */
+    public double distance() {
+        double distance = 0;
+        for (int i = 1; i < lons.length; i++) {
+            distance += GraphDB.distance(lons[i - 1], lats[i - 1], lons[i], lats[i]);
+        }
+        return distance;
+    }
+
+    /** Returns the navigation directions for the whole route. */
+    public List<Router.NavigationDirection> directions() {
+        return directions;
+    }
+
+    public boolean isEmpty() {
+        return route.isEmpty();
+    }
+}
@@ -0,0 +1,190 @@
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs MapServer request work on a dedicated executor instead of Jetty's request threads,
+ * with a concurrency limit and a bounded wait queue for every endpoint. On a JDK with
+ * virtual threads the executor creates one virtual thread per task; otherwise it is a
+ * ForkJoinPool with one worker per core.
+ *
+ * Each endpoint admits at most maxConcurrent requests into the executor at a time, and lets
+ * at most maxQueued more wait for a slot. Any request beyond that is rejected right away, so
+ * that the server answers 503 under a load spike instead of letting latency pile up.
+ *
+ * A request that times out is answered with a 503 right away, but its slot is only given back
+ * once the work has actually finished. Cancelling a ForkJoinPool task does not interrupt it,
+ * and CPU-bound routing would ignore the interrupt anyway, so freeing the slot any earlier
+ * would let more work run than the limit allows.
+ */
+public class RequestExecutor {
+    /** Thrown when an endpoint is saturated and the request should be answered with a 503. */
+    public static class OverloadedException extends RuntimeException {
+        private static final long serialVersionUID = 6023348124541736297L;
+
+        OverloadedException(String message) {
+            super(message);
+        }
+    }
+
+    /** Admission state for one endpoint. */
+    private static class Endpoint {
+        final Semaphore running;
+        final AtomicInteger admitted = new AtomicInteger();
+        final int maxAdmitted;
+
+        Endpoint(int maxConcurrent, int maxQueued) {
+            this.running = new Semaphore(maxConcurrent, true);
+            this.maxAdmitted = maxConcurrent + maxQueued;
+        }
+
+        /** Give back the slot of a request whose work has finished or will never run. */
+        void release() {
+            running.release();
+            admitted.decrementAndGet();
+        }
+    }
+
+    private final ExecutorService executor;
+    private final Map<String, Endpoint> endpoints = new HashMap<>();
+    private final long timeoutMillis;
+    private final boolean virtualThreads;
+
+    /**
+     * Create a new RequestExecutor.
+     * @param timeoutMillis How long a request may wait for a slot and then run before it
+     *                      is given up on.
+     */
+    public RequestExecutor(long timeoutMillis) {
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual
+                : new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() only exists on JDK 21 and up, while this
+     * project compiles for Java 8, so it is looked up reflectively.
+     * @return The executor, or null if virtual threads are not available.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method m = java.util.concurrent.Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Set the limits for an endpoint. Endpoints without limits are not restricted.
+     * @param name The endpoint name, e.g. "/raster".
+     * @param maxConcurrent How many requests may run at the same time.
+     * @param maxQueued How many more requests may wait for one of those slots.
+     */
+    public void limit(String name, int maxConcurrent, int maxQueued) {
+        if (maxConcurrent < 1 || maxQueued < 0) {
+            throw new IllegalArgumentException("Invalid limits for " + name + ".");
+        }
+        endpoints.put(name, new Endpoint(maxConcurrent, maxQueued));
+    }
+
+    /** Returns whether tasks run on virtual threads rather than a ForkJoinPool. */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Run the work for a request to the given endpoint on the executor and wait for it.
+     * Runtime exceptions thrown by the work, such as Spark's halt(), are rethrown as is.
+     * @param name The endpoint name.
+     * @param work The request work.
+     * @return The result of the work.
+     * @throws OverloadedException If the endpoint is saturated or the request timed out.
+     */
+    public <T> T call(String name, Callable<T> work) throws Exception {
+        Endpoint endpoint = endpoints.get(name);
+        if (endpoint == null) {
+            return await(work, timeoutMillis, () -> { });
+        }
+
+        if (endpoint.admitted.incrementAndGet() > endpoint.maxAdmitted) {
+            endpoint.admitted.decrementAndGet();
+            throw new OverloadedException("Too many pending " + name + " requests.");
+        }
+        boolean handedOff = false;
+        try {
+            long start = System.nanoTime();
+            if (!endpoint.running.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new OverloadedException("Timed out waiting to run " + name + ".");
+            }
+            handedOff = true;
+            long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            return await(work, Math.max(1, timeoutMillis - waited), endpoint::release);
+        } finally {
+            if (!handedOff) {
+                endpoint.admitted.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Submit the work and wait for it for at most timeoutMillis.
+     * @param release Called exactly once, when the work finishes or if it never starts.
+     */
+    private <T> T await(Callable<T> work, long timeoutMillis, Runnable release)
+            throws Exception {
+        AtomicBoolean claimed = new AtomicBoolean();
+        Callable<T> task = () -> {
+            if (!claimed.compareAndSet(false, true)) {
+                return null;
+            }
+            try {
+                return work.call();
+            } finally {
+                release.run();
+            }
+        };
+
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            release.run();
+            throw new OverloadedException("Executor is shut down.");
+        }
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            if (claimed.compareAndSet(false, true)) {
+                release.run();
+            }
+            throw new OverloadedException("Request timed out.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    /** Stop accepting new work. */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
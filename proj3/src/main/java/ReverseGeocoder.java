@@ -0,0 +1,172 @@
+/**
+ * Answers "what is here?" for a point of a graph's map: the nearest named way and the
+ * nearest named location. Both are found through a GridIndex, the ways by the distance
+ * from the point to each of their edges rather than to their vertices, since a long
+ * straight street may have its nearest vertex far from the point even when the street
+ * runs right past it.
+ *
+ * The index works in a plane where x is the longitude scaled by the cosine of the map's
+ * middle latitude and y is the latitude, which keeps distances in proportion over a
+ * city-sized map. Reported distances are in miles, as everywhere else.
+ */
+public class ReverseGeocoder {
+    private final GraphDB g;
+    private final double lonScale;
+
+    private final GridIndex siteIndex;
+    /* The named edges, each listed once, by dense vertex numbers and edge position. */
+    private final int[] segmentFrom;
+    private final int[] segmentTo;
+    private final int[] segmentEdge;
+    private final GridIndex segmentIndex;
+
+    /**
+     * Index the named ways and locations of a graph.
+     * @param g The graph, which must not change afterwards.
+     */
+    public ReverseGeocoder(GraphDB g) {
+        this.g = g;
+        double minLat = Double.POSITIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
+        for (int v = 0; v < g.size(); v++) {
+            minLat = Math.min(minLat, g.latAt(v));
+            maxLat = Math.max(maxLat, g.latAt(v));
+        }
+        for (int i = 0; i < g.siteCount(); i++) {
+            minLat = Math.min(minLat, g.siteLatAt(i));
+            maxLat = Math.max(maxLat, g.siteLatAt(i));
+        }
+        this.lonScale = minLat > maxLat ? 1 : Math.cos(Math.toRadians((minLat + maxLat) / 2));
+
+        int sites = g.siteCount();
+        double[] bounds = emptyBounds();
+        for (int i = 0; i < sites; i++) {
+            extend(bounds, x(g.siteLonAt(i)), g.siteLatAt(i));
+        }
+        siteIndex = new GridIndex(bounds[0], bounds[1], bounds[2], bounds[3], sites);
+        for (int i = 0; i < sites; i++) {
+            double x = x(g.siteLonAt(i));
+            double y = g.siteLatAt(i);
+            siteIndex.add(i, x, y, x, y);
+        }
+        siteIndex.build();
+
+        int segments = 0;
+        bounds = emptyBounds();
+        for (int v = 0; v < g.size(); v++) {
+            for (int e = g.firstEdge(v); e < g.endEdge(v); e++) {
+                int w = g.edgeTarget(e);
+                if (isNamedSegment(v, w, e)) {
+                    segments++;
+                    extend(bounds, x(g.lonAt(v)), g.latAt(v));
+                    extend(bounds, x(g.lonAt(w)), g.latAt(w));
+                }
+            }
+        }
+        segmentFrom = new int[segments];
+        segmentTo = new int[segments];
+        segmentEdge = new int[segments];
+        segmentIndex = new GridIndex(bounds[0], bounds[1], bounds[2], bounds[3], segments);
+        int s = 0;
+        for (int v = 0; v < g.size(); v++) {
+            for (int e = g.firstEdge(v); e < g.endEdge(v); e++) {
+                int w = g.edgeTarget(e);
+                if (isNamedSegment(v, w, e)) {
+                    segmentFrom[s] = v;
+                    segmentTo[s] = w;
+                    segmentEdge[s] = e;
+                    segmentIndex.add(s, x(g.lonAt(v)), g.latAt(v), x(g.lonAt(w)), g.latAt(w));
+                    s++;
+                }
+            }
+        }
+        segmentIndex.build();
+    }
+
+    /* Every undirected edge appears under both endpoints; keep the copy from the smaller id. */
+    private boolean isNamedSegment(int v, int w, int e) {
+        return g.id(v) < g.id(w) && !g.edgeWay(e).isEmpty();
+    }
+
+    private static double[] emptyBounds() {
+        return new double[]{Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+            Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+    }
+
+    private static void extend(double[] bounds, double x, double y) {
+        bounds[0] = Math.min(bounds[0], x);
+        bounds[1] = Math.min(bounds[1], y);
+        bounds[2] = Math.max(bounds[2], x);
+        bounds[3] = Math.max(bounds[3], y);
+    }
+
+    private double x(double lon) {
+        return lon * lonScale;
+    }
+
+    /**
+     * Returns the named way nearest to the given point, with the point of the way closest to
+     * it, or null if the graph has no named ways.
+     */
+    public Result nearestWay(double lon, double lat) {
+        int s = segmentIndex.nearest(x(lon), lat, this::segmentDistance);
+        if (s < 0) {
+            return null;
+        }
+        double ax = x(g.lonAt(segmentFrom[s]));
+        double ay = g.latAt(segmentFrom[s]);
+        double bx = x(g.lonAt(segmentTo[s]));
+        double by = g.latAt(segmentTo[s]);
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = 0;
+        if (lengthSquared > 0) {
+            t = ((x(lon) - ax) * dx + (lat - ay) * dy) / lengthSquared;
+            t = Math.max(0, Math.min(1, t));
+        }
+        double closestLon = (ax + t * dx) / lonScale;
+        double closestLat = ay + t * dy;
+        return new Result(-1, g.edgeWay(segmentEdge[s]), closestLon, closestLat,
+                GraphDB.distance(lon, lat, closestLon, closestLat));
+    }
+
+    /** Returns the named location nearest to the given point, or null if there are none. */
+    public Result nearestLocation(double lon, double lat) {
+        int i = siteIndex.nearest(x(lon), lat, this::siteDistance);
+        if (i < 0) {
+            return null;
+        }
+        return new Result(g.siteId(i), g.siteNameAt(i), g.siteLonAt(i), g.siteLatAt(i),
+                GraphDB.distance(lon, lat, g.siteLonAt(i), g.siteLatAt(i)));
+    }
+
+    private double segmentDistance(int s, double x, double y) {
+        return SimplifiedRoute.segmentDistance(x, y, x(g.lonAt(segmentFrom[s])),
+                g.latAt(segmentFrom[s]), x(g.lonAt(segmentTo[s])), g.latAt(segmentTo[s]));
+    }
+
+    private double siteDistance(int i, double x, double y) {
+        double dx = x(g.siteLonAt(i)) - x;
+        double dy = g.siteLatAt(i) - y;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /** A named way or location found near a point. */
+    public static class Result {
+        /** The OSM id of a location; -1 for a way. */
+        public final long id;
+        public final String name;
+        /** The point of the way or location closest to the query point. */
+        public final double lon, lat;
+        /** How far that point is from the query point, in miles. */
+        public final double distance;
+
+        Result(long id, String name, double lon, double lat, double distance) {
+            this.id = id;
+            this.name = name;
+            this.lon = lon;
+            this.lat = lat;
+            this.distance = distance;
+        }
+    }
+}
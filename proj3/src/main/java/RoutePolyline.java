@@ -0,0 +1,98 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes routes with the
+ * <a href="https://developers.google.com/maps/documentation/utilities/polylinealgorithm">
+ * Google encoded polyline algorithm</a>, so that the front end can draw the route itself
+ * instead of having it rasterized into every image. Each coordinate is rounded to 1e-5
+ * degrees, stored as the delta from the previous point, and written as a sequence of
+ * 5-bit printable ASCII chunks.
+ */
+public class RoutePolyline {
+    /** Coordinates are stored as integers in units of 1e-5 degrees. */
+    private static final double PRECISION = 1e5;
+
+    /**
+     * Encode the given route on the graph as a polyline string.
+     * @param g The graph the route was found on.
+     * @param route The node ids of the route, in order.
+     * @return The encoded polyline, or the empty string if there is no route.
+     */
+    public static String encode(GraphDB g, List<Long> route) {
+        double[] lons = new double[route.size()];
+        double[] lats = new double[route.size()];
+        int i = 0;
+        for (long id : route) {
+            lons[i] = g.lon(id);
+            lats[i] = g.lat(id);
+            i++;
+        }
+        return encode(lons, lats);
+    }
+
+    /**
+     * Encode parallel arrays of longitudes and latitudes as a polyline string.
+     * Points are written as (lat, lon) pairs, as the format requires.
+     * @param lons The longitudes of the points.
+     * @param lats The latitudes of the points.
+     * @return The encoded polyline.
+     */
+    public static String encode(double[] lons, double[] lats) {
+        StringBuilder sb = new StringBuilder(lons.length * 8);
+        long prevLat = 0;
+        long prevLon = 0;
+        for (int i = 0; i < lons.length; i++) {
+            long lat = Math.round(lats[i] * PRECISION);
+            long lon = Math.round(lons[i] * PRECISION);
+            encodeValue(lat - prevLat, sb);
+            encodeValue(lon - prevLon, sb);
+            prevLat = lat;
+            prevLon = lon;
+        }
+        return sb.toString();
+    }
+
+    private static void encodeValue(long delta, StringBuilder sb) {
+        long v = delta < 0 ? ~(delta << 1) : delta << 1;
+        while (v >= 0x20) {
+            sb.append((char) ((0x20 | (v & 0x1f)) + 63));
+            v >>= 5;
+        }
+        sb.append((char) (v + 63));
+    }
+
+    /**
+     * Decode a polyline string back into its points.
+     * @param polyline The encoded polyline.
+     * @return A list of {lon, lat} pairs, in order.
+     */
+    public static List<double[]> decode(String polyline) {
+        List<double[]> points = new ArrayList<>();
+        int index = 0;
+        long lat = 0;
+        long lon = 0;
+        while (index < polyline.length()) {
+            long[] result = new long[1];
+            index = decodeValue(polyline, index, result);
+            lat += result[0];
+            index = decodeValue(polyline, index, result);
+            lon += result[0];
+            points.add(new double[]{lon / PRECISION, lat / PRECISION});
+        }
+        return points;
+    }
+
+    private static int decodeValue(String polyline, int index, long[] result) {
+        long v = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = polyline.charAt(index++) - 63;
+            v |= (long) (b & 0x1f) << shift;
+            shift += 5;
+        } while (b >= 0x20);
+        result[0] = (v & 1) != 0 ? ~(v >> 1) : v >> 1;
+        return index;
+    }
+}
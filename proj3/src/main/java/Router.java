@@ -4,6 +4,8 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.*;
 
+import primitives.LongDoubleMap;
+
 /**
  * This class provides a shortestPath method for finding routes between two points
  * on the map. Start by using Dijkstra's, and if your code isn't fast enough for your
@@ -13,6 +15,15 @@ import java.util.*;
  * down to the priority you use to order your vertices.
  */
 public class Router {
+    /** How much the edges of each route found are penalized when looking for the next one. */
+    private static final double ALTERNATIVE_PENALTY = 1.4;
+    /** The most an alternative may share with any other route, as a fraction of its length. */
+    static final double MAX_OVERLAP = 0.6;
+    /** How much longer than the shortest route an alternative may be. */
+    static final double MAX_STRETCH = 1.4;
+    /** How many searches an alternatives query may run per route asked for. */
+    private static final int SEARCHES_PER_ROUTE = 2;
+
     /**
      * Return a List of longs representing the shortest path from the node
      * closest to a start location and the node closest to the destination
@@ -26,82 +37,421 @@ public class Router {
      */
     public static List<Long> shortestPath(GraphDB g, double stlon, double stlat,
                                           double destlon, double destlat) {
-        long startNode = g.closest(stlon, stlat);
-        long endNode = g.closest(destlon, destlat);
-
-        Set<Long> visited = new HashSet<>();
-        Map<Long, Double> distanceTo = new HashMap<>();
-        Map<Long, Long> edgeTo = new HashMap<>();
-        System.out.println("start: " + startNode + " end: " + endNode);
-
-        PriorityQueue<Long> fringe = new PriorityQueue<Long>(new Comparator<Long>() {
-            @Override
-            public int compare(Long o1, Long o2) {
-                double o1Dis = g.distance(o1, endNode) + distanceTo.get(o1);
-                double o2Dis = g.distance(o2, endNode) + distanceTo.get(o2);
-
-                if (o1Dis > o2Dis) {
-                    return 1;
-                } else if (o1Dis < o2Dis) {
-                    return -1;
-                } else {
-                    return 0;
+        return shortestPath(g, EdgeOverlay.EMPTY, stlon, stlat, destlon, destlat);
+    }
+
+    /**
+     * Return the shortest path like shortestPath(g, stlon, stlat, destlon, destlat), on
+     * the graph as changed by an overlay.
+     * @param g The graph to use.
+     * @param overlay The road closures and reweighted edges to apply.
+     * @param stlon The longitude of the start location.
+     * @param stlat The latitude of the start location.
+     * @param destlon The longitude of the destination location.
+     * @param destlat The latitude of the destination location.
+     * @return A list of node id's in the order visited on the shortest path, or an empty
+     * list if the destination cannot be reached.
+     */
+    public static List<Long> shortestPath(GraphDB g, EdgeOverlay overlay, double stlon,
+                                          double stlat, double destlon, double destlat) {
+        long closestStart = System.nanoTime();
+        int startNode = g.closestIndex(stlon, stlat);
+        int endNode = g.closestIndex(destlon, destlat);
+        Metrics.CLOSEST.recordSince(closestStart);
+        if (startNode < 0 || endNode < 0) {
+            return new LinkedList<>();
+        }
+        return shortestPath(g, overlay, startNode, endNode);
+    }
+
+    /**
+     * Return the shortest path between two vertices of the graph as changed by an overlay.
+     * @param g The graph to use.
+     * @param overlay The road closures and reweighted edges to apply.
+     * @param startNode The dense vertex number of the start.
+     * @param endNode The dense vertex number of the destination.
+     * @return A list of node id's in the order visited on the shortest path, or an empty
+     * list if the destination cannot be reached.
+     */
+    static List<Long> shortestPath(GraphDB g, EdgeOverlay overlay, int startNode,
+                                   int endNode) {
+        return shortestPath(g, overlay, startNode, endNode, new SearchState(g.size()));
+    }
+
+    /**
+     * Like shortestPath(g, overlay, startNode, endNode), but searching in the given state,
+     * so that a thread making many searches need not allocate arrays for each one.
+     * @param state The search state, made for a graph of g's size and used by one thread
+     *              at a time. It is ready for the next search when this returns.
+     */
+    static List<Long> shortestPath(GraphDB g, EdgeOverlay overlay, int startNode,
+                                   int endNode, SearchState state) {
+        PriorityQueue<FringeEntry> fringe = new PriorityQueue<>();
+
+        state.reach(startNode, 0.0, -1);
+        fringe.add(new FringeEntry(startNode, g.distanceAt(startNode, endNode)));
+
+        long searchStart = System.nanoTime();
+        int settled = aStarSearch(fringe, state, g, overlay, endNode);
+        Metrics.ASTAR.recordSince(searchStart);
+        Metrics.VERTICES_SETTLED.add(settled);
+
+        List<Long> route = new LinkedList<>();
+        if (state.distanceTo[endNode] != Double.POSITIVE_INFINITY) {
+            route = buildRoute(g, state.edgeTo, endNode);
+        }
+        state.reset();
+        return route;
+    }
+
+    /**
+     * Return up to k meaningfully different routes between two vertices, shortest first,
+     * using the penalty method: after every search, the edges of the route it found are made
+     * ALTERNATIVE_PENALTY times longer, and the search runs again. A route found that way is
+     * kept if it is at most MAX_STRETCH times as long as the shortest route and shares at
+     * most MAX_OVERLAP of its length with every route kept before it. Since penalties only
+     * ever make edges longer, every search is an ordinary A* search, and there are at most
+     * SEARCHES_PER_ROUTE * k of them.
+     * @param g The graph to use.
+     * @param overlay The road closures and reweighted edges to apply.
+     * @param startNode The dense vertex number of the start.
+     * @param endNode The dense vertex number of the destination.
+     * @param k How many routes to return at most.
+     * @return The routes as lists of node ids, the shortest first; empty if the destination
+     * cannot be reached.
+     */
+    static List<List<Long>> alternatives(GraphDB g, EdgeOverlay overlay, int startNode,
+                                         int endNode, int k) {
+        List<List<Long>> routes = new ArrayList<>();
+        List<Long> best = shortestPath(g, overlay, startNode, endNode);
+        if (best.isEmpty()) {
+            return routes;
+        }
+        routes.add(best);
+        double bestLength = routeLength(g, overlay, best);
+
+        EdgeOverlay penalized = overlay;
+        List<Long> last = best;
+        for (int search = 1; routes.size() < k && search < SEARCHES_PER_ROUTE * k; search++) {
+            penalized = penalized.scaled(routeEdges(last), ALTERNATIVE_PENALTY);
+            last = shortestPath(g, penalized, startNode, endNode);
+            if (last.isEmpty()) {
+                break;
+            }
+            if (routeLength(g, overlay, last) > MAX_STRETCH * bestLength) {
+                continue;
+            }
+            boolean distinct = true;
+            for (List<Long> route : routes) {
+                if (overlap(g, last, route) > MAX_OVERLAP) {
+                    distinct = false;
+                    break;
                 }
             }
-        });
+            if (distinct) {
+                routes.add(last);
+            }
+        }
+        return routes;
+    }
 
-        setAllDistancesToInfinity(g.vertices(), distanceTo, edgeTo);
-        distanceTo.replace(startNode, 0.0);
-        edgeTo.put(startNode, (long) 0);
-        fringe.add(startNode);
+    /** Returns the length of a route under an overlay, in miles. */
+    static double routeLength(GraphDB g, EdgeOverlay overlay, List<Long> route) {
+        double length = 0;
+        Long prev = null;
+        for (Long v : route) {
+            if (prev != null) {
+                length += g.distance(prev, v) * overlay.factor(prev, v);
+            }
+            prev = v;
+        }
+        return length;
+    }
 
-        aStarSearch(fringe, visited, distanceTo, edgeTo, g, endNode);
+    /** Returns the edges of a route as pairs of OSM ids. */
+    private static List<long[]> routeEdges(List<Long> route) {
+        List<long[]> edges = new ArrayList<>();
+        Long prev = null;
+        for (Long v : route) {
+            if (prev != null) {
+                edges.add(new long[]{prev, v});
+            }
+            prev = v;
+        }
+        return edges;
+    }
 
-//        LinkedList<Long> route = new LinkedList<>();
-//        route = buildRoute(edgeTo, endNode);
+    /**
+     * Returns the fraction of the length of route that it shares with other, ignoring
+     * closures, between 0 and 1.
+     */
+    static double overlap(GraphDB g, List<Long> route, List<Long> other) {
+        Set<String> otherEdges = new HashSet<>();
+        for (long[] edge : routeEdges(other)) {
+            otherEdges.add(edgeKey(edge[0], edge[1]));
+        }
+        double shared = 0;
+        double total = 0;
+        for (long[] edge : routeEdges(route)) {
+            double length = g.distance(edge[0], edge[1]);
+            total += length;
+            if (otherEdges.contains(edgeKey(edge[0], edge[1]))) {
+                shared += length;
+            }
+        }
+        return total == 0 ? 1 : shared / total;
+    }
 
-        return buildRoute(edgeTo, endNode); // FIXME
+    private static String edgeKey(long v, long w) {
+        return Math.min(v, w) + "-" + Math.max(v, w);
     }
 
-    private static void setAllDistancesToInfinity(Iterable<Long> vertices, Map<Long, Double> distanceTo,
-                                                  Map<Long, Long> edgeTo) {
-        for (long v : vertices) {
-            distanceTo.put(v, Double.POSITIVE_INFINITY);
-            edgeTo.put(v, (long) -117);
+    /**
+     * A vertex on a search fringe, with the priority it was added with. The priority is
+     * fixed when the entry is made: a vertex whose distance improves later is added again,
+     * and the stale entry is skipped when it comes off the fringe. Comparing by the current
+     * distanceTo instead would change the order of entries already in the heap and break it.
+     */
+    private static class FringeEntry implements Comparable<FringeEntry> {
+        final int vertex;
+        final double priority;
+
+        FringeEntry(int vertex, double priority) {
+            this.vertex = vertex;
+            this.priority = priority;
         }
 
+        @Override
+        public int compareTo(FringeEntry o) {
+            return Double.compare(priority, o.priority);
+        }
     }
 
-    private static void aStarSearch(PriorityQueue<Long> fringe, Set<Long> visited, Map<Long, Double> distanceTo,
-                                    Map<Long, Long> edgeTo, GraphDB g, long endNode) {
+    private static void setAllDistancesToInfinity(double[] distanceTo, int[] edgeTo) {
+        Arrays.fill(distanceTo, Double.POSITIVE_INFINITY);
+        Arrays.fill(edgeTo, -1);
+    }
+
+    /**
+     * Runs A* until the end node is dequeued or the fringe runs dry.
+     * @return The number of vertices settled.
+     */
+    private static int aStarSearch(PriorityQueue<FringeEntry> fringe, SearchState state,
+                                   GraphDB g, EdgeOverlay overlay, int endNode) {
+        boolean[] visited = state.visited;
+        double[] distanceTo = state.distanceTo;
+        int settled = 0;
         while (!fringe.isEmpty()) {
-            long currentNode = fringe.poll();
+            int currentNode = fringe.poll().vertex;
             if (currentNode == endNode) {
                 break;
             }
 
-            if (visited.contains(currentNode)) {
+            if (visited[currentNode]) {
                 continue;
             }
 
-            visited.add(currentNode);
-            for (long neighbor : g.adjacent(currentNode)) {
-                double distance = distanceTo.get(currentNode) + g.distance(currentNode, neighbor);
-                if (distance < distanceTo.get(neighbor)) {
-                    distanceTo.put(neighbor, distance);
-                    edgeTo.put(neighbor, currentNode);
-                    fringe.add(neighbor);
+            visited[currentNode] = true;
+            settled++;
+            for (int e = g.firstEdge(currentNode); e < g.endEdge(currentNode); e++) {
+                int neighbor = g.edgeTarget(e);
+                double distance = distanceTo[currentNode]
+                        + overlay.weight(g, currentNode, neighbor);
+                if (distance < distanceTo[neighbor]) {
+                    state.reach(neighbor, distance, currentNode);
+                    fringe.add(new FringeEntry(neighbor,
+                            distance + g.distanceAt(neighbor, endNode)));
+                }
+            }
+        }
+        return settled;
+    }
+
+    /**
+     * The per-vertex arrays of an A* search. A search records every vertex it reaches, and
+     * reset() puts back just those entries afterwards, so a short search on a large graph
+     * costs no more than its own work, however often the state is reused.
+     */
+    static class SearchState {
+        final boolean[] visited;
+        final double[] distanceTo;
+        final int[] edgeTo;
+        private int[] reached = new int[64];
+        private int reachedCount;
+
+        /** Make the state for searches on graphs of n vertices. */
+        SearchState(int n) {
+            visited = new boolean[n];
+            distanceTo = new double[n];
+            edgeTo = new int[n];
+            setAllDistancesToInfinity(distanceTo, edgeTo);
+        }
+
+        /** Record a new shortest distance to v, found through the vertex from. */
+        void reach(int v, double distance, int from) {
+            if (distanceTo[v] == Double.POSITIVE_INFINITY) {
+                if (reachedCount == reached.length) {
+                    reached = Arrays.copyOf(reached, 2 * reachedCount);
+                }
+                reached[reachedCount++] = v;
+            }
+            distanceTo[v] = distance;
+            edgeTo[v] = from;
+        }
+
+        /** Forget the last search. */
+        void reset() {
+            for (int i = 0; i < reachedCount; i++) {
+                int v = reached[i];
+                visited[v] = false;
+                distanceTo[v] = Double.POSITIVE_INFINITY;
+                edgeTo[v] = -1;
+            }
+            reachedCount = 0;
+        }
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from a vertex over its whole component, for callers that
+     * need distances to many targets at once.
+     * @param g The graph to use.
+     * @param overlay The road closures and reweighted edges to apply.
+     * @param source The dense vertex number to search from.
+     * @param edgeTo Filled in with the vertex before each vertex on its shortest path from
+     *               source, or -1 for source itself and for unreachable vertices.
+     * @return The distance from source to every vertex, infinite for unreachable ones.
+     */
+    static double[] shortestPathTree(GraphDB g, EdgeOverlay overlay, int source,
+                                     int[] edgeTo) {
+        int n = g.size();
+        boolean[] visited = new boolean[n];
+        double[] distanceTo = new double[n];
+        PriorityQueue<FringeEntry> fringe = new PriorityQueue<>();
+
+        setAllDistancesToInfinity(distanceTo, edgeTo);
+        distanceTo[source] = 0.0;
+        fringe.add(new FringeEntry(source, 0.0));
+        while (!fringe.isEmpty()) {
+            int currentNode = fringe.poll().vertex;
+            if (visited[currentNode]) {
+                continue;
+            }
+            visited[currentNode] = true;
+            for (int e = g.firstEdge(currentNode); e < g.endEdge(currentNode); e++) {
+                int neighbor = g.edgeTarget(e);
+                double distance = distanceTo[currentNode]
+                        + overlay.weight(g, currentNode, neighbor);
+                if (distance < distanceTo[neighbor]) {
+                    distanceTo[neighbor] = distance;
+                    edgeTo[neighbor] = currentNode;
+                    fringe.add(new FringeEntry(neighbor, distance));
+                }
+            }
+        }
+        return distanceTo;
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from a vertex until every target is settled, for callers
+     * that need the distances to a few targets at once.
+     * @param g The graph to use.
+     * @param overlay The road closures and reweighted edges to apply.
+     * @param source The dense vertex number to search from.
+     * @param targets The dense vertex numbers to find the distances to.
+     * @return The distance from source to each target, infinite for unreachable ones.
+     */
+    static double[] distancesTo(GraphDB g, EdgeOverlay overlay, int source, int[] targets) {
+        int n = g.size();
+        boolean[] visited = new boolean[n];
+        double[] distanceTo = new double[n];
+        Arrays.fill(distanceTo, Double.POSITIVE_INFINITY);
+        boolean[] isTarget = new boolean[n];
+        int remaining = 0;
+        for (int target : targets) {
+            if (!isTarget[target]) {
+                isTarget[target] = true;
+                remaining++;
+            }
+        }
+        PriorityQueue<FringeEntry> fringe = new PriorityQueue<>();
+
+        distanceTo[source] = 0.0;
+        fringe.add(new FringeEntry(source, 0.0));
+        while (!fringe.isEmpty() && remaining > 0) {
+            int currentNode = fringe.poll().vertex;
+            if (visited[currentNode]) {
+                continue;
+            }
+            visited[currentNode] = true;
+            if (isTarget[currentNode]) {
+                remaining--;
+            }
+            for (int e = g.firstEdge(currentNode); e < g.endEdge(currentNode); e++) {
+                int neighbor = g.edgeTarget(e);
+                double distance = distanceTo[currentNode]
+                        + overlay.weight(g, currentNode, neighbor);
+                if (distance < distanceTo[neighbor]) {
+                    distanceTo[neighbor] = distance;
+                    fringe.add(new FringeEntry(neighbor, distance));
                 }
             }
         }
 
+        double[] distances = new double[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            distances[i] = visited[targets[i]] ? distanceTo[targets[i]]
+                    : Double.POSITIVE_INFINITY;
+        }
+        return distances;
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from a vertex, but only as far as the given distance, for
+     * callers that make many short searches. Its state is kept in hash maps rather than in
+     * arrays as large as the graph, so a search costs only as much as the part of the graph
+     * it reaches.
+     * @param g The graph to use.
+     * @param overlay The road closures and reweighted edges to apply.
+     * @param source The dense vertex number to search from.
+     * @param limit The largest distance to search to.
+     * @return The distance from source to every vertex at most limit away, and infinity
+     * for every other vertex.
+     */
+    static LongDoubleMap distancesWithin(GraphDB g, EdgeOverlay overlay, int source,
+                                         double limit) {
+        LongDoubleMap settled = new LongDoubleMap(Double.POSITIVE_INFINITY, 0);
+        LongDoubleMap distanceTo = new LongDoubleMap(Double.POSITIVE_INFINITY, 0);
+        PriorityQueue<FringeEntry> fringe = new PriorityQueue<>();
+
+        distanceTo.put(source, 0.0);
+        fringe.add(new FringeEntry(source, 0.0));
+        while (!fringe.isEmpty()) {
+            FringeEntry current = fringe.poll();
+            if (current.priority > limit) {
+                break;
+            }
+            if (settled.containsKey(current.vertex)) {
+                continue;
+            }
+            settled.put(current.vertex, current.priority);
+            for (int e = g.firstEdge(current.vertex); e < g.endEdge(current.vertex); e++) {
+                int neighbor = g.edgeTarget(e);
+                double distance = current.priority
+                        + overlay.weight(g, current.vertex, neighbor);
+                if (distance <= limit && distance < distanceTo.get(neighbor)) {
+                    distanceTo.put(neighbor, distance);
+                    fringe.add(new FringeEntry(neighbor, distance));
+                }
+            }
+        }
+        return settled;
     }
 
-    private static LinkedList<Long> buildRoute(Map<Long, Long> edgeTo, long endNode) {
+    static LinkedList<Long> buildRoute(GraphDB g, int[] edgeTo, int endNode) {
         LinkedList<Long> route = new LinkedList<>();
 
-        for (long n = endNode; n != 0; n = edgeTo.get(n)) {
-            route.add(0, n);
+        for (int n = endNode; n != -1; n = edgeTo[n]) {
+            route.add(0, g.id(n));
         }
 
         return route;
@@ -163,6 +513,45 @@ public class Router {
         return nav; // FIXME
     }
 
+    /**
+     * Joins the directions for two consecutive legs of a route, where the second leg starts
+     * at the node the first one ends at. If the route stays on the same way across the
+     * join, the two steps along it are merged, otherwise the second leg's start becomes a
+     * turn.
+     * @param first The directions of the first leg. Not modified.
+     * @param second The directions of the second leg. Not modified.
+     * @param turnBearing The change of bearing at the join, in degrees.
+     * @return The directions of the whole route.
+     */
+    static List<NavigationDirection> joinDirections(List<NavigationDirection> first,
+                                                    List<NavigationDirection> second,
+                                                    double turnBearing) {
+        List<NavigationDirection> nav = new ArrayList<>(first);
+        if (second.isEmpty()) {
+            return nav;
+        }
+        if (nav.isEmpty()) {
+            nav.addAll(second);
+            return nav;
+        }
+        NavigationDirection last = nav.get(nav.size() - 1);
+        NavigationDirection next = second.get(0);
+        NavigationDirection joined = new NavigationDirection();
+        if (last.way.equals(next.way)) {
+            joined.way = last.way;
+            joined.direction = last.direction;
+            joined.distance = last.distance + next.distance;
+            nav.set(nav.size() - 1, joined);
+        } else {
+            joined.way = next.way;
+            joined.direction = direction(turnBearing);
+            joined.distance = next.distance;
+            nav.add(joined);
+        }
+        nav.addAll(second.subList(1, second.size()));
+        return nav;
+    }
+
     private static String wayName(GraphDB g, long v1, long v2) {
         Set<String> v1Names = g.nodeNames(v1);
         Set<String> v2Names = g.nodeNames(v2);
@@ -0,0 +1,20 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * What one client's search bar remembers between /search requests: a cursor into the
+ * location names of each region, left at the last prefix searched. Autocomplete searches
+ * "b", "be", "ber" and so on as the user types, and each of those then moves the cursors
+ * one character on instead of down from the root. MapServer keeps one per HTTP session.
+ */
+public class SearchSession {
+    private final Map<MapRegion, TrieST<Long>.Cursor> cursors = new HashMap<>();
+
+    /**
+     * Returns the cursor into the given region's location names, at the last prefix
+     * searched. Callers must hold the lock on this session while using it.
+     */
+    TrieST<Long>.Cursor cursor(MapRegion region) {
+        return cursors.computeIfAbsent(region, r -> r.graph().locationCursor());
+    }
+}
@@ -0,0 +1,186 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A route together with a simplified version of it for every zoom depth of the map.
+ * At shallow depths hundreds of route nodes fall into the same pixel, so each depth keeps
+ * only the nodes the
+ * <a href="https://en.wikipedia.org/wiki/Ramer%E2%80%93Douglas%E2%80%93Peucker_algorithm">
+ * Douglas-Peucker</a> algorithm needs to stay within TOLERANCE_PX pixels of the full route.
+ * The simplifications are computed once, when the route is found, and then shared by the
+ * raster drawing code and the polyline API.
+ */
+public class SimplifiedRoute {
+    /** How far, in pixels at a given depth, a simplified route may stray from the full one. */
+    private static final double TOLERANCE_PX = 0.5;
+
+    private final List<Long> route;
+    private final List<List<Long>> routeByDepth;
+    private final double[][] lonsByDepth;
+    private final double[][] latsByDepth;
+    private final String[] polylineByDepth;
+    private final String polyline;
+
+    /**
+     * Simplify the route for every depth from 0 to Rasterer.MAX_DEPTH.
+     * @param g The graph the route was found on.
+     * @param route The node ids of the route, in order.
+     * @param rasterer The Rasterer of the tiles the route is drawn on, which sets the size
+     *                 of a pixel at every depth.
+     */
+    public SimplifiedRoute(GraphDB g, List<Long> route, Rasterer rasterer) {
+        this(route, coordinates(g, route, true), coordinates(g, route, false), rasterer);
+    }
+
+    /**
+     * Simplify a route given with the coordinates of its nodes, e.g. one that crosses
+     * several regions and so was not found on a single graph.
+     * @param route The node ids of the route, in order.
+     * @param lons The longitude of every node of the route.
+     * @param lats The latitude of every node of the route.
+     * @param rasterer The Rasterer of the tiles the route is drawn on.
+     */
+    public SimplifiedRoute(List<Long> route, double[] lons, double[] lats, Rasterer rasterer) {
+        this.route = Collections.unmodifiableList(new ArrayList<>(route));
+        this.routeByDepth = new ArrayList<>();
+        this.lonsByDepth = new double[Rasterer.MAX_DEPTH + 1][];
+        this.latsByDepth = new double[Rasterer.MAX_DEPTH + 1][];
+        this.polylineByDepth = new String[Rasterer.MAX_DEPTH + 1];
+        this.polyline = RoutePolyline.encode(lons, lats);
+
+        int n = route.size();
+        for (int depth = 0; depth <= Rasterer.MAX_DEPTH; depth++) {
+            boolean[] keep = simplify(lons, lats, rasterer.lonDPP(depth), rasterer.latDPP(depth));
+            List<Long> simplified = new ArrayList<>();
+            List<Integer> kept = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                if (keep[i]) {
+                    simplified.add(route.get(i));
+                    kept.add(i);
+                }
+            }
+            double[] keptLons = new double[kept.size()];
+            double[] keptLats = new double[kept.size()];
+            for (int i = 0; i < kept.size(); i++) {
+                keptLons[i] = lons[kept.get(i)];
+                keptLats[i] = lats[kept.get(i)];
+            }
+            routeByDepth.add(Collections.unmodifiableList(simplified));
+            lonsByDepth[depth] = keptLons;
+            latsByDepth[depth] = keptLats;
+            polylineByDepth[depth] = RoutePolyline.encode(keptLons, keptLats);
+        }
+    }
+
+    private static double[] coordinates(GraphDB g, List<Long> route, boolean lon) {
+        double[] result = new double[route.size()];
+        int i = 0;
+        for (long id : route) {
+            result[i++] = lon ? g.lon(id) : g.lat(id);
+        }
+        return result;
+    }
+
+    /** Returns the full, unsimplified route. */
+    public List<Long> route() {
+        return route;
+    }
+
+    /** Returns the full route as an encoded polyline. */
+    public String polyline() {
+        return polyline;
+    }
+
+    /** Returns the route simplified for the given depth. */
+    public List<Long> route(int depth) {
+        return routeByDepth.get(clampDepth(depth));
+    }
+
+    /** Returns the longitudes of the nodes of route(depth). Do not modify the array. */
+    double[] lons(int depth) {
+        return lonsByDepth[clampDepth(depth)];
+    }
+
+    /** Returns the latitudes of the nodes of route(depth). Do not modify the array. */
+    double[] lats(int depth) {
+        return latsByDepth[clampDepth(depth)];
+    }
+
+    /** Returns the route simplified for the given depth as an encoded polyline. */
+    public String polyline(int depth) {
+        return polylineByDepth[clampDepth(depth)];
+    }
+
+    public boolean isEmpty() {
+        return route.isEmpty();
+    }
+
+    private static int clampDepth(int depth) {
+        return Math.max(0, Math.min(Rasterer.MAX_DEPTH, depth));
+    }
+
+    /**
+     * Marks the points Douglas-Peucker keeps. Distances are measured in pixels, so that
+     * the tolerance is the same on screen in both directions. Uses an explicit stack
+     * rather than recursion, since routes can be thousands of nodes long.
+     */
+    static boolean[] simplify(double[] lons, double[] lats, double lonDPP, double latDPP) {
+        int n = lons.length;
+        boolean[] keep = new boolean[n];
+        if (n == 0) {
+            return keep;
+        }
+        keep[0] = true;
+        keep[n - 1] = true;
+
+        Deque<int[]> stack = new ArrayDeque<>();
+        stack.push(new int[]{0, n - 1});
+        while (!stack.isEmpty()) {
+            int[] span = stack.pop();
+            int first = span[0];
+            int last = span[1];
+            if (last - first < 2) {
+                continue;
+            }
+            double ax = lons[first] / lonDPP;
+            double ay = lats[first] / latDPP;
+            double bx = lons[last] / lonDPP;
+            double by = lats[last] / latDPP;
+
+            double maxDist = -1;
+            int farthest = -1;
+            for (int i = first + 1; i < last; i++) {
+                double d = segmentDistance(lons[i] / lonDPP, lats[i] / latDPP, ax, ay, bx, by);
+                if (d > maxDist) {
+                    maxDist = d;
+                    farthest = i;
+                }
+            }
+            if (maxDist > TOLERANCE_PX) {
+                keep[farthest] = true;
+                stack.push(new int[]{first, farthest});
+                stack.push(new int[]{farthest, last});
+            }
+        }
+        return keep;
+    }
+
+    /** Returns the distance from point p to the segment from a to b. */
+    static double segmentDistance(double px, double py, double ax, double ay,
+                                  double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = 0;
+        if (lengthSquared > 0) {
+            t = ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+            t = Math.max(0, Math.min(1, t));
+        }
+        double cx = ax + t * dx - px;
+        double cy = ay + t * dy - py;
+        return Math.sqrt(cx * cx + cy * cy);
+    }
+}
@@ -0,0 +1,168 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A whole tile pyramid packed into one file by TileArchiveBuilder, and read through a
+ * memory-mapped buffer, so that serving a tile is an array lookup and a read from the page
+ * cache instead of a classloader lookup and a file open.
+ *
+ * The file starts with a header of four ints: MAGIC, VERSION, the deepest depth and the
+ * number of tiles. Then comes a table of tile count + 1 longs, where entry i is the file
+ * offset of the PNG bytes of tile i and entry i + 1 the offset just past them, so a tile
+ * missing from the pyramid has no bytes. The PNG bytes of all the tiles follow, in order.
+ * Tiles are numbered depth by depth, and row by row within a depth, see index().
+ */
+public class TileArchive {
+    static final int MAGIC = 0x424d5441;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 4 * Integer.BYTES;
+    /** The deepest depth whose offset table fits in an archive under 2GB. */
+    static final int MAX_DEPTH = 13;
+
+    private final MappedByteBuffer buffer;
+    private final int maxDepth;
+    private final int tileCount;
+
+    private TileArchive(MappedByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a tile archive.");
+        }
+        if (buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException("Unsupported tile archive version "
+                    + buffer.getInt(Integer.BYTES) + ".");
+        }
+        this.buffer = buffer;
+        this.maxDepth = buffer.getInt(2 * Integer.BYTES);
+        this.tileCount = buffer.getInt(3 * Integer.BYTES);
+        if (maxDepth < 0 || maxDepth > MAX_DEPTH || tileCount != tileCount(maxDepth)
+                || buffer.capacity() < HEADER_BYTES + (tileCount + 1L) * Long.BYTES
+                || buffer.getLong(offsetPosition(tileCount)) != buffer.capacity()) {
+            throw new IOException("Truncated or corrupt tile archive.");
+        }
+    }
+
+    /**
+     * Map an archive file into memory. The mapping stays valid for the life of the process,
+     * whether or not the file is later deleted.
+     * @param path The archive file.
+     */
+    public static TileArchive open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Tile archives larger than 2GB are not supported.");
+            }
+            return new TileArchive(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size()));
+        }
+    }
+
+    /** Returns the number of tiles in a pyramid of depths 0 to maxDepth. */
+    static int tileCount(int maxDepth) {
+        return (int) (((1L << (2 * (maxDepth + 1))) - 1) / 3);
+    }
+
+    /** Returns the number of tile (x, y) at the given depth. */
+    static int index(int depth, int x, int y) {
+        return tileCount(depth - 1) + (y << depth) + x;
+    }
+
+    /** Returns the file name of tile (x, y) at the given depth, as Rasterer names tiles. */
+    static String tileName(int depth, int x, int y) {
+        return "d" + depth + "_x" + x + "_y" + y + ".png";
+    }
+
+    private static int offsetPosition(int tile) {
+        return HEADER_BYTES + tile * Long.BYTES;
+    }
+
+    public int maxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Returns the PNG bytes of a tile as a read-only buffer over the mapped file, or null if
+     * the archive does not have that tile.
+     */
+    public ByteBuffer tile(int depth, int x, int y) {
+        if (depth < 0 || depth > maxDepth || x < 0 || y < 0 || x >= 1 << depth
+                || y >= 1 << depth) {
+            return null;
+        }
+        int tile = index(depth, x, y);
+        int start = (int) buffer.getLong(offsetPosition(tile));
+        int end = (int) buffer.getLong(offsetPosition(tile + 1));
+        if (start == end) {
+            return null;
+        }
+        ByteBuffer bytes = buffer.asReadOnlyBuffer();
+        bytes.position(start);
+        bytes.limit(end);
+        return bytes.slice();
+    }
+
+    /**
+     * Returns a stream over the PNG bytes of the tile with the given file name, e.g.
+     * "d2_x1_y3.png", or null if the name is not a tile name or the archive does not have
+     * that tile. Stands in for ClassLoader.getResourceAsStream on the tile folder.
+     */
+    public InputStream open(String tileName) {
+        int x = tileName.indexOf("_x");
+        int y = tileName.indexOf("_y");
+        if (!tileName.startsWith("d") || x < 0 || y < x || !tileName.endsWith(".png")) {
+            return null;
+        }
+        ByteBuffer bytes;
+        try {
+            bytes = tile(Integer.parseInt(tileName.substring(1, x)),
+                    Integer.parseInt(tileName.substring(x + 2, y)),
+                    Integer.parseInt(tileName.substring(y + 2, tileName.length() - 4)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return bytes == null ? null : new BufferInputStream(bytes);
+    }
+
+    /** An InputStream reading a buffer from its position to its limit, without copying. */
+    private static class BufferInputStream extends InputStream {
+        private final ByteBuffer bytes;
+
+        BufferInputStream(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read() {
+            return bytes.hasRemaining() ? bytes.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!bytes.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, bytes.remaining());
+            bytes.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return bytes.remaining();
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, bytes.remaining()));
+            bytes.position(bytes.position() + skipped);
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Packs a folder of tiles named the way Rasterer names them, d0_x0_y0.png to
+ * d7_x127_y127.png, into a single TileArchive file. Run it once after the tiles are
+ * rendered, e.g.
+ * <pre>
+ *     java TileArchiveBuilder src/main/resources/proj3_imgs proj3_imgs.tiles 7
+ * </pre>
+ * and start MapServer with -Dbearmaps.tiles=proj3_imgs.tiles to serve tiles from the archive.
+ */
+public class TileArchiveBuilder {
+    /** The deepest depth of the proj3_imgs pyramid. */
+    static final int DEFAULT_MAX_DEPTH = 7;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: TileArchiveBuilder <tile folder> <archive file>"
+                    + " [max depth, default " + DEFAULT_MAX_DEPTH + "]");
+            System.exit(1);
+        }
+        int maxDepth = args.length == 3 ? Integer.parseInt(args[2]) : DEFAULT_MAX_DEPTH;
+        int packed = build(Paths.get(args[0]), Paths.get(args[1]), maxDepth);
+        System.out.println("Packed " + packed + " of " + TileArchive.tileCount(maxDepth)
+                + " tiles into " + args[1] + ".");
+    }
+
+    /**
+     * Write the archive of a tile folder. Tiles missing from the folder are left out of the
+     * archive, and TileArchive reports them as missing.
+     * @param folder The folder of tile images.
+     * @param archive The archive file to write, replacing any existing file.
+     * @param maxDepth The deepest depth to pack.
+     * @return The number of tiles packed.
+     */
+    static int build(Path folder, Path archive, int maxDepth) throws IOException {
+        if (maxDepth < 0 || maxDepth > TileArchive.MAX_DEPTH) {
+            throw new IllegalArgumentException("Max depth must be between 0 and "
+                    + TileArchive.MAX_DEPTH + ".");
+        }
+        int tileCount = TileArchive.tileCount(maxDepth);
+        long[] offsets = new long[tileCount + 1];
+        long dataStart = TileArchive.HEADER_BYTES + (tileCount + 1L) * Long.BYTES;
+        int packed = 0;
+        try (FileChannel out = FileChannel.open(archive, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            /* Write the tiles first, then go back for the header and the offset table. */
+            out.position(dataStart);
+            offsets[0] = dataStart;
+            for (int depth = 0; depth <= maxDepth; depth++) {
+                for (int y = 0; y < 1 << depth; y++) {
+                    for (int x = 0; x < 1 << depth; x++) {
+                        int tile = TileArchive.index(depth, x, y);
+                        Path file = folder.resolve(TileArchive.tileName(depth, x, y));
+                        long end = offsets[tile];
+                        if (Files.isRegularFile(file)) {
+                            ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+                            while (bytes.hasRemaining()) {
+                                out.write(bytes);
+                            }
+                            end += bytes.capacity();
+                            packed++;
+                        }
+                        offsets[tile + 1] = end;
+                    }
+                }
+            }
+            if (offsets[tileCount] > Integer.MAX_VALUE) {
+                throw new IOException("Tile archives larger than 2GB are not supported.");
+            }
+
+            ByteBuffer header = ByteBuffer.allocate((int) dataStart);
+            header.putInt(TileArchive.MAGIC);
+            header.putInt(TileArchive.VERSION);
+            header.putInt(maxDepth);
+            header.putInt(tileCount);
+            for (long offset : offsets) {
+                header.putLong(offset);
+            }
+            header.flip();
+            out.position(0);
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+        }
+        return packed;
+    }
+}
@@ -0,0 +1,267 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Plans the order to visit a handful of stops in, for a driver with a list of deliveries.
+ * The first stop is where the tour starts; the driver either ends at whichever stop is
+ * visited last, or returns to the first.
+ *
+ * The road distances between every pair of stops come from one Dijkstra search per stop,
+ * run in parallel, each stopping once it has reached every stop. The order starts as the
+ * nearest neighbour tour and is then improved by local search: 2-opt reverses a stretch of
+ * the tour, and Or-opt moves a stretch of up to three stops elsewhere, either way round.
+ * Both are repeated until neither improves the tour or the time budget runs out. Finally
+ * the route between consecutive stops is found by A*, again in parallel, and the legs are
+ * stitched into one route.
+ *
+ * The parallel searches of every tour share one pool with a worker for every other core,
+ * rather than forking into whatever pool the request runs in, so that tours can never
+ * take up all of the cores the other endpoints need.
+ */
+public class TourPlanner {
+    /** The most stops a tour may have. */
+    public static final int MAX_STOPS = 32;
+    /** How long the local search may run for, by default. */
+    static final long DEFAULT_BUDGET_NANOS = 200_000_000L;
+    /** The longest stretch of stops Or-opt moves at once. */
+    private static final int OR_OPT_LENGTH = 3;
+    /** Improvements smaller than this, in miles, are taken to be rounding errors. */
+    private static final double EPSILON = 1e-9;
+    /** Runs the parallel searches of all tours. */
+    private static final ForkJoinPool SEARCH_POOL =
+            new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+
+    /**
+     * Plans a tour of the stops closest to the given points.
+     * @param g The graph to route on.
+     * @param overlay The road closures and reweighted edges to apply.
+     * @param lons The longitudes of the stops, the first being where the tour starts.
+     * @param lats The latitudes of the stops.
+     * @param roundTrip Whether the tour ends back at the first stop.
+     * @param budgetNanos How long the local search may run for.
+     * @return The tour, or an empty tour if some stop cannot be reached.
+     */
+    public static Tour plan(GraphDB g, EdgeOverlay overlay, double[] lons, double[] lats,
+                            boolean roundTrip, long budgetNanos) {
+        if (lons.length != lats.length || lons.length == 0 || lons.length > MAX_STOPS) {
+            throw new IllegalArgumentException("A tour needs 1 to " + MAX_STOPS + " stops.");
+        }
+        long closestStart = System.nanoTime();
+        int[] stops = inSearchPool(() -> IntStream.range(0, lons.length).parallel()
+                .map(i -> g.closestIndex(lons[i], lats[i])).toArray());
+        Metrics.CLOSEST.recordSince(closestStart);
+        if (stops[0] < 0) {
+            return Tour.EMPTY;
+        }
+
+        long matrixStart = System.nanoTime();
+        double[][] distances = distanceMatrix(g, overlay, stops);
+        Metrics.TOUR_MATRIX.recordSince(matrixStart);
+        /* Roads go both ways, so a stop the first one reaches reaches every other. */
+        for (double d : distances[0]) {
+            if (d == Double.POSITIVE_INFINITY) {
+                return Tour.EMPTY;
+            }
+        }
+
+        long solveStart = System.nanoTime();
+        int[] order = solve(distances, roundTrip, solveStart + budgetNanos);
+        Metrics.TOUR_SOLVE.recordSince(solveStart);
+
+        int legs = roundTrip ? order.length : order.length - 1;
+        List<List<Long>> route = inSearchPool(() -> IntStream.range(0, legs).parallel()
+                .mapToObj(i -> Router.shortestPath(g, overlay, stops[order[i]],
+                        stops[order[(i + 1) % order.length]]))
+                .collect(Collectors.toList()));
+        if (route.isEmpty()) {
+            route = Collections.singletonList(Collections.singletonList(g.id(stops[0])));
+        }
+        return new Tour(order, new RegionRoute(Collections.nCopies(route.size(), g), route),
+                cost(distances, order, roundTrip));
+    }
+
+    /**
+     * Returns the road distance from every stop to every other, by one search per stop.
+     * @param stops The dense vertex numbers of the stops.
+     */
+    static double[][] distanceMatrix(GraphDB g, EdgeOverlay overlay, int[] stops) {
+        return inSearchPool(() -> IntStream.range(0, stops.length).parallel()
+                .mapToObj(i -> Router.distancesTo(g, overlay, stops[i], stops))
+                .toArray(double[][]::new));
+    }
+
+    /**
+     * Runs a parallel stream pipeline in SEARCH_POOL and waits for its result. A parallel
+     * stream forks into the pool of the thread that starts it, so starting it from a task
+     * of SEARCH_POOL keeps all of its work there.
+     */
+    private static <T> T inSearchPool(Supplier<T> pipeline) {
+        return SEARCH_POOL.submit(pipeline::get).join();
+    }
+
+    /**
+     * Returns the order to visit the stops in, starting with stop 0.
+     * @param distances The distance from every stop to every other.
+     * @param deadline The System.nanoTime() by which to stop improving the order.
+     */
+    static int[] solve(double[][] distances, boolean roundTrip, long deadline) {
+        int[] order = nearestNeighbour(distances);
+        double cost = cost(distances, order, roundTrip);
+        boolean improved = true;
+        while (improved && System.nanoTime() < deadline) {
+            double before = cost;
+            cost = twoOpt(distances, order, roundTrip, cost, deadline);
+            cost = orOpt(distances, order, roundTrip, cost, deadline);
+            improved = cost < before - EPSILON;
+        }
+        return order;
+    }
+
+    /** Returns the tour that always goes on to the nearest stop not yet visited. */
+    static int[] nearestNeighbour(double[][] distances) {
+        int n = distances.length;
+        int[] order = new int[n];
+        boolean[] visited = new boolean[n];
+        visited[0] = true;
+        for (int k = 1; k < n; k++) {
+            int from = order[k - 1];
+            int next = -1;
+            for (int j = 0; j < n; j++) {
+                if (!visited[j] && (next < 0 || distances[from][j] < distances[from][next])) {
+                    next = j;
+                }
+            }
+            order[k] = next;
+            visited[next] = true;
+        }
+        return order;
+    }
+
+    /** Returns the length of the tour visiting the stops in the given order. */
+    static double cost(double[][] distances, int[] order, boolean roundTrip) {
+        double cost = 0;
+        for (int k = 1; k < order.length; k++) {
+            cost += distances[order[k - 1]][order[k]];
+        }
+        if (roundTrip) {
+            cost += distances[order[order.length - 1]][order[0]];
+        }
+        return cost;
+    }
+
+    /**
+     * Reverses stretches of the tour while that makes it shorter. The tour is measured
+     * whole after every move, since the distances need not be the same both ways.
+     * @return The new length of the tour.
+     */
+    private static double twoOpt(double[][] distances, int[] order, boolean roundTrip,
+                                 double cost, long deadline) {
+        for (int i = 1; i < order.length - 1; i++) {
+            for (int j = i + 1; j < order.length; j++) {
+                if (System.nanoTime() >= deadline) {
+                    return cost;
+                }
+                reverse(order, i, j);
+                double after = cost(distances, order, roundTrip);
+                if (after < cost - EPSILON) {
+                    cost = after;
+                } else {
+                    reverse(order, i, j);
+                }
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * Moves stretches of up to OR_OPT_LENGTH stops elsewhere in the tour, either way round,
+     * while that makes it shorter.
+     * @return The new length of the tour.
+     */
+    private static double orOpt(double[][] distances, int[] order, boolean roundTrip,
+                                double cost, long deadline) {
+        int n = order.length;
+        int[] moved = new int[n];
+        for (int length = 1; length <= OR_OPT_LENGTH; length++) {
+            for (int i = 1; i + length <= n; i++) {
+                int[] stretch = Arrays.copyOfRange(order, i, i + length);
+                /* The tour without the stretch, which is then put back at position p. */
+                int[] rest = new int[n - length];
+                System.arraycopy(order, 0, rest, 0, i);
+                System.arraycopy(order, i + length, rest, i, n - i - length);
+                for (int p = 1; p <= rest.length; p++) {
+                    for (boolean reversed : new boolean[]{false, true}) {
+                        if (p == i && !reversed) {
+                            continue;
+                        }
+                        if (System.nanoTime() >= deadline) {
+                            return cost;
+                        }
+                        System.arraycopy(rest, 0, moved, 0, p);
+                        for (int k = 0; k < length; k++) {
+                            moved[p + k] = stretch[reversed ? length - 1 - k : k];
+                        }
+                        System.arraycopy(rest, p, moved, p + length, rest.length - p);
+                        double after = cost(distances, moved, roundTrip);
+                        if (after < cost - EPSILON) {
+                            cost = after;
+                            System.arraycopy(moved, 0, order, 0, n);
+                            stretch = Arrays.copyOfRange(order, i, i + length);
+                            System.arraycopy(order, 0, rest, 0, i);
+                            System.arraycopy(order, i + length, rest, i, n - i - length);
+                        }
+                    }
+                }
+            }
+        }
+        return cost;
+    }
+
+    private static void reverse(int[] order, int i, int j) {
+        for (; i < j; i++, j--) {
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+    }
+
+    /** The order to visit the stops of a tour in, and the route through them. */
+    public static class Tour {
+        static final Tour EMPTY = new Tour(new int[0], RegionRoute.empty(),
+                Double.POSITIVE_INFINITY);
+
+        private final int[] order;
+        private final RegionRoute route;
+        private final double distance;
+
+        Tour(int[] order, RegionRoute route, double distance) {
+            this.order = order;
+            this.route = route;
+            this.distance = distance;
+        }
+
+        /** Returns the positions of the stops in the list they were given in, in order. */
+        public int[] order() {
+            return order.clone();
+        }
+
+        /** Returns the route through every stop, in order. */
+        public RegionRoute route() {
+            return route;
+        }
+
+        /** Returns the length of the tour in miles. */
+        public double distance() {
+            return distance;
+        }
+
+        public boolean isEmpty() {
+            return order.length == 0;
+        }
+    }
+}
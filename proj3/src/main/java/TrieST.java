@@ -207,6 +207,73 @@ public class TrieST<Value> {
         }
     }
 
+    /**
+     * Returns a cursor at the root of the trie, for finding the keys with a prefix that
+     * grows or shrinks a character at a time, as a prefix does while someone types it.
+     * The trie must not be modified while the cursor is in use.
+     *
+     * @return a cursor at the empty prefix
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * A prefix together with the path of trie nodes it leads along, so that moving to
+     * a prefix that starts the same way only walks the characters that differ.
+     */
+    public class Cursor {
+        private final StringBuilder prefix = new StringBuilder();
+        private Node[] path = new Node[16];     // path[d] is reached by d characters
+
+        private Cursor() {
+            path[0] = root;
+        }
+
+        /**
+         * Moves the cursor to the given prefix.
+         *
+         * @param target the prefix
+         * @throws IllegalArgumentException if {@code target} is {@code null}
+         */
+        public void moveTo(String target) {
+            if (target == null) throw new IllegalArgumentException("argument to moveTo() is null");
+            int d = 0;
+            while (d < prefix.length() && d < target.length()
+                    && prefix.charAt(d) == target.charAt(d))
+                d++;
+            prefix.setLength(d);
+            if (path.length <= target.length())
+                path = Arrays.copyOf(path, Math.max(2 * path.length, target.length() + 1));
+            for (; d < target.length(); d++) {
+                char c = target.charAt(d);
+                Node x = path[d];
+                path[d + 1] = x == null || c >= R ? null : x.next[c];
+                prefix.append(c);
+            }
+        }
+
+        /**
+         * Returns the prefix the cursor is at.
+         *
+         * @return the prefix
+         */
+        public String prefix() {
+            return prefix.toString();
+        }
+
+        /**
+         * Returns all of the keys in the symbol table that start with the cursor's prefix.
+         *
+         * @return the keys, as an iterable
+         */
+        public Iterable<String> keys() {
+            Queue<String> results = new LinkedList<>();
+            collect(path[prefix.length()], new StringBuilder(prefix), results);
+            return results;
+        }
+    }
+
     /**
      * Returns all of the keys in the symbol table that match {@code pattern},
      * where . symbol is treated as a wildcard character.
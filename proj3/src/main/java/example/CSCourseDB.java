@@ -7,20 +7,46 @@ import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 
 /**
  * Dummy DB of Berkeley CS courses, populated from an XML file.
+ *
+ * Once the file is read, the prerequisites are indexed as a DAG: courses are numbered in
+ * the order the file lists them, and every course gets a bitset of all the courses it
+ * requires, directly or not, and of all the courses it unlocks. Both are computed once, in
+ * topological order, so a closure query is a copy of a bitset and "can I take this" is a
+ * subset test, each a few word operations rather than a search of the graph.
  */
 public class CSCourseDB {
 
     private final Map<String, Course> courses = new LinkedHashMap<>();
 
-    private CSCourseDB(String dbPath) {
+    /* The prerequisite DAG, by course number. */
+    private final Map<String, Integer> index = new HashMap<>();
+    private String[] ids;
+    private int[][] prereqs;
+    private int[][] dependents;
+    /* Every course after all of its prerequisites. */
+    private int[] topological;
+    /* The transitive closures: required[i] holds every course i needs before it. */
+    private BitSet[] required;
+    private BitSet[] unlocked;
+
+    CSCourseDB(String dbPath) {
         try {
             SAXParserFactory factory = SAXParserFactory.newInstance();
             SAXParser saxParser = factory.newSAXParser();
@@ -31,6 +57,243 @@ public class CSCourseDB {
             e) {
             e.printStackTrace();
         }
+        buildIndex();
+    }
+
+    /**
+     * Number the courses, and compute the topological order and the closures.
+     * @throws IllegalStateException if a prerequisite is not a course, or the
+     * prerequisites form a cycle
+     */
+    private void buildIndex() {
+        int n = courses.size();
+        ids = courses.keySet().toArray(new String[0]);
+        for (int i = 0; i < n; i++) {
+            index.put(ids[i], i);
+        }
+        List<List<Integer>> before = new ArrayList<>();
+        List<List<Integer>> after = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            before.add(new ArrayList<>());
+            after.add(new ArrayList<>());
+        }
+        for (int i = 0; i < n; i++) {
+            for (String from : courses.get(ids[i]).prereqs) {
+                Integer p = index.get(from);
+                if (p == null) {
+                    throw new IllegalStateException("Unknown prerequisite " + from + " of "
+                        + ids[i] + ".");
+                }
+                before.get(i).add(p);
+                after.get(p).add(i);
+            }
+        }
+        prereqs = new int[n][];
+        dependents = new int[n][];
+        for (int i = 0; i < n; i++) {
+            prereqs[i] = before.get(i).stream().mapToInt(Integer::intValue).sorted().toArray();
+            dependents[i] = after.get(i).stream().mapToInt(Integer::intValue).sorted().toArray();
+        }
+
+        /* Kahn's algorithm, taking the lowest numbered course that is ready first. */
+        topological = new int[n];
+        int[] waiting = new int[n];
+        PriorityQueue<Integer> ready = new PriorityQueue<>();
+        for (int i = 0; i < n; i++) {
+            waiting[i] = prereqs[i].length;
+            if (waiting[i] == 0) {
+                ready.add(i);
+            }
+        }
+        int count = 0;
+        while (!ready.isEmpty()) {
+            int c = ready.poll();
+            topological[count++] = c;
+            for (int d : dependents[c]) {
+                if (--waiting[d] == 0) {
+                    ready.add(d);
+                }
+            }
+        }
+        if (count < n) {
+            throw new IllegalStateException("The prerequisites form a cycle.");
+        }
+
+        required = new BitSet[n];
+        for (int c : topological) {
+            required[c] = new BitSet(n);
+            for (int p : prereqs[c]) {
+                required[c].or(required[p]);
+                required[c].set(p);
+            }
+        }
+        unlocked = new BitSet[n];
+        for (int k = n - 1; k >= 0; k--) {
+            int c = topological[k];
+            unlocked[c] = new BitSet(n);
+            for (int d : dependents[c]) {
+                unlocked[c].or(unlocked[d]);
+                unlocked[c].set(d);
+            }
+        }
+    }
+
+    private int course(String id) {
+        Integer c = index.get(id);
+        if (c == null) {
+            throw new IllegalArgumentException("No course " + id + ".");
+        }
+        return c;
+    }
+
+    private BitSet courses(Collection<String> courseIds) {
+        BitSet set = new BitSet(ids.length);
+        for (String id : courseIds) {
+            set.set(course(id));
+        }
+        return set;
+    }
+
+    private List<String> names(BitSet set) {
+        List<String> names = new ArrayList<>(set.cardinality());
+        for (int c = set.nextSetBit(0); c >= 0; c = set.nextSetBit(c + 1)) {
+            names.add(ids[c]);
+        }
+        return names;
+    }
+
+    /**
+     * Returns every course that must be taken before a course, directly or not, in the
+     * order the file lists them.
+     *
+     * @param courseId course
+     */
+    public List<String> prerequisites(String courseId) {
+        return names(required[course(courseId)]);
+    }
+
+    /**
+     * Returns every course that a course is a prerequisite of, directly or not, in the
+     * order the file lists them.
+     *
+     * @param courseId course
+     */
+    public List<String> unlocks(String courseId) {
+        return names(unlocked[course(courseId)]);
+    }
+
+    /**
+     * Returns the courses that become available once a course is taken, given the courses
+     * already taken: those it is a direct prerequisite of whose other prerequisites are all
+     * taken.
+     *
+     * @param courseId course about to be taken
+     * @param taken courses already taken
+     */
+    public List<String> unlocks(String courseId, Collection<String> taken) {
+        BitSet done = courses(taken);
+        int c = course(courseId);
+        done.set(c);
+        BitSet available = new BitSet(ids.length);
+        for (int d : dependents[c]) {
+            if (!done.get(d) && canTake(d, done)) {
+                available.set(d);
+            }
+        }
+        return names(available);
+    }
+
+    /**
+     * Returns whether a must be taken before b, directly or not.
+     */
+    public boolean isPrerequisite(String a, String b) {
+        return required[course(b)].get(course(a));
+    }
+
+    /**
+     * Returns whether every prerequisite of a course has been taken.
+     *
+     * @param courseId course
+     * @param taken courses already taken
+     */
+    public boolean canTake(String courseId, Collection<String> taken) {
+        return canTake(course(courseId), courses(taken));
+    }
+
+    private boolean canTake(int c, BitSet taken) {
+        BitSet missing = (BitSet) required[c].clone();
+        missing.andNot(taken);
+        return missing.isEmpty();
+    }
+
+    /**
+     * Plans the semesters to reach some goal courses in: every course a goal needs that is
+     * not taken yet, each in a semester after all of its prerequisites. Each semester takes
+     * the available courses with the longest chains of needed courses still waiting on them
+     * first, so that the plan takes few semesters. Chains the goals do not need are left out
+     * of the count, since they would make courses that start them look more urgent than
+     * they are.
+     *
+     * @param goals courses to take
+     * @param taken courses already taken
+     * @param perSemester most courses to take in a semester
+     * @return the courses to take in each semester, in order
+     */
+    public List<List<String>> planSemesters(Collection<String> goals, Collection<String> taken,
+        int perSemester) {
+        if (perSemester < 1) {
+            throw new IllegalArgumentException("Take at least one course a semester.");
+        }
+        BitSet done = courses(taken);
+        BitSet needed = new BitSet(ids.length);
+        for (String goal : goals) {
+            int g = course(goal);
+            needed.or(required[g]);
+            needed.set(g);
+        }
+        needed.andNot(done);
+
+        /* Courses still needed, ordered topologically; each semester picks from these. */
+        Deque<Integer> left = new ArrayDeque<>();
+        for (int c : topological) {
+            if (needed.get(c)) {
+                left.add(c);
+            }
+        }
+        /* The most semesters of needed courses that depend on each course, itself included. */
+        int[] height = new int[ids.length];
+        for (Iterator<Integer> it = left.descendingIterator(); it.hasNext();) {
+            int c = it.next();
+            height[c] = 1;
+            for (int d : dependents[c]) {
+                if (needed.get(d)) {
+                    height[c] = Math.max(height[c], height[d] + 1);
+                }
+            }
+        }
+        List<List<String>> semesters = new ArrayList<>();
+        while (!left.isEmpty()) {
+            List<Integer> available = new ArrayList<>();
+            for (int c : left) {
+                if (canTake(c, done)) {
+                    available.add(c);
+                }
+            }
+            available.sort((a, b) -> height[a] != height[b] ? height[b] - height[a] : a - b);
+            List<Integer> semester = available.subList(0, Math.min(perSemester,
+                available.size()));
+            semester.sort(null);
+            List<String> names = new ArrayList<>();
+            for (int c : semester) {
+                names.add(ids[c]);
+                left.remove(c);
+            }
+            for (int c : semester) {
+                done.set(c);
+            }
+            semesters.add(names);
+        }
+        return semesters;
     }
 
     /**
@@ -118,5 +381,7 @@ public class CSCourseDB {
     public static void main(String[] args) {
         CSCourseDB db = new CSCourseDB("berkeley-cs.xml");
         System.out.println(db);
+        System.out.println("To take CS 162: " + db.planSemesters(
+            Collections.singleton("CS 162"), Collections.emptySet(), 2));
     }
 }
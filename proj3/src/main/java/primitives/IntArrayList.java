@@ -0,0 +1,67 @@
+package primitives;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of ints that never boxes them, for hot code that would otherwise use a
+ * List<Integer>. Appending allocates only when the backing array doubles.
+ */
+public class IntArrayList {
+    private static final int DEFAULT_CAPACITY = 4;
+
+    private int[] items;
+    private int size;
+
+    public IntArrayList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /** Creates an empty list with room for the given number of ints. */
+    public IntArrayList(int capacity) {
+        items = new int[Math.max(1, capacity)];
+    }
+
+    /** Appends an int to the end of the list. */
+    public void add(int x) {
+        if (size == items.length) {
+            items = Arrays.copyOf(items, 2 * items.length);
+        }
+        items[size++] = x;
+    }
+
+    /** Returns the int at the given position. */
+    public int get(int i) {
+        checkIndex(i);
+        return items[i];
+    }
+
+    /** Replaces the int at the given position. */
+    public void set(int i, int x) {
+        checkIndex(i);
+        items[i] = x;
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index " + i + ", size " + size + ".");
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Removes every int, keeping the backing array. */
+    public void clear() {
+        size = 0;
+    }
+
+    /** Returns a copy of the ints in the list, in order. */
+    public int[] toArray() {
+        return Arrays.copyOf(items, size);
+    }
+}
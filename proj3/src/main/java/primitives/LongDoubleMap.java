@@ -0,0 +1,80 @@
+package primitives;
+
+/**
+ * A map from long keys to double values that never boxes either, for hot code that would
+ * otherwise use a Map<Long, Double>. See LongHashTable for how it is laid out; get() and
+ * put() do not allocate, except when put() grows the table.
+ *
+ * It follows lab9's Map61B where a primitive map can: get() returns the map's missing
+ * value, NaN, where Map61B would return null, and remove() returns it when the key
+ * was not there.
+ */
+public class LongDoubleMap extends LongHashTable {
+    private final double missing;
+    private double[] values;
+
+    /** Creates an empty map whose missing value is NaN. */
+    public LongDoubleMap() {
+        this(Double.NaN, 0);
+    }
+
+    /**
+     * Creates an empty map.
+     * @param missing What get() returns for a key with no value.
+     * @param expectedSize How many keys to make room for before the first resize.
+     */
+    public LongDoubleMap(double missing, int expectedSize) {
+        super(expectedSize);
+        this.missing = missing;
+        allocateValues(keys.length);
+    }
+
+    @Override
+    void allocateValues(int capacity) {
+        values = new double[capacity];
+    }
+
+    @Override
+    void moveValues(boolean[] oldUsed, int[] to, int capacity) {
+        double[] old = values;
+        allocateValues(capacity);
+        for (int j = 0; j < old.length; j++) {
+            if (oldUsed[j]) {
+                values[to[j]] = old[j];
+            }
+        }
+    }
+
+    @Override
+    void moveValue(int from, int to) {
+        values[to] = values[from];
+    }
+
+    /** Returns the value of a key, or the missing value if it has none. */
+    public double get(long key) {
+        int i = slot(key);
+        return i >= 0 ? values[i] : missing;
+    }
+
+    /** Sets the value of a key. */
+    public void put(long key, double value) {
+        int i = insert(key);
+        values[i] = value;
+    }
+
+    /** Removes a key, and returns its value, or the missing value if it had none. */
+    public double remove(long key) {
+        int i = slot(key);
+        if (i < 0) {
+            return missing;
+        }
+        double value = values[i];
+        delete(i);
+        return value;
+    }
+
+    /** Returns what get() returns for a key with no value. */
+    public double missingValue() {
+        return missing;
+    }
+}
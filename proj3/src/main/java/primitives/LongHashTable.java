@@ -0,0 +1,145 @@
+package primitives;
+
+import java.util.Arrays;
+
+/**
+ * The open-addressed table of long keys that LongIntMap, LongDoubleMap and LongLongMap are
+ * built on. Keys live in a flat array, with a parallel array marking the slots in use, since
+ * every long is a valid key. A key goes in the first free slot from the one its spread hash
+ * picks (linear probing), the table is kept at most half full, and removal shifts the rest
+ * of the run back instead of leaving tombstones. Only a resize allocates.
+ *
+ * Subclasses keep their values in a third parallel array, and move them when told to.
+ */
+abstract class LongHashTable {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final double MAX_LOAD = 0.5;
+
+    long[] keys;
+    boolean[] used;
+    private int size;
+
+    LongHashTable(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * MAX_LOAD < expectedSize) {
+            capacity *= 2;
+        }
+        keys = new long[capacity];
+        used = new boolean[capacity];
+    }
+
+    /** Allocates the value array for a table of the given capacity. */
+    abstract void allocateValues(int capacity);
+
+    /** Moves the values of a table being resized: the value of old slot j goes to to[j]. */
+    abstract void moveValues(boolean[] oldUsed, int[] to, int capacity);
+
+    /** Moves the value in slot from to slot to. */
+    abstract void moveValue(int from, int to);
+
+    /** Spreads the bits of a key, so that keys differing only in their high bits differ
+     *  in their low bits too. */
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Returns the slot holding a key, or, if the key is missing, -1 minus the free slot
+     * where it would go.
+     */
+    final int slot(long key) {
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while (used[i]) {
+            if (keys[i] == key) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1 - i;
+    }
+
+    /** Returns the slot holding a key, adding the key if it is missing. */
+    final int insert(long key) {
+        int i = slot(key);
+        if (i >= 0) {
+            return i;
+        }
+        if (size + 1 > keys.length * MAX_LOAD) {
+            resize(keys.length * 2);
+            i = slot(key);
+        }
+        i = -1 - i;
+        keys[i] = key;
+        used[i] = true;
+        size += 1;
+        return i;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        boolean[] oldUsed = used;
+        keys = new long[capacity];
+        used = new boolean[capacity];
+        int[] to = new int[oldKeys.length];
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldUsed[j]) {
+                int i = -1 - slot(oldKeys[j]);
+                keys[i] = oldKeys[j];
+                used[i] = true;
+                to[j] = i;
+            }
+        }
+        moveValues(oldUsed, to, capacity);
+    }
+
+    /** Empties a slot, then moves back every later key of its run that could no longer be
+     *  reached from the slot its hash picks. */
+    final void delete(int hole) {
+        int mask = keys.length - 1;
+        for (int j = (hole + 1) & mask; used[j]; j = (j + 1) & mask) {
+            int home = hash(keys[j]) & mask;
+            /* The key at j stays put if its home is cyclically in (hole, j]. */
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                moveValue(j, hole);
+                hole = j;
+            }
+        }
+        used[hole] = false;
+        size -= 1;
+    }
+
+    /** Returns whether the map has a value for a key. */
+    public boolean containsKey(long key) {
+        return slot(key) >= 0;
+    }
+
+    /** Returns the number of keys in the map. */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Removes every key, keeping the table's capacity. */
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    /** Returns the keys of the map, in no particular order. */
+    public long[] keys() {
+        long[] result = new long[size];
+        int k = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                result[k++] = keys[i];
+            }
+        }
+        return result;
+    }
+}
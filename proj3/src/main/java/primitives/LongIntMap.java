@@ -0,0 +1,80 @@
+package primitives;
+
+/**
+ * A map from long keys to int values that never boxes either, for hot code that would
+ * otherwise use a Map<Long, Integer>. See LongHashTable for how it is laid out; get() and
+ * put() do not allocate, except when put() grows the table.
+ *
+ * It follows lab9's Map61B where a primitive map can: get() returns the map's missing
+ * value, -1, where Map61B would return null, and remove() returns it when the key
+ * was not there.
+ */
+public class LongIntMap extends LongHashTable {
+    private final int missing;
+    private int[] values;
+
+    /** Creates an empty map whose missing value is -1. */
+    public LongIntMap() {
+        this(-1, 0);
+    }
+
+    /**
+     * Creates an empty map.
+     * @param missing What get() returns for a key with no value.
+     * @param expectedSize How many keys to make room for before the first resize.
+     */
+    public LongIntMap(int missing, int expectedSize) {
+        super(expectedSize);
+        this.missing = missing;
+        allocateValues(keys.length);
+    }
+
+    @Override
+    void allocateValues(int capacity) {
+        values = new int[capacity];
+    }
+
+    @Override
+    void moveValues(boolean[] oldUsed, int[] to, int capacity) {
+        int[] old = values;
+        allocateValues(capacity);
+        for (int j = 0; j < old.length; j++) {
+            if (oldUsed[j]) {
+                values[to[j]] = old[j];
+            }
+        }
+    }
+
+    @Override
+    void moveValue(int from, int to) {
+        values[to] = values[from];
+    }
+
+    /** Returns the value of a key, or the missing value if it has none. */
+    public int get(long key) {
+        int i = slot(key);
+        return i >= 0 ? values[i] : missing;
+    }
+
+    /** Sets the value of a key. */
+    public void put(long key, int value) {
+        int i = insert(key);
+        values[i] = value;
+    }
+
+    /** Removes a key, and returns its value, or the missing value if it had none. */
+    public int remove(long key) {
+        int i = slot(key);
+        if (i < 0) {
+            return missing;
+        }
+        int value = values[i];
+        delete(i);
+        return value;
+    }
+
+    /** Returns what get() returns for a key with no value. */
+    public int missingValue() {
+        return missing;
+    }
+}
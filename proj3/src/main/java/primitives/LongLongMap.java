@@ -0,0 +1,80 @@
+package primitives;
+
+/**
+ * A map from long keys to long values that never boxes either, for hot code that would
+ * otherwise use a Map<Long, Long>. See LongHashTable for how it is laid out; get() and
+ * put() do not allocate, except when put() grows the table.
+ *
+ * It follows lab9's Map61B where a primitive map can: get() returns the map's missing
+ * value, -1, where Map61B would return null, and remove() returns it when the key
+ * was not there.
+ */
+public class LongLongMap extends LongHashTable {
+    private final long missing;
+    private long[] values;
+
+    /** Creates an empty map whose missing value is -1. */
+    public LongLongMap() {
+        this(-1, 0);
+    }
+
+    /**
+     * Creates an empty map.
+     * @param missing What get() returns for a key with no value.
+     * @param expectedSize How many keys to make room for before the first resize.
+     */
+    public LongLongMap(long missing, int expectedSize) {
+        super(expectedSize);
+        this.missing = missing;
+        allocateValues(keys.length);
+    }
+
+    @Override
+    void allocateValues(int capacity) {
+        values = new long[capacity];
+    }
+
+    @Override
+    void moveValues(boolean[] oldUsed, int[] to, int capacity) {
+        long[] old = values;
+        allocateValues(capacity);
+        for (int j = 0; j < old.length; j++) {
+            if (oldUsed[j]) {
+                values[to[j]] = old[j];
+            }
+        }
+    }
+
+    @Override
+    void moveValue(int from, int to) {
+        values[to] = values[from];
+    }
+
+    /** Returns the value of a key, or the missing value if it has none. */
+    public long get(long key) {
+        int i = slot(key);
+        return i >= 0 ? values[i] : missing;
+    }
+
+    /** Sets the value of a key. */
+    public void put(long key, long value) {
+        int i = insert(key);
+        values[i] = value;
+    }
+
+    /** Removes a key, and returns its value, or the missing value if it had none. */
+    public long remove(long key) {
+        int i = slot(key);
+        if (i < 0) {
+            return missing;
+        }
+        long value = values[i];
+        delete(i);
+        return value;
+    }
+
+    /** Returns what get() returns for a key with no value. */
+    public long missingValue() {
+        return missing;
+    }
+}
@@ -0,0 +1,80 @@
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for finding alternative routes, on a three by three grid of streets.
+ */
+public class TestAlternatives {
+    private static final String OSM_DB_PATH_GRID = "tiny-grid.osm.xml";
+    private static final GraphDB GRID = new GraphDB(OSM_DB_PATH_GRID);
+
+    private static List<List<Long>> alternatives(long from, long to, int k) {
+        return Router.alternatives(GRID, EdgeOverlay.EMPTY, GRID.index(from), GRID.index(to),
+                k);
+    }
+
+    @Test
+    public void testAlternativesAreDiverse() {
+        List<List<Long>> routes = alternatives(1, 9, 3);
+        assertTrue(routes.size() >= 2 && routes.size() <= 3);
+        assertEquals(Router.shortestPath(GRID, EdgeOverlay.EMPTY, GRID.index(1L),
+                GRID.index(9L)), routes.get(0));
+        assertEquals(routes.size(), new HashSet<>(routes).size());
+
+        double best = Router.routeLength(GRID, EdgeOverlay.EMPTY, routes.get(0));
+        for (int i = 0; i < routes.size(); i++) {
+            List<Long> route = routes.get(i);
+            assertEquals(1L, (long) route.get(0));
+            assertEquals(9L, (long) route.get(route.size() - 1));
+            assertTrue(Router.routeLength(GRID, EdgeOverlay.EMPTY, route)
+                    <= Router.MAX_STRETCH * best);
+            for (int j = 0; j < i; j++) {
+                assertTrue(Router.overlap(GRID, route, routes.get(j)) <= Router.MAX_OVERLAP);
+            }
+        }
+    }
+
+    @Test
+    public void testSingleRoute() {
+        List<List<Long>> routes = alternatives(1, 9, 1);
+        assertEquals(1, routes.size());
+    }
+
+    /** Alternatives respect closed roads. */
+    @Test
+    public void testAlternativesAvoidClosures() {
+        EdgeOverlay closed = EdgeOverlay.EMPTY.withFactor(Arrays.asList(new long[]{1, 2},
+                new long[]{4, 5}), EdgeOverlay.CLOSED);
+        List<List<Long>> routes = Router.alternatives(GRID, closed, GRID.index(1L),
+                GRID.index(3L), 3);
+        assertEquals(Arrays.asList(1L, 4L, 7L, 8L, 9L, 6L, 3L), routes.get(0));
+        for (List<Long> route : routes) {
+            assertTrue(Router.routeLength(GRID, closed, route) < Double.POSITIVE_INFINITY);
+        }
+    }
+
+    @Test
+    public void testUnreachable() {
+        EdgeOverlay closed = EdgeOverlay.EMPTY.withFactor(Arrays.asList(new long[]{1, 2},
+                new long[]{1, 4}), EdgeOverlay.CLOSED);
+        assertEquals(Collections.emptyList(), Router.alternatives(GRID, closed,
+                GRID.index(1L), GRID.index(9L), 3));
+    }
+
+    @Test
+    public void testOverlap() {
+        assertEquals(1.0, Router.overlap(GRID, Arrays.asList(1L, 2L, 3L),
+                Arrays.asList(3L, 2L, 1L)), 1e-9);
+        assertEquals(0.5, Router.overlap(GRID, Arrays.asList(1L, 2L, 3L),
+                Arrays.asList(1L, 2L, 5L)), 1e-9);
+        assertEquals(0.0, Router.overlap(GRID, Arrays.asList(1L, 2L, 3L),
+                Arrays.asList(1L, 4L, 7L)), 1e-9);
+    }
+}
@@ -0,0 +1,84 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for BatchRouter: its results match Router's, and do not depend on the number of
+ * threads.
+ */
+public class TestBatchRouter {
+    private static final String OSM_DB_PATH_JITTERED = "jittered-grid.osm.xml";
+    private static final int QUERIES = 300;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    /** Writes a parameter file of random queries within the graph's bounding box. */
+    private Path writeQueries(GraphDB g, Random random) throws IOException {
+        double minLon = Double.POSITIVE_INFINITY, maxLon = Double.NEGATIVE_INFINITY;
+        double minLat = Double.POSITIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
+        for (int v = 0; v < g.size(); v++) {
+            minLon = Math.min(minLon, g.lonAt(v));
+            maxLon = Math.max(maxLon, g.lonAt(v));
+            minLat = Math.min(minLat, g.latAt(v));
+            maxLat = Math.max(maxLat, g.latAt(v));
+        }
+        List<String> lines = new ArrayList<>();
+        lines.add("# Random queries");
+        lines.add("# start_lon, start_lat, end_lon, end_lat");
+        for (int i = 0; i < 4 * QUERIES; i += 2) {
+            lines.add(Double.toString(minLon + random.nextDouble() * (maxLon - minLon)));
+            lines.add(Double.toString(minLat + random.nextDouble() * (maxLat - minLat)));
+        }
+        Path path = temp.newFile("params.txt").toPath();
+        Files.write(path, lines, StandardCharsets.UTF_8);
+        return path;
+    }
+
+    private static String route(GraphDB g, List<double[]> queries, int threads)
+            throws IOException {
+        StringWriter out = new StringWriter();
+        BatchRouter.route(g, queries, out, threads);
+        return out.toString();
+    }
+
+    @Test
+    public void testMatchesRouter() throws IOException {
+        GraphDB g = new GraphDB(OSM_DB_PATH_JITTERED);
+        List<double[]> queries = BatchRouter.readQueries(writeQueries(g, new Random(45)));
+        assertEquals(QUERIES, queries.size());
+
+        String[] lines = route(g, queries, 2).split("\n");
+        int lineIdx = 2; // ignore comment lines
+        for (double[] query : queries) {
+            List<Long> expected = Router.shortestPath(g, query[0], query[1], query[2],
+                    query[3]);
+            assertEquals(expected.size(), Integer.parseInt(lines[lineIdx++]));
+            for (long v : expected) {
+                assertEquals(v, Long.parseLong(lines[lineIdx++]));
+            }
+        }
+        assertEquals(lines.length, lineIdx);
+    }
+
+    @Test
+    public void testSameOutputOnAnyNumberOfThreads() throws IOException {
+        GraphDB g = new GraphDB(OSM_DB_PATH_JITTERED);
+        List<double[]> queries = BatchRouter.readQueries(writeQueries(g, new Random(46)));
+        String single = route(g, queries, 1);
+        for (int threads : new int[]{2, 3, 8}) {
+            assertEquals(single, route(g, queries, threads));
+        }
+    }
+}
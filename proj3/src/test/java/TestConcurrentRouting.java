@@ -0,0 +1,99 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Stress tests for the read-only contract of GraphDB: many threads route on one graph at
+ * once and must get exactly the routes a single thread gets, and those routes must be
+ * shortest ones.
+ */
+public class TestConcurrentRouting {
+    private static final String OSM_DB_PATH_JITTERED = "jittered-grid.osm.xml";
+    private static final int THREADS = 8;
+    private static final int QUERIES = 4000;
+    private static final int OPTIMALITY_CHECKS = 200;
+
+    @Test
+    public void testConcurrentShortestPaths() throws Exception {
+        GraphDB g = new GraphDB(OSM_DB_PATH_JITTERED);
+        Random random = new Random(41);
+        int[][] queries = new int[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = new int[]{random.nextInt(g.size()), random.nextInt(g.size())};
+        }
+
+        /* Single threaded; the first routes are also checked against Dijkstra. */
+        List<List<Long>> expected = new ArrayList<>();
+        for (int i = 0; i < QUERIES; i++) {
+            List<Long> route = Router.shortestPath(g, EdgeOverlay.EMPTY, queries[i][0],
+                    queries[i][1]);
+            if (i < OPTIMALITY_CHECKS) {
+                double[] tree = Router.shortestPathTree(g, EdgeOverlay.EMPTY, queries[i][0],
+                        new int[g.size()]);
+                assertEquals(tree[queries[i][1]],
+                        Router.routeLength(g, EdgeOverlay.EMPTY, route), 1e-9);
+            }
+            expected.add(route);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int first = t;
+                results.add(pool.submit((Callable<Integer>) () -> {
+                    int checked = 0;
+                    for (int i = first; i < QUERIES; i += THREADS) {
+                        List<Long> route = Router.shortestPath(g, EdgeOverlay.EMPTY,
+                                queries[i][0], queries[i][1]);
+                        assertEquals(expected.get(i), route);
+                        checked++;
+                    }
+                    return checked;
+                }));
+            }
+            int checked = 0;
+            for (Future<Integer> result : results) {
+                checked += result.get();
+            }
+            assertEquals(QUERIES, checked);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Graphs built on other threads are fully visible, and routes agree across threads. */
+    @Test
+    public void testGraphsBuiltOnOtherThreads() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<List<Long>>> routes = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                Future<GraphDB> built = pool.submit(() -> new GraphDB(OSM_DB_PATH_JITTERED));
+                routes.add(pool.submit(() -> Router.shortestPath(built.get(), -122.0, 38.0,
+                        -121.89, 38.11)));
+            }
+            List<Long> first = routes.get(0).get();
+            assertTrue(first.size() > 1);
+            for (Future<List<Long>> route : routes) {
+                assertEquals(first, route.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBuiltGraphIsReadOnly() {
+        new GraphDB(OSM_DB_PATH_JITTERED).addNode(1, -122.0, 38.0);
+    }
+}
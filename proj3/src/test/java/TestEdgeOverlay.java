@@ -0,0 +1,120 @@
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for closing and reweighting roads at runtime, on the two region map of
+ * TestRegionCoordinator.
+ */
+public class TestEdgeOverlay {
+    private static final String REGIONS_PATH = "tiny-regions.json";
+
+    @Test
+    public void testOverlayIsCopyOnWrite() {
+        EdgeOverlay first = EdgeOverlay.EMPTY.withFactor(
+                Collections.singletonList(new long[]{1, 2}), EdgeOverlay.CLOSED);
+        EdgeOverlay second = first.withFactor(
+                Collections.singletonList(new long[]{2, 4}), 2.0);
+        assertEquals(1, first.version());
+        assertEquals(2, second.version());
+        assertEquals(EdgeOverlay.CLOSED, first.factor(2, 1), 0);
+        assertEquals(1, first.factor(2, 4), 0);
+        assertEquals(2.0, second.factor(4, 2), 0);
+        assertEquals(2, second.changes().size());
+
+        EdgeOverlay restored = second.withFactor(Arrays.asList(new long[]{1, 2},
+                new long[]{2, 4}), 1);
+        assertTrue(restored.isEmpty());
+        assertTrue(EdgeOverlay.EMPTY.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFactorBelowOneRejected() {
+        EdgeOverlay.EMPTY.withFactor(Collections.singletonList(new long[]{1, 2}), 0.5);
+    }
+
+    @Test
+    public void testDisableEdge() {
+        RegionCoordinator coordinator = RegionCoordinator.fromJson(REGIONS_PATH);
+        assertEquals(Arrays.asList(1L, 2L, 3L, 6L, 7L),
+                coordinator.shortestPath(0.2, 38.5, 1.8, 38.5).route());
+        coordinator.disableEdge(2, 3);
+        assertEquals(Arrays.asList(1L, 2L, 4L, 5L, 8L, 6L, 7L),
+                coordinator.shortestPath(0.2, 38.5, 1.8, 38.5).route());
+        coordinator.enableEdge(3, 2);
+        assertEquals(Arrays.asList(1L, 2L, 3L, 6L, 7L),
+                coordinator.shortestPath(0.2, 38.5, 1.8, 38.5).route());
+    }
+
+    @Test
+    public void testCloseWayAcrossRegions() {
+        RegionCoordinator coordinator = RegionCoordinator.fromJson(REGIONS_PATH);
+        coordinator.closeWay("side street");
+        assertEquals(3, coordinator.overlay().changes().size());
+        /* Vertex 4 can only be left along Side Street. */
+        assertTrue(coordinator.shortestPath(0.6, 38.2, 1.8, 38.5).isEmpty());
+        coordinator.openWay("Side Street");
+        assertEquals(Arrays.asList(4L, 5L, 8L, 6L, 7L),
+                coordinator.shortestPath(0.6, 38.2, 1.8, 38.5).route());
+    }
+
+    @Test
+    public void testReweightEdge() {
+        RegionCoordinator coordinator = RegionCoordinator.fromJson(REGIONS_PATH);
+        coordinator.reweightEdge(4, 5, 3.0);
+        assertEquals(Arrays.asList(4L, 2L, 3L, 6L, 7L),
+                coordinator.shortestPath(0.6, 38.2, 1.8, 38.5).route());
+    }
+
+    /** Edge weights see the overlay in both directions, and only on graphs holding the edge. */
+    @Test
+    public void testWeightOnDenseVertices() {
+        RegionCoordinator coordinator = RegionCoordinator.fromJson(REGIONS_PATH);
+        GraphDB west = coordinator.regions().get(0).graph();
+        GraphDB east = coordinator.regions().get(1).graph();
+        EdgeOverlay overlay = coordinator.reweightEdge(4, 5, 3.0);
+        int v = west.index(4);
+        int w = west.index(5);
+        assertEquals(3 * west.distanceAt(v, w), overlay.weight(west, v, w), 1e-9);
+        assertEquals(3 * west.distanceAt(w, v), overlay.weight(west, w, v), 1e-9);
+        int u = west.index(2);
+        assertEquals(west.distanceAt(u, v), overlay.weight(west, u, v), 1e-9);
+        int x = east.index(6);
+        int y = east.index(7);
+        assertEquals(east.distanceAt(x, y), overlay.weight(east, x, y), 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownEdgeRejected() {
+        RegionCoordinator.fromJson(REGIONS_PATH).disableEdge(1, 7);
+    }
+
+    @Test
+    public void testRouteCacheInvalidation() {
+        RegionCoordinator coordinator = RegionCoordinator.fromJson(REGIONS_PATH);
+        RegionRoute mainStreet = coordinator.shortestPath(0.2, 38.5, 1.8, 38.5);
+        RegionRoute sideStreet = coordinator.shortestPath(0.6, 38.2, 1.8, 38.5);
+        assertSame(mainStreet, coordinator.shortestPath(0.2, 38.5, 1.8, 38.5));
+
+        /* Closing a road only drops the cached routes along it. */
+        coordinator.disableEdge(4, 5);
+        assertSame(mainStreet, coordinator.shortestPath(0.2, 38.5, 1.8, 38.5));
+        RegionRoute detour = coordinator.shortestPath(0.6, 38.2, 1.8, 38.5);
+        assertNotSame(sideStreet, detour);
+        List<Long> expected = Arrays.asList(4L, 2L, 3L, 6L, 7L);
+        assertEquals(expected, detour.route());
+
+        /* Reopening it may shorten any route, so everything goes. */
+        coordinator.enableEdge(4, 5);
+        assertNotSame(mainStreet, coordinator.shortestPath(0.2, 38.5, 1.8, 38.5));
+        assertEquals(sideStreet.route(), coordinator.shortestPath(0.6, 38.2, 1.8, 38.5)
+                .route());
+    }
+}
@@ -0,0 +1,132 @@
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the compaction pass that runs after a GraphDB is built.
+ */
+public class TestGraphCompaction {
+    private static final String OSM_DB_PATH_ISLANDS = "tiny-islands.osm.xml";
+
+    private static Set<Long> vertexSet(GraphDB g) {
+        Set<Long> ids = new HashSet<>();
+        for (long id : g.vertices()) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    @Test
+    public void testDefaultDropsOnlyIsolatedNodes() {
+        GraphDB g = new GraphDB(OSM_DB_PATH_ISLANDS);
+        Set<Long> expected = new HashSet<>();
+        for (long id : new long[]{11, 22, 41, 46, 55, 63, 66, 71, 72, 73}) {
+            expected.add(id);
+        }
+        assertEquals(expected, vertexSet(g));
+        assertEquals(10, g.size());
+    }
+
+    @Test
+    public void testDropsSmallComponents() {
+        GraphDB g = new GraphDB(OSM_DB_PATH_ISLANDS, 4);
+        Set<Long> expected = new HashSet<>();
+        for (long id : new long[]{11, 22, 41, 46, 55, 63, 66}) {
+            expected.add(id);
+        }
+        assertEquals(expected, vertexSet(g));
+        assertEquals(-1, g.index(72));
+        assertEquals(-1, g.index(80));
+    }
+
+    @Test
+    public void testDenseNumbering() {
+        GraphDB g = new GraphDB(OSM_DB_PATH_ISLANDS);
+        Set<Integer> seen = new HashSet<>();
+        for (long id : g.vertices()) {
+            int v = g.index(id);
+            assertTrue(v >= 0 && v < g.size());
+            seen.add(v);
+        }
+        assertEquals(g.size(), seen.size());
+    }
+
+    @Test
+    public void testGraphSurvivesCompaction() {
+        GraphDB g = new GraphDB(OSM_DB_PATH_ISLANDS, 4);
+        Set<Long> expected = new HashSet<>();
+        expected.add(55L);
+        expected.add(41L);
+        expected.add(66L);
+        Set<Long> actual = new HashSet<>();
+        for (long w : g.adjacent(63)) {
+            actual.add(w);
+        }
+        assertEquals(expected, actual);
+        assertEquals(0.6, g.lon(63), 0.00001);
+        assertEquals(38.3, g.lat(63), 0.00001);
+        assertTrue(g.nodeNames(63).contains("B Street"));
+        assertEquals(55L, g.closest(0.4, 38.51));
+    }
+
+    /** Locations are kept even when their node is not part of the road graph. */
+    @Test
+    public void testLocationsSurviveCompaction() {
+        GraphDB g = new GraphDB(OSM_DB_PATH_ISLANDS, 4);
+        assertEquals("Lonely Cafe", g.getWayName(80));
+        assertEquals(0.3, g.locationLon(80), 0.00001);
+        assertEquals(38.4, g.locationLat(80), 0.00001);
+        assertEquals(1, g.getLocations("lonely cafe").size());
+    }
+
+    @Test
+    public void testHilbertIndex() {
+        assertEquals(0, GraphDB.hilbertIndex(0, 0, 1));
+        assertEquals(1, GraphDB.hilbertIndex(0, 1, 1));
+        assertEquals(2, GraphDB.hilbertIndex(1, 1, 1));
+        assertEquals(3, GraphDB.hilbertIndex(1, 0, 1));
+        /* Consecutive cells along the curve are always neighbours on the grid. */
+        int side = 1 << 4;
+        int[][] cells = new int[side * side][];
+        for (int x = 0; x < side; x++) {
+            for (int y = 0; y < side; y++) {
+                cells[(int) GraphDB.hilbertIndex(x, y, 4)] = new int[]{x, y};
+            }
+        }
+        for (int d = 1; d < cells.length; d++) {
+            int dx = Math.abs(cells[d][0] - cells[d - 1][0]);
+            int dy = Math.abs(cells[d][1] - cells[d - 1][1]);
+            assertEquals(1, dx + dy);
+        }
+    }
+
+    /** The vertex order changes the numbering, but not the graph or the routes on it. */
+    @Test
+    public void testVertexOrdersAgree() {
+        GraphDB reference = new GraphDB(OSM_DB_PATH_ISLANDS, GraphDB.DEFAULT_MIN_COMPONENT_SIZE,
+                GraphDB.VertexOrder.OSM_ID);
+        List<Long> expectedRoute = Router.shortestPath(reference, 0.2, 38.9, 0.6, 38.3);
+        for (GraphDB.VertexOrder order : GraphDB.VertexOrder.values()) {
+            GraphDB g = new GraphDB(OSM_DB_PATH_ISLANDS, GraphDB.DEFAULT_MIN_COMPONENT_SIZE,
+                    order);
+            assertEquals(vertexSet(reference), vertexSet(g));
+            for (long id : reference.vertices()) {
+                Set<Long> expected = new HashSet<>();
+                for (long w : reference.adjacent(id)) {
+                    expected.add(w);
+                }
+                Set<Long> actual = new HashSet<>();
+                for (long w : g.adjacent(id)) {
+                    actual.add(w);
+                }
+                assertEquals(expected, actual);
+            }
+            assertEquals(expectedRoute, Router.shortestPath(g, 0.2, 38.9, 0.6, 38.3));
+        }
+    }
+}
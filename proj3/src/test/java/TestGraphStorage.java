@@ -0,0 +1,67 @@
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that a graph kept off the heap reads and routes exactly like one kept on it.
+ */
+public class TestGraphStorage {
+    private static final String OSM_DB_PATH_JITTERED = "jittered-grid.osm.xml";
+    private static final String OSM_DB_PATH_ISLANDS = "tiny-islands.osm.xml";
+    private static final int QUERIES = 200;
+
+    private static GraphDB build(String dbPath, GraphStorage.Kind kind) {
+        return new GraphDB(dbPath, GraphDB.DEFAULT_MIN_COMPONENT_SIZE, GraphDB.VertexOrder.BFS,
+                kind);
+    }
+
+    private static void assertSameGraph(GraphDB expected, GraphDB actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int v = 0; v < expected.size(); v++) {
+            long id = expected.id(v);
+            assertEquals(id, actual.id(v));
+            assertEquals(v, actual.index(id));
+            assertEquals(expected.lonAt(v), actual.lonAt(v), 0);
+            assertEquals(expected.latAt(v), actual.latAt(v), 0);
+            assertEquals(expected.nodeNames(id), actual.nodeNames(id));
+            assertEquals(expected.firstEdge(v), actual.firstEdge(v));
+            assertEquals(expected.endEdge(v), actual.endEdge(v));
+            for (int e = expected.firstEdge(v); e < expected.endEdge(v); e++) {
+                assertEquals(expected.edgeTarget(e), actual.edgeTarget(e));
+                assertEquals(expected.edgeWay(e), actual.edgeWay(e));
+            }
+        }
+        assertEquals(-1, actual.index(Long.MAX_VALUE));
+        assertEquals(-1, actual.index(-1));
+    }
+
+    @Test
+    public void testAccessorsAgree() {
+        for (String dbPath : new String[]{OSM_DB_PATH_JITTERED, OSM_DB_PATH_ISLANDS}) {
+            GraphDB heap = build(dbPath, GraphStorage.Kind.HEAP);
+            assertSameGraph(heap, build(dbPath, GraphStorage.Kind.DIRECT));
+            assertSameGraph(heap, build(dbPath, GraphStorage.Kind.MAPPED));
+        }
+    }
+
+    @Test
+    public void testRoutesAgree() {
+        GraphDB heap = build(OSM_DB_PATH_JITTERED, GraphStorage.Kind.HEAP);
+        GraphDB direct = build(OSM_DB_PATH_JITTERED, GraphStorage.Kind.DIRECT);
+        GraphDB mapped = build(OSM_DB_PATH_JITTERED, GraphStorage.Kind.MAPPED);
+        Random random = new Random(42);
+        for (int i = 0; i < QUERIES; i++) {
+            int from = random.nextInt(heap.size());
+            int to = random.nextInt(heap.size());
+            List<Long> expected = Router.shortestPath(heap, EdgeOverlay.EMPTY, from, to);
+            assertEquals(expected, Router.shortestPath(direct, EdgeOverlay.EMPTY, from, to));
+            assertEquals(expected, Router.shortestPath(mapped, EdgeOverlay.EMPTY, from, to));
+        }
+        assertTrue(heap.edgesOfWay("Row 3").size() > 0);
+        assertEquals(heap.edgesOfWay("Row 3").size(), mapped.edgesOfWay("Row 3").size());
+    }
+}
@@ -0,0 +1,52 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the log-linear latency histogram behind /metrics.
+ */
+public class TestLatencyHistogram {
+
+    @Test
+    public void testBucketsCoverValues() {
+        for (long micros = 0; micros < 1000000; micros += 7) {
+            int index = LatencyHistogram.bucketIndex(micros);
+            assertTrue(LatencyHistogram.bucketLowerBound(index) <= micros);
+            assertTrue(micros < LatencyHistogram.bucketLowerBound(index + 1));
+        }
+    }
+
+    @Test
+    public void testQuantilesWithinPrecision() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (long micros = 1; micros <= 10000; micros++) {
+            h.recordNanos(micros * 1000);
+        }
+        assertEquals(10000, h.count());
+        assertEquals(10000L * 10001 / 2, h.sumMicros());
+        assertEquals(5000, h.valueAtQuantile(0.5), 5000 * 0.0625);
+        assertEquals(9900, h.valueAtQuantile(0.99), 9900 * 0.0625);
+        assertEquals(9990, h.valueAtQuantile(0.999), 9990 * 0.0625);
+    }
+
+    @Test
+    public void testEmptyAndHugeValues() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.valueAtQuantile(0.99));
+        h.recordNanos(Long.MAX_VALUE);
+        h.recordNanos(-5);
+        assertEquals(0, h.valueAtQuantile(0.5));
+        assertTrue(h.valueAtQuantile(1.0) > 0);
+    }
+
+    @Test
+    public void testPrometheusFormat() {
+        Metrics.endpoint("/test").recordNanos(2000000);
+        String text = Metrics.toPrometheus();
+        assertTrue(text.contains("# TYPE bearmaps_request_seconds summary"));
+        assertTrue(text.contains("bearmaps_request_seconds_count{endpoint=\"/test\"} 1"));
+        assertTrue(text.contains("bearmaps_phase_seconds{phase=\"astar\",quantile=\"0.99\"}"));
+        assertTrue(text.contains("# TYPE bearmaps_vertices_settled_total counter"));
+    }
+}
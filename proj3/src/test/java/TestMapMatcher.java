@@ -0,0 +1,147 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for MapMatcher, on noisy traces sampled along known routes.
+ */
+public class TestMapMatcher {
+    private static final String OSM_DB_PATH_JITTERED = "jittered-grid.osm.xml";
+    /** How far apart the points of a trace are, in miles: about 16 m. */
+    private static final double SPACING = 0.01;
+    private static final double MILES_PER_DEGREE = 3963 * Math.PI / 180;
+    /** Four standard deviations of the GPS noise. */
+    private static final double NEAR_VERTEX = 4 * MapMatcher.DEFAULT_SIGMA;
+
+    private static final GraphDB GRAPH = new GraphDB(OSM_DB_PATH_JITTERED);
+    private static final MapMatcher MATCHER = new MapMatcher(GRAPH);
+
+    /** A trace sampled along a route: lons, lats, and the route it was sampled from. */
+    private static class Sample {
+        final List<Double> lons = new ArrayList<>();
+        final List<Double> lats = new ArrayList<>();
+        List<Long> route;
+
+        double[] lons() {
+            return lons.stream().mapToDouble(Double::doubleValue).toArray();
+        }
+
+        double[] lats() {
+            return lats.stream().mapToDouble(Double::doubleValue).toArray();
+        }
+    }
+
+    /** Samples points every SPACING miles along a route, with GPS noise of sigma miles. */
+    private static Sample sample(List<Long> route, double sigma, Random random) {
+        Sample sample = new Sample();
+        sample.route = route;
+        double lonScale = Math.cos(Math.toRadians(GRAPH.lat(route.get(0))));
+        double carried = 0;
+        for (int i = 0; i + 1 < route.size(); i++) {
+            long v = route.get(i);
+            long w = route.get(i + 1);
+            double length = GRAPH.distance(v, w);
+            for (double at = carried; at < length; at += SPACING) {
+                double t = at / length;
+                double lon = GRAPH.lon(v) + t * (GRAPH.lon(w) - GRAPH.lon(v));
+                double lat = GRAPH.lat(v) + t * (GRAPH.lat(w) - GRAPH.lat(v));
+                sample.lons.add(lon + random.nextGaussian() * sigma / MILES_PER_DEGREE
+                        / lonScale);
+                sample.lats.add(lat + random.nextGaussian() * sigma / MILES_PER_DEGREE);
+                carried = at + SPACING - length;
+            }
+        }
+        return sample;
+    }
+
+    private static List<Long> randomRoute(Random random) {
+        while (true) {
+            List<Long> route = Router.shortestPath(GRAPH, EdgeOverlay.EMPTY,
+                    random.nextInt(GRAPH.size()), random.nextInt(GRAPH.size()));
+            if (route.size() > 5) {
+                return route;
+            }
+        }
+    }
+
+    private static Set<String> edges(List<Long> route) {
+        Set<String> edges = new HashSet<>();
+        for (int i = 0; i + 1 < route.size(); i++) {
+            long v = route.get(i);
+            long w = route.get(i + 1);
+            edges.add(Math.min(v, w) + "-" + Math.max(v, w));
+        }
+        return edges;
+    }
+
+    /**
+     * Every point is matched to an edge of its route, or near one of its vertices: at a
+     * corner, noise can put a point closer to the cross street than to its own.
+     */
+    @Test
+    public void testMatchesRoute() {
+        Random random = new Random(43);
+        for (int trial = 0; trial < 10; trial++) {
+            Sample sample = sample(randomRoute(random), MapMatcher.DEFAULT_SIGMA, random);
+            List<MapMatcher.Match> matches = MATCHER.match(sample.lons(), sample.lats());
+            assertEquals(sample.lons.size(), matches.size());
+            Set<String> routeEdges = edges(sample.route);
+            for (int i = 0; i < matches.size(); i++) {
+                MapMatcher.Match match = matches.get(i);
+                assertEquals(i, match.index);
+                boolean onRoute = routeEdges.contains(match.from + "-" + match.to);
+                boolean atVertex = false;
+                for (long v : new long[]{match.from, match.to}) {
+                    atVertex |= sample.route.contains(v) && GraphDB.distance(match.lon,
+                            match.lat, GRAPH.lon(v), GRAPH.lat(v)) < NEAR_VERTEX;
+                }
+                assertTrue(match.toString(), onRoute || atVertex);
+            }
+        }
+    }
+
+    /**
+     * Points are decided while the trace streams in, well before it ends, and the same way
+     * they are decided when the whole trace is matched at once.
+     */
+    @Test
+    public void testStreaming() {
+        Random random = new Random(44);
+        Sample sample = sample(randomRoute(random), MapMatcher.DEFAULT_SIGMA, random);
+        double[] lons = sample.lons();
+        double[] lats = sample.lats();
+        MapMatcher.Trace trace = MATCHER.trace();
+        List<MapMatcher.Match> streamed = new ArrayList<>();
+        int mostUndecided = 0;
+        for (int i = 0; i < lons.length; i++) {
+            streamed.addAll(trace.add(lons[i], lats[i]));
+            mostUndecided = Math.max(mostUndecided, i + 1 - streamed.size());
+        }
+        assertTrue(mostUndecided + " of " + lons.length, mostUndecided < lons.length / 4);
+        streamed.addAll(trace.finish());
+        assertEquals(MATCHER.match(lons, lats).toString(), streamed.toString());
+    }
+
+    /** Points far from any road are left out, and matching carries on after them. */
+    @Test
+    public void testPointsOffTheMap() {
+        Random random = new Random(45);
+        Sample sample = sample(randomRoute(random), 0, random);
+        int middle = sample.lons.size() / 2;
+        sample.lons.set(middle, 0.0);
+        sample.lats.set(middle, 0.0);
+        List<MapMatcher.Match> matches = MATCHER.match(sample.lons(), sample.lats());
+        assertEquals(sample.lons.size() - 1, matches.size());
+        for (MapMatcher.Match match : matches) {
+            assertTrue(match.index != middle);
+            assertTrue(match.distance < 1e-6);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the typed responses serialize to the same JSON the map based ones did, and that
+ * the streamed raster response is well formed.
+ */
+public class TestMapResponses {
+    private static final Gson GSON = new Gson();
+
+    private static Map<String, Object> rasterParams() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("render_grid", new String[][]{{"d1_x0_y0.png", "d1_x1_y0.png"}});
+        params.put("raster_ul_lon", -122.3);
+        params.put("raster_ul_lat", 37.9);
+        params.put("raster_lr_lon", -122.2);
+        params.put("raster_lr_lat", 37.8);
+        params.put("depth", 1);
+        params.put("query_success", true);
+        params.put("raster_width", 512);
+        params.put("raster_height", 256);
+        return params;
+    }
+
+    /** Writes a raster response to bytes, and parses it back. */
+    private static JsonObject written(MapResponses.ImageWriter image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new MapResponses.RasterResponse(rasterParams()).writeTo(out, image);
+        return GSON.fromJson(new String(out.toByteArray(), StandardCharsets.UTF_8),
+                JsonObject.class);
+    }
+
+    @Test
+    public void testStreamedRaster() throws IOException {
+        byte[] png = new byte[100003];
+        new Random(61).nextBytes(png);
+        ByteArrayOutputStream pngStream = new ByteArrayOutputStream();
+        pngStream.write(png);
+
+        Map<String, Object> expected = rasterParams();
+        expected.put("b64_encoded_image_data", Base64.getEncoder().encodeToString(png));
+        JsonObject streamed = written(MapResponses.png(pngStream));
+        assertEquals(GSON.toJsonTree(expected), streamed);
+        assertArrayEquals(png, Base64.getDecoder().decode(
+                streamed.get("b64_encoded_image_data").getAsString()));
+
+        JsonObject cached = written(MapResponses.encoded(Base64.getEncoder().encode(png)));
+        assertEquals(GSON.toJsonTree(expected), cached);
+    }
+
+    @Test
+    public void testFailedRasterLeavesOutSize() {
+        Map<String, Object> params = rasterParams();
+        params.remove("raster_width");
+        params.remove("raster_height");
+        params.put("query_success", false);
+        assertEquals(GSON.toJsonTree(params), GSON.toJsonTree(
+                new MapResponses.RasterResponse(params)));
+    }
+
+    @Test
+    public void testRouteResponse() {
+        JsonObject single = GSON.toJsonTree(new MapResponses.RouteResponse(true, "", "abc",
+                null)).getAsJsonObject();
+        assertEquals(new HashSet<>(Arrays.asList("routing_success", "directions_success",
+                "directions", "route_polyline")), single.keySet());
+        assertFalse(single.get("directions_success").getAsBoolean());
+
+        JsonObject alternatives = GSON.toJsonTree(new MapResponses.RouteResponse(true,
+                "Start on Main Street", "abc", Arrays.asList(
+                        new MapResponses.AlternativeRoute("def", 1.5))))
+                .getAsJsonObject();
+        assertTrue(alternatives.get("directions_success").getAsBoolean());
+        JsonObject alternative = alternatives.getAsJsonArray("alternatives").get(0)
+                .getAsJsonObject();
+        assertEquals("def", alternative.get("route_polyline").getAsString());
+        assertEquals(1.5, alternative.get("distance").getAsDouble(), 0);
+    }
+
+    @Test
+    public void testOverlayResponse() {
+        EdgeOverlay overlay = EdgeOverlay.EMPTY
+                .withFactor(Arrays.asList(new long[]{1, 2}), EdgeOverlay.CLOSED)
+                .withFactor(Arrays.asList(new long[]{3, 4}), 2.0);
+        JsonObject json = GSON.toJsonTree(new MapResponses.OverlayResponse(overlay))
+                .getAsJsonObject();
+        assertEquals(2, json.get("version").getAsLong());
+        for (int i = 0; i < 2; i++) {
+            JsonObject change = json.getAsJsonArray("changes").get(i).getAsJsonObject();
+            boolean closed = change.get("from").getAsLong() == 1;
+            assertEquals(closed, change.get("closed").getAsBoolean());
+            assertEquals(!closed, change.has("factor"));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for prefix searches that continue from a trie cursor, and for the prefix cache.
+ */
+public class TestPrefixSearch {
+    private static final String REGIONS_PATH = "tiny-regions.json";
+    private static final String[] WORDS = {"she", "sells", "sea", "shells", "by", "the",
+        "sea", "shore", "shell"};
+
+    private static List<String> list(Iterable<String> keys) {
+        List<String> list = new ArrayList<>();
+        keys.forEach(list::add);
+        return list;
+    }
+
+    /** Moving forward, back, sideways and off the trie gives what a fresh search gives. */
+    @Test
+    public void testCursorMatchesKeysWithPrefix() {
+        TrieST<Integer> trie = new TrieST<>();
+        for (int i = 0; i < WORDS.length; i++) {
+            trie.put(WORDS[i], i);
+        }
+        TrieST<Integer>.Cursor cursor = trie.cursor();
+        for (String prefix : new String[]{"", "s", "sh", "she", "shel", "shell", "shells",
+            "shellsx", "shel", "se", "sea", "t", "", "shore", "x", "abcdefghijklmnopqrstu",
+            "by"}) {
+            cursor.moveTo(prefix);
+            assertEquals(prefix, cursor.prefix());
+            assertEquals(prefix, list(trie.keysWithPrefix(prefix)), list(cursor.keys()));
+        }
+    }
+
+    @Test
+    public void testSessionSearch() {
+        RegionCoordinator coordinator = RegionCoordinator.fromJson(REGIONS_PATH);
+        SearchSession session = new SearchSession();
+        for (String prefix : new String[]{"w", "we", "wes", "west", "west m", "west market",
+            "west", "e", "east"}) {
+            assertEquals(prefix, coordinator.getLocationsByPrefix(prefix),
+                    coordinator.getLocationsByPrefix(prefix, session));
+        }
+        assertEquals(Arrays.asList("West Market"),
+                coordinator.getLocationsByPrefix("West M", session));
+    }
+
+    @Test
+    public void testShortPrefixesAreCached() {
+        RegionCoordinator coordinator = RegionCoordinator.fromJson(REGIONS_PATH);
+        List<String> all = coordinator.getLocationsByPrefix("");
+        assertEquals(2, all.size());
+        assertSame(all, coordinator.getLocationsByPrefix("", new SearchSession()));
+        List<String> east = coordinator.getLocationsByPrefix("Ea");
+        assertSame(east, coordinator.getLocationsByPrefix("ea"));
+        assertTrue(coordinator.getLocationsByPrefix("east market").size() == 1);
+    }
+}
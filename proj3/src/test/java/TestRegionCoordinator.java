@@ -0,0 +1,100 @@
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for serving a map split into regions, on a two region map whose regions share the
+ * border vertices 3 and 5.
+ */
+public class TestRegionCoordinator {
+    private static final String REGIONS_PATH = "tiny-regions.json";
+
+    @Test
+    public void testRegionsLoadLazily() {
+        RegionCoordinator coordinator = RegionCoordinator.fromJson(REGIONS_PATH);
+        MapRegion west = coordinator.regions().get(0);
+        MapRegion east = coordinator.regions().get(1);
+        assertFalse(west.isLoaded());
+        assertFalse(east.isLoaded());
+
+        assertEquals(west, coordinator.regionAt(0.5, 38.5));
+        assertEquals(east, coordinator.regionAt(1.5, 38.5));
+        assertEquals(east, coordinator.regionAt(2.5, 38.5));
+
+        coordinator.shortestPath(0.2, 38.5, 0.6, 38.2);
+        assertTrue(west.isLoaded());
+        assertFalse(east.isLoaded());
+    }
+
+    @Test
+    public void testRouteWithinRegion() {
+        RegionCoordinator coordinator = RegionCoordinator.fromJson(REGIONS_PATH);
+        RegionRoute route = coordinator.shortestPath(0.2, 38.5, 0.6, 38.2);
+        assertEquals(Arrays.asList(1L, 2L, 4L), route.route());
+    }
+
+    @Test
+    public void testRouteAcrossRegions() {
+        RegionCoordinator coordinator = RegionCoordinator.fromJson(REGIONS_PATH);
+        RegionRoute route = coordinator.shortestPath(0.2, 38.5, 1.8, 38.5);
+        assertEquals(Arrays.asList(1L, 2L, 3L, 6L, 7L), route.route());
+        assertEquals(5, route.lons().length);
+        assertEquals(1.0, route.lons()[2], 1e-9);
+        assertEquals(38.5, route.lats()[2], 1e-9);
+
+        /* The route stays on Main Street across the border, so that is a single step. */
+        List<Router.NavigationDirection> directions = route.directions();
+        assertEquals(1, directions.size());
+        assertEquals(Router.NavigationDirection.START, directions.get(0).direction);
+        assertEquals("Main Street", directions.get(0).way);
+    }
+
+    @Test
+    public void testRouteThroughCheaperBorderVertex() {
+        RegionCoordinator coordinator = RegionCoordinator.fromJson(REGIONS_PATH);
+        RegionRoute route = coordinator.shortestPath(0.6, 38.2, 1.8, 38.5);
+        assertEquals(Arrays.asList(4L, 5L, 8L, 6L, 7L), route.route());
+
+        /* The step along Side Street is merged across the border. */
+        List<Router.NavigationDirection> directions = route.directions();
+        assertEquals(Router.NavigationDirection.START, directions.get(0).direction);
+        assertEquals("Side Street", directions.get(0).way);
+        assertEquals(GraphDB.distance(0.6, 38.2, 1.0, 38.2)
+                + GraphDB.distance(1.0, 38.2, 1.3, 38.2), directions.get(0).distance, 1e-9);
+        assertEquals("Main Street", directions.get(directions.size() - 1).way);
+    }
+
+    @Test
+    public void testRasterRegion() {
+        RegionCoordinator coordinator = RegionCoordinator.fromJson(REGIONS_PATH);
+        Map<String, Double> params = new HashMap<>();
+        params.put("ullon", 1.2);
+        params.put("ullat", 38.8);
+        params.put("lrlon", 1.6);
+        params.put("lrlat", 38.4);
+        params.put("w", 512.0);
+        params.put("h", 512.0);
+        MapRegion region = coordinator.rasterRegion(params);
+        assertEquals("east", region.name());
+
+        Map<String, Object> raster = region.rasterer().getMapRaster(params);
+        assertTrue((boolean) raster.get("query_success"));
+        assertTrue((double) raster.get("raster_ul_lon") >= 1.0);
+        assertTrue((double) raster.get("raster_lr_lon") <= 2.0);
+        assertFalse(region.isLoaded());
+    }
+
+    @Test
+    public void testSearchAllRegions() {
+        RegionCoordinator coordinator = RegionCoordinator.fromJson(REGIONS_PATH);
+        assertEquals(Arrays.asList("West Market"), coordinator.getLocationsByPrefix("we"));
+        assertEquals(Arrays.asList("East Market"), coordinator.getLocationsByPrefix("east"));
+    }
+}
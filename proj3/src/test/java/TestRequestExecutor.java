@@ -0,0 +1,93 @@
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the per-endpoint limits of the async request executor.
+ */
+public class TestRequestExecutor {
+
+    @Test
+    public void testRunsWork() throws Exception {
+        RequestExecutor executor = new RequestExecutor(1000);
+        executor.limit("/route", 1, 0);
+        assertEquals("done", executor.call("/route", () -> "done"));
+        assertEquals(42, (int) executor.call("/unlimited", () -> 42));
+        executor.shutdown();
+    }
+
+    @Test
+    public void testRejectsBeyondQueueDepth() throws Exception {
+        RequestExecutor executor = new RequestExecutor(5000);
+        executor.limit("/raster", 1, 0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService clients = Executors.newSingleThreadExecutor();
+        Future<String> first = clients.submit(() -> executor.call("/raster", () -> {
+            started.countDown();
+            release.await();
+            return "first";
+        }));
+        started.await();
+        try {
+            executor.call("/raster", () -> "second");
+            fail("The second request should have been rejected.");
+        } catch (RequestExecutor.OverloadedException e) {
+            // expected
+        }
+        release.countDown();
+        assertEquals("first", first.get());
+        assertEquals("third", executor.call("/raster", () -> "third"));
+        clients.shutdown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testTimedOutWorkKeepsItsSlot() throws Exception {
+        RequestExecutor executor = new RequestExecutor(50);
+        executor.limit("/route", 1, 8);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            executor.call("/route", () -> {
+                started.countDown();
+                // Spin like CPU-bound routing, which never looks at interrupts.
+                while (release.getCount() > 0) {
+                    Thread.yield();
+                }
+                return "first";
+            });
+            fail("The first request should have timed out.");
+        } catch (RequestExecutor.OverloadedException e) {
+            // expected
+        }
+        started.await();
+        try {
+            executor.call("/route", () -> "second");
+            fail("The timed out request should still hold the only slot.");
+        } catch (RequestExecutor.OverloadedException e) {
+            assertEquals("Timed out waiting to run /route.", e.getMessage());
+        }
+        release.countDown();
+        assertEquals("third", executor.call("/route", () -> "third"));
+        executor.shutdown();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRethrowsWorkExceptions() throws Exception {
+        RequestExecutor executor = new RequestExecutor(1000);
+        try {
+            executor.call("/search", () -> {
+                throw new IllegalStateException("halted");
+            });
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
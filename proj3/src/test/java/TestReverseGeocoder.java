@@ -0,0 +1,88 @@
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for finding the named way and location nearest to a point, and for the grid index
+ * behind them.
+ */
+public class TestReverseGeocoder {
+    private static final String OSM_DB_PATH_GRID = "tiny-grid.osm.xml";
+    private static final String REGIONS_PATH = "tiny-regions.json";
+
+    /** The nearest way is measured to its edges, not to its vertices. */
+    @Test
+    public void testNearestWayUsesSegments() {
+        ReverseGeocoder geocoder = new ReverseGeocoder(new GraphDB(OSM_DB_PATH_GRID));
+        ReverseGeocoder.Result way = geocoder.nearestWay(0.17, 38.13);
+        assertEquals("East Column", way.name);
+        assertEquals(0.2, way.lon, 1e-9);
+        assertEquals(38.13, way.lat, 1e-9);
+        assertEquals(GraphDB.distance(0.17, 38.13, 0.2, 38.13), way.distance, 1e-9);
+
+        assertEquals("First Row", geocoder.nearestWay(0.05, 37.5).name);
+        assertNull(geocoder.nearestLocation(0.05, 37.5));
+    }
+
+    @Test
+    public void testNearestLocationByRegion() {
+        RegionCoordinator coordinator = RegionCoordinator.fromJson(REGIONS_PATH);
+        ReverseGeocoder.Result west = coordinator.regionAt(0.5, 38.6).geocoder()
+                .nearestLocation(0.5, 38.6);
+        assertEquals("West Market", west.name);
+        assertEquals(9, west.id);
+        assertEquals(0.4, west.lon, 1e-9);
+        assertEquals("Main Street", coordinator.regionAt(0.5, 38.6).geocoder()
+                .nearestWay(0.5, 38.6).name);
+
+        ReverseGeocoder.Result east = coordinator.regionAt(1.5, 38.3).geocoder()
+                .nearestLocation(1.5, 38.3);
+        assertEquals("East Market", east.name);
+        assertEquals(10, east.id);
+    }
+
+    /** The grid gives the same answers as looking at every segment, inside and outside it. */
+    @Test
+    public void testGridIndexMatchesBruteForce() {
+        Random random = new Random(61);
+        int n = 500;
+        double[][] segments = new double[n][];
+        GridIndex index = new GridIndex(0, 0, 10, 10, n);
+        for (int i = 0; i < n; i++) {
+            double ax = random.nextDouble() * 10;
+            double ay = random.nextDouble() * 10;
+            double bx = Math.max(0, Math.min(10, ax + random.nextGaussian() * 0.5));
+            double by = Math.max(0, Math.min(10, ay + random.nextGaussian() * 0.5));
+            segments[i] = new double[]{ax, ay, bx, by};
+            index.add(i, ax, ay, bx, by);
+        }
+        index.build();
+        GridIndex.ItemDistance distance = (i, x, y) -> SimplifiedRoute.segmentDistance(x, y,
+                segments[i][0], segments[i][1], segments[i][2], segments[i][3]);
+
+        for (int q = 0; q < 1000; q++) {
+            double x = random.nextDouble() * 14 - 2;
+            double y = random.nextDouble() * 14 - 2;
+            int expected = -1;
+            double best = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                double d = distance.distance(i, x, y);
+                if (d < best) {
+                    best = d;
+                    expected = i;
+                }
+            }
+            assertEquals(expected, index.nearest(x, y, distance));
+        }
+    }
+
+    @Test
+    public void testEmptyGridIndex() {
+        GridIndex index = new GridIndex(0, 0, 0, 0, 0);
+        index.build();
+        assertEquals(-1, index.nearest(1, 1, (i, x, y) -> 0));
+    }
+}
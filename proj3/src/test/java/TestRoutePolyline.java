@@ -0,0 +1,38 @@
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the encoded polyline format used to send routes to the front end.
+ */
+public class TestRoutePolyline {
+    private static final double DOUBLE_THRESHOLD = 0.000001;
+
+    /** The example from the polyline algorithm documentation. */
+    @Test
+    public void testEncodeReferenceExample() {
+        double[] lons = {-120.2, -120.95, -126.453};
+        double[] lats = {38.5, 40.7, 43.252};
+        assertEquals("_p~iF~ps|U_ulLnnqC_mqNvxq`@", RoutePolyline.encode(lons, lats));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        double[] lons = {-122.25823, -122.25801, -122.2575, -122.26012};
+        double[] lats = {37.87535, 37.87544, 37.87601, 37.87432};
+        List<double[]> points = RoutePolyline.decode(RoutePolyline.encode(lons, lats));
+        assertEquals(lons.length, points.size());
+        for (int i = 0; i < lons.length; i++) {
+            assertEquals(lons[i], points.get(i)[0], DOUBLE_THRESHOLD);
+            assertEquals(lats[i], points.get(i)[1], DOUBLE_THRESHOLD);
+        }
+    }
+
+    @Test
+    public void testEmptyRoute() {
+        assertEquals("", RoutePolyline.encode(new double[0], new double[0]));
+        assertEquals(0, RoutePolyline.decode("").size());
+    }
+}
@@ -0,0 +1,69 @@
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the per-depth Douglas-Peucker simplification of routes.
+ */
+public class TestSimplifiedRoute {
+    private static final double DOUBLE_THRESHOLD = 0.000000001;
+
+    @Test
+    public void testCollinearPointsAreDropped() {
+        double[] lons = {0, 1, 2, 3, 4};
+        double[] lats = {0, 1, 2, 3, 4};
+        boolean[] keep = SimplifiedRoute.simplify(lons, lats, 1, 1);
+        assertArrayEquals(new boolean[]{true, false, false, false, true}, keep);
+    }
+
+    @Test
+    public void testCornersAreKept() {
+        double[] lons = {0, 5, 5, 10};
+        double[] lats = {0, 0, 5, 5};
+        boolean[] keep = SimplifiedRoute.simplify(lons, lats, 1, 1);
+        assertArrayEquals(new boolean[]{true, true, true, true}, keep);
+    }
+
+    /** A wiggle smaller than a pixel at a coarse depth is only kept at a fine depth. */
+    @Test
+    public void testToleranceScalesWithDPP() {
+        double[] lons = {0, 0.5, 1};
+        double[] lats = {0, 0.001, 0};
+        boolean[] coarse = SimplifiedRoute.simplify(lons, lats, 0.01, 0.01);
+        boolean[] fine = SimplifiedRoute.simplify(lons, lats, 0.0001, 0.0001);
+        assertArrayEquals(new boolean[]{true, false, true}, coarse);
+        assertArrayEquals(new boolean[]{true, true, true}, fine);
+    }
+
+    /** The same route is simplified to the pixels of the region whose tiles it is drawn on. */
+    @Test
+    public void testToleranceFollowsRegionTiles() {
+        List<Long> route = Arrays.asList(1L, 2L, 3L);
+        double[] lons = {0, 0.5, 1};
+        double[] lats = {0, 0.001, 0};
+        Rasterer large = new Rasterer(0, 1.28, 2.56, -1.28);
+        Rasterer small = new Rasterer(0, 0.0128, 0.0256, -0.0128);
+        assertEquals(Arrays.asList(1L, 3L),
+                new SimplifiedRoute(route, lons, lats, large).route(0));
+        assertEquals(route, new SimplifiedRoute(route, lons, lats, small).route(0));
+    }
+
+    @Test
+    public void testSegmentDistance() {
+        assertEquals(1.0, SimplifiedRoute.segmentDistance(1, 1, 0, 0, 2, 0), DOUBLE_THRESHOLD);
+        assertEquals(5.0, SimplifiedRoute.segmentDistance(5, 4, 0, 0, 2, 0), DOUBLE_THRESHOLD);
+        assertEquals(5.0, SimplifiedRoute.segmentDistance(3, 4, 0, 0, 0, 0), DOUBLE_THRESHOLD);
+    }
+
+    @Test
+    public void testShortRoutes() {
+        assertEquals(0, SimplifiedRoute.simplify(new double[0], new double[0], 1, 1).length);
+        boolean[] keep = SimplifiedRoute.simplify(new double[]{3}, new double[]{4}, 1, 1);
+        assertTrue(keep[0]);
+    }
+}
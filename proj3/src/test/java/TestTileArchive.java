@@ -0,0 +1,97 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for packing a tile folder into a TileArchive and reading tiles back out of it.
+ */
+public class TestTileArchive {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    /** Writes a small tile with a color made from its coordinates, and returns its bytes. */
+    private static byte[] writeTile(Path folder, int depth, int x, int y) throws IOException {
+        BufferedImage img = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+        img.setRGB(0, 0, new Color(depth * 30, x * 60, y * 60).getRGB());
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        ImageIO.write(img, "png", os);
+        byte[] bytes = os.toByteArray();
+        Files.write(folder.resolve(TileArchive.tileName(depth, x, y)), bytes);
+        return bytes;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path folder = temp.newFolder("tiles").toPath();
+        byte[][][][] tiles = new byte[3][4][4][];
+        for (int depth = 0; depth <= 2; depth++) {
+            for (int x = 0; x < 1 << depth; x++) {
+                for (int y = 0; y < 1 << depth; y++) {
+                    tiles[depth][x][y] = writeTile(folder, depth, x, y);
+                }
+            }
+        }
+        Path file = temp.getRoot().toPath().resolve("tiles.archive");
+        assertEquals(21, TileArchiveBuilder.build(folder, file, 2));
+
+        TileArchive archive = TileArchive.open(file);
+        assertEquals(2, archive.maxDepth());
+        for (int depth = 0; depth <= 2; depth++) {
+            for (int x = 0; x < 1 << depth; x++) {
+                for (int y = 0; y < 1 << depth; y++) {
+                    assertArrayEquals(tiles[depth][x][y], bytes(archive.tile(depth, x, y)));
+                }
+            }
+        }
+
+        try (InputStream in = archive.open("d2_x3_y1.png")) {
+            BufferedImage img = ImageIO.read(in);
+            assertEquals(new Color(60, 180, 60).getRGB(), img.getRGB(0, 0));
+        }
+    }
+
+    @Test
+    public void testMissingTiles() throws IOException {
+        Path folder = temp.newFolder("tiles").toPath();
+        writeTile(folder, 0, 0, 0);
+        byte[] corner = writeTile(folder, 1, 1, 1);
+        Path file = temp.getRoot().toPath().resolve("tiles.archive");
+        assertEquals(2, TileArchiveBuilder.build(folder, file, 1));
+
+        TileArchive archive = TileArchive.open(file);
+        assertNull(archive.tile(1, 0, 1));
+        assertArrayEquals(corner, bytes(archive.tile(1, 1, 1)));
+        assertNull(archive.tile(2, 0, 0));
+        assertNull(archive.tile(1, 2, 0));
+        assertNull(archive.open("d1_x0_y1.png"));
+        assertNull(archive.open("d1_xa_y1.png"));
+        assertNull(archive.open("readme.txt"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotAnArchive() throws IOException {
+        Path file = temp.newFile("tile.png").toPath();
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16});
+        TileArchive.open(file);
+    }
+}
@@ -0,0 +1,127 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for TourPlanner: the distance matrix, the local search, and the stitched route.
+ */
+public class TestTourPlanner {
+    private static final String OSM_DB_PATH_JITTERED = "jittered-grid.osm.xml";
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    /** Straight-line distances between points in the plane. */
+    private static double[][] euclidean(double[] xs, double[] ys) {
+        double[][] distances = new double[xs.length][xs.length];
+        for (int i = 0; i < xs.length; i++) {
+            for (int j = 0; j < xs.length; j++) {
+                distances[i][j] = Math.hypot(xs[i] - xs[j], ys[i] - ys[j]);
+            }
+        }
+        return distances;
+    }
+
+    private static void assertIsTour(int n, int[] order) {
+        assertEquals(0, order[0]);
+        int[] sorted = order.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < n; i++) {
+            assertEquals(i, sorted[i]);
+        }
+    }
+
+    /** For points on a circle, the only round trip 2-opt cannot improve goes round it. */
+    @Test
+    public void testCircle() {
+        int n = 24;
+        List<Integer> angles = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            angles.add(i);
+        }
+        Collections.shuffle(angles, new Random(44));
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = Math.cos(2 * Math.PI * angles.get(i) / n);
+            ys[i] = Math.sin(2 * Math.PI * angles.get(i) / n);
+        }
+        double[][] distances = euclidean(xs, ys);
+        int[] order = TourPlanner.solve(distances, true, NO_DEADLINE);
+        assertIsTour(n, order);
+        assertEquals(2 * n * Math.sin(Math.PI / n), TourPlanner.cost(distances, order, true),
+                1e-9);
+    }
+
+    /** Local search never makes the nearest neighbour tour longer. */
+    @Test
+    public void testImprovesNearestNeighbour() {
+        Random random = new Random(45);
+        for (int trial = 0; trial < 50; trial++) {
+            int n = 2 + random.nextInt(TourPlanner.MAX_STOPS - 1);
+            double[] xs = random.doubles(n).toArray();
+            double[] ys = random.doubles(n).toArray();
+            double[][] distances = euclidean(xs, ys);
+            for (boolean roundTrip : new boolean[]{false, true}) {
+                int[] greedy = TourPlanner.nearestNeighbour(distances);
+                int[] order = TourPlanner.solve(distances, roundTrip, NO_DEADLINE);
+                assertIsTour(n, order);
+                assertTrue(TourPlanner.cost(distances, order, roundTrip)
+                        <= TourPlanner.cost(distances, greedy, roundTrip));
+                /* With no time at all, the nearest neighbour tour is what comes back. */
+                assertArrayEquals(greedy, TourPlanner.solve(distances, roundTrip, 0));
+            }
+        }
+    }
+
+    /** The tour route visits every stop in order, and is as long as the matrix says. */
+    @Test
+    public void testPlanOnGraph() {
+        GraphDB g = new GraphDB(OSM_DB_PATH_JITTERED);
+        Random random = new Random(46);
+        int n = 12;
+        double[] lons = new double[n];
+        double[] lats = new double[n];
+        int[] stops = new int[n];
+        for (int i = 0; i < n; i++) {
+            stops[i] = random.nextInt(g.size());
+            lons[i] = g.lonAt(stops[i]);
+            lats[i] = g.latAt(stops[i]);
+        }
+
+        double[][] matrix = TourPlanner.distanceMatrix(g, EdgeOverlay.EMPTY, stops);
+        for (int i = 0; i < n; i++) {
+            double[] tree = Router.shortestPathTree(g, EdgeOverlay.EMPTY, stops[i],
+                    new int[g.size()]);
+            for (int j = 0; j < n; j++) {
+                assertEquals(tree[stops[j]], matrix[i][j], 1e-9);
+            }
+        }
+
+        for (boolean roundTrip : new boolean[]{false, true}) {
+            TourPlanner.Tour tour = TourPlanner.plan(g, EdgeOverlay.EMPTY, lons, lats,
+                    roundTrip, TourPlanner.DEFAULT_BUDGET_NANOS);
+            int[] order = tour.order();
+            assertIsTour(n, order);
+            List<Long> route = tour.route().route();
+            assertEquals(g.id(stops[0]), (long) route.get(0));
+            long end = roundTrip ? g.id(stops[0]) : g.id(stops[order[n - 1]]);
+            assertEquals(end, (long) route.get(route.size() - 1));
+            int next = 0;
+            for (long v : route) {
+                if (next < n && v == g.id(stops[order[next]])) {
+                    next++;
+                }
+            }
+            assertEquals(n, next);
+            assertEquals(tour.distance(), tour.route().distance(), 1e-9);
+            assertEquals(TourPlanner.cost(matrix, order, roundTrip), tour.distance(), 1e-9);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package example;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the prerequisite queries of CSCourseDB, on berkeley-cs.xml.
+ */
+public class TestCSCourseDB {
+    private static final String DB_PATH = "berkeley-cs.xml";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void testClosures() {
+        CSCourseDB db = new CSCourseDB(DB_PATH);
+        assertEquals(Arrays.asList("CS 61A", "CS 61B", "CS 61C", "CS 70"),
+            db.prerequisites("CS 162"));
+        assertTrue(db.prerequisites("CS 61A").isEmpty());
+        assertTrue(db.isPrerequisite("CS 61A", "CS 186"));
+        assertFalse(db.isPrerequisite("CS 186", "CS 61A"));
+        assertFalse(db.isPrerequisite("CS 70", "CS 61C"));
+
+        List<String> unlocks = db.unlocks("CS 61A");
+        assertTrue(unlocks.containsAll(Arrays.asList("CS 61B", "CS 61C", "CS 162", "CS 152")));
+        assertFalse(unlocks.contains("CS 70"));
+        assertEquals(Arrays.asList("CS 61C"),
+            db.unlocks("CS 61B", Collections.singleton("CS 61A")).subList(0, 1));
+    }
+
+    @Test
+    public void testCanTake() {
+        CSCourseDB db = new CSCourseDB(DB_PATH);
+        assertTrue(db.canTake("CS 61A", Collections.emptySet()));
+        assertFalse(db.canTake("CS 61C", Collections.singleton("CS 61B")));
+        assertTrue(db.canTake("CS 61C", Arrays.asList("CS 61A", "CS 61B")));
+    }
+
+    /** Every course in the plan comes after its prerequisites, and no semester is too full. */
+    @Test
+    public void testPlanSemesters() {
+        CSCourseDB db = new CSCourseDB(DB_PATH);
+        List<String> goals = Arrays.asList("CS 162", "CS 188", "CS 152");
+        List<List<String>> plan = db.planSemesters(goals, Collections.emptySet(), 2);
+        assertEquals(Arrays.asList("CS 61A", "CS 70"), plan.get(0));
+
+        Set<String> taken = new HashSet<>();
+        for (List<String> semester : plan) {
+            assertTrue(semester.size() <= 2);
+            for (String course : semester) {
+                assertTrue(db.canTake(course, taken));
+            }
+            taken.addAll(semester);
+        }
+        assertTrue(taken.containsAll(goals));
+        assertEquals(7, taken.size());
+
+        /* Courses already taken are not planned again. */
+        plan = db.planSemesters(goals, Arrays.asList("CS 61A", "CS 61B", "CS 70"), 3);
+        assertEquals(Arrays.asList(Arrays.asList("CS 61C", "CS 188"),
+            Arrays.asList("CS 162", "CS 152")), plan);
+    }
+
+    /**
+     * Only chains the goals need count towards picking courses first: the long chains that
+     * C and G start are not needed, so A, which starts the longest needed chain, comes first.
+     */
+    @Test
+    public void testPlanIgnoresChainsNotNeeded() throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("<prereqs version=\"1.0\">");
+        for (String id : Arrays.asList("A", "B", "X", "C", "D", "E", "F", "G", "H", "I", "J")) {
+            lines.add("<course id=\"" + id + "\" division=\"lower\" version=\"1\"/>");
+        }
+        String[][] reqs = {{"A", "B"}, {"B", "X"}, {"C", "D"}, {"D", "E"}, {"E", "F"},
+            {"G", "H"}, {"H", "I"}, {"I", "J"}};
+        for (String[] req : reqs) {
+            lines.add("<req version=\"1\"><from ref=\"" + req[0] + "\"/><to ref=\"" + req[1]
+                + "\"/></req>");
+        }
+        lines.add("</prereqs>");
+        Path path = temp.newFile("chains.xml").toPath();
+        Files.write(path, lines, StandardCharsets.UTF_8);
+
+        CSCourseDB db = new CSCourseDB(path.toString());
+        assertEquals(Arrays.asList(Arrays.asList("A", "C"), Arrays.asList("B", "G"),
+            Arrays.asList("X")),
+            db.planSemesters(Arrays.asList("X", "C", "G"), Collections.emptySet(), 2));
+    }
+}
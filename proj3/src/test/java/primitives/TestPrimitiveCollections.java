@@ -0,0 +1,94 @@
+package primitives;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the primitive maps, against java.util.HashMap, and for IntArrayList.
+ */
+public class TestPrimitiveCollections {
+
+    /** Random keys that often share their low bits, so that runs form and shift back. */
+    private static long randomKey(Random random) {
+        return (long) random.nextInt(400) << 40 | (random.nextBoolean() ? 0 : -1L << 62);
+    }
+
+    @Test
+    public void testLongLongMap() {
+        Random random = new Random(50);
+        LongLongMap map = new LongLongMap();
+        Map<Long, Long> expected = new HashMap<>();
+        for (int op = 0; op < 50000; op++) {
+            long key = randomKey(random);
+            if (random.nextInt(3) == 0) {
+                Long removed = expected.remove(key);
+                assertEquals(removed == null ? -1 : removed, map.remove(key));
+            } else {
+                expected.put(key, (long) op);
+                map.put(key, op);
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (long key : expected.keySet()) {
+            assertTrue(map.containsKey(key));
+            assertEquals((long) expected.get(key), map.get(key));
+        }
+        long[] keys = map.keys();
+        Arrays.sort(keys);
+        assertArrayEquals(expected.keySet().stream().mapToLong(Long::longValue).sorted()
+            .toArray(), keys);
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertFalse(map.containsKey(keys[0]));
+        assertEquals(-1, map.get(keys[0]));
+    }
+
+    @Test
+    public void testMissingValues() {
+        LongIntMap ints = new LongIntMap();
+        LongDoubleMap doubles = new LongDoubleMap(Double.POSITIVE_INFINITY, 100);
+        assertEquals(-1, ints.get(7));
+        assertEquals(Double.POSITIVE_INFINITY, doubles.get(7), 0);
+        assertEquals(Double.NaN, new LongDoubleMap().get(7), 0);
+
+        /* A stored value equal to the missing value is still there. */
+        ints.put(0, -1);
+        assertTrue(ints.containsKey(0));
+        assertEquals(1, ints.size());
+        doubles.put(Long.MIN_VALUE, 2.5);
+        doubles.put(Long.MIN_VALUE, 3.5);
+        assertEquals(3.5, doubles.remove(Long.MIN_VALUE), 0);
+        assertEquals(Double.POSITIVE_INFINITY, doubles.remove(Long.MIN_VALUE), 0);
+        assertEquals(0, doubles.size());
+    }
+
+    @Test
+    public void testIntArrayList() {
+        IntArrayList list = new IntArrayList(1);
+        for (int i = 0; i < 100; i++) {
+            list.add(i * i);
+        }
+        assertEquals(100, list.size());
+        assertEquals(81, list.get(9));
+        list.set(9, -1);
+        assertEquals(-1, list.toArray()[9]);
+        list.clear();
+        assertTrue(list.isEmpty());
+        try {
+            list.get(0);
+            assertTrue(false);
+        } catch (IndexOutOfBoundsException e) {
+            assertEquals("Index 0, size 0.", e.getMessage());
+        }
+    }
+}